@@ -3,118 +3,233 @@ package org.myframework.aop;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 import org.myframework.aop.aspect.AspectInfo;
-import org.myframework.util.ValidationUtil;
+import org.myframework.aop.aspect.DefaultAspect;
+import org.myframework.aop.aspect.ProceedingJoinPoint;
 
 import java.lang.reflect.Method;
-import java.util.Collections;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 针对每个被代理的对象进行方法的拦截，每个对象可能有多个Aspect
  * 往被代理的类中添加横切逻辑
+ *
+ * 每个方法的Aspect链（精筛之后、按照order排好序）在织入时一次性算好，保存在不可变的表中，
+ * 方法调用时只需要查表，不再进行pointcut的匹配，也不需要加锁；
+ * 代理类只会把表中的方法交给这里（见ProxyFactory的各个实现），其他方法即使被拦截到也直接调用被代理的方法
  */
 public class AspectListExecutor implements MethodInterceptor {
 
+    private static final AspectInfo[] EMPTY_CHAIN = new AspectInfo[0];
+
     //被代理的类
     Class<?> targetClass;
 
     /**
-     * AspectList 由于我们需要在程序运行过程中通过反射获取被@Aspect和@Order标签标记的实现类的列表
-     * 并且实现类列表的执行顺序需要在这里去确定好的，所以还需要接受实现类实现的顺序
+     * 方法 -> 按照order排好序的Aspect链，创建之后不再修改
      */
-    private List<AspectInfo> sortedAspectInfoList;
+    private final Map<Method, AspectInfo[]> aspectChainMap;
 
+    /**
+     * 对粗筛得到的Aspect进行精筛，计算每个方法的Aspect链
+     * @param targetClass 被代理的类
+     * @param aspectInfoList 粗筛匹配的Aspect，不会被修改
+     */
     public AspectListExecutor( Class<?> targetClass, List<AspectInfo> aspectInfoList) {
         this.targetClass = targetClass;
         /*
-         * 既然aspectInfo中已经有order的信息了，那么就直接在传入aspectInfoList时，就按优先级进行排序
+         * 既然aspectInfo中已经有order的信息了，那么就直接按优先级进行排序
+         * 排序的是副本，多个被代理的类共享同一个粗筛结果时互不影响
          */
-        this.sortedAspectInfoList = sortAspectInfoList(aspectInfoList);
+        List<AspectInfo> sortedAspectInfoList = sortAspectInfoList(aspectInfoList);
+        Map<Method, AspectInfo[]> chainMap = new HashMap<>();
+        for (Method method : getProxiedMethods(targetClass)) {
+            AspectInfo[] aspectChain = collectAccurateMatchedAspects(sortedAspectInfoList, method);
+            if (aspectChain.length > 0) {
+                chainMap.put(method, aspectChain);
+            }
+        }
+        this.aspectChainMap = Map.copyOf(chainMap);
+    }
+
+    /**
+     * 使用装配计划中的Aspect链
+     * @param targetClass 被代理的类
+     * @param plannedAspectChainMap 方法 -> 按照order排好序的Aspect链
+     */
+    public AspectListExecutor(Class<?> targetClass, Map<Method, List<AspectInfo>> plannedAspectChainMap) {
+        this.targetClass = targetClass;
+        Map<Method, AspectInfo[]> chainMap = new HashMap<>();
+        plannedAspectChainMap.forEach((method, aspectChain) -> chainMap.put(method, aspectChain.toArray(EMPTY_CHAIN)));
+        this.aspectChainMap = Map.copyOf(chainMap);
     }
 
     /**
      * 按照order的值进行升序排序，确保order值小的Aspect先被织入
      */
-    private List<AspectInfo> sortAspectInfoList(List<AspectInfo> aspectInfoList) {
-        // 方法参数中有一个比较器
-        Collections.sort(aspectInfoList, new Comparator<AspectInfo>() {
-            @Override
-            public int compare(AspectInfo o1, AspectInfo o2) {
-                // 0表示两者相等
-                return o1.getOrderIndex() - o2.getOrderIndex();
+    static List<AspectInfo> sortAspectInfoList(List<AspectInfo> aspectInfoList) {
+        List<AspectInfo> sortedAspectInfoList = new ArrayList<>(aspectInfoList);
+        sortedAspectInfoList.sort(Comparator.comparingInt(AspectInfo::getOrderIndex));
+        return sortedAspectInfoList;
+    }
+
+    /**
+     * 传入被代理方法的实例进行精筛，被代理方法实例是否真的匹配expression表达式，匹配的按原来的顺序保留下来
+     */
+    static AspectInfo[] collectAccurateMatchedAspects(List<AspectInfo> sortedAspectInfoList, Method method) {
+        List<AspectInfo> aspectChain = new ArrayList<>();
+        for (AspectInfo aspectInfo : sortedAspectInfoList) {
+            if (aspectInfo.getPointcutLocator().accurateMatches(method)) {
+                aspectChain.add(aspectInfo);
+            }
+        }
+        return aspectChain.toArray(EMPTY_CHAIN);
+    }
+
+    /**
+     * 获取CGLIB代理会拦截的方法：类及其父类中所有非static、非private、非final的方法，子类覆盖的方法只保留子类的
+     */
+    static List<Method> getProxiedMethods(Class<?> targetClass) {
+        List<Method> methodList = new ArrayList<>();
+        Set<String> signatureSet = new HashSet<>();
+        for (Class<?> current = targetClass; current != null; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                int modifiers = method.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers) || Modifier.isFinal(modifiers) || method.isBridge()) {
+                    continue;
+                }
+                if (signatureSet.add(method.getName() + getParameterTypeNames(method))) {
+                    methodList.add(method);
+                }
             }
-        });
-        return aspectInfoList;
+        }
+        return methodList;
+    }
+
+    static List<String> getParameterTypeNames(Method method) {
+        List<String> parameterTypeNames = new ArrayList<>();
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            parameterTypeNames.add(parameterType.getName());
+        }
+        return parameterTypeNames;
+    }
+
+    /**
+     * @return 存在Aspect链的方法，只有这些方法需要被拦截
+     */
+    public Set<Method> getAdvisedMethods() {
+        return aspectChainMap.keySet();
     }
 
     @Override
     public Object intercept(Object o, Method method, Object[] objects, MethodProxy methodProxy) throws Throwable {
-        Object returnValue = null;
-        // 这里对sortedAspectInfoList进行精筛
-        collectAccurateMatchedAspectList(method);
-        if (ValidationUtil.isEmpty(sortedAspectInfoList)) {
-            return null;
+        return invoke(o, o, method, objects, methodProxy::invokeSuper);
+    }
+
+    /**
+     * 执行方法的Aspect链，所有的代理方式（见ProxyFactory）都通过这里执行
+     * @param proxy 代理对象
+     * @param target 被代理方法的调用对象，子类形式的代理就是代理对象本身，JDK动态代理是被代理的对象
+     * @param method 被代理类中的方法
+     * @param args 参数
+     * @param targetInvoker 调用被代理的方法
+     * @return 返回给调用方的值
+     */
+    public Object invoke(Object proxy, Object target, Method method, Object[] args, TargetInvoker targetInvoker) throws Throwable {
+        AspectInfo[] aspectChain = aspectChainMap.get(method);
+        if (aspectChain == null) {
+            //没有匹配的Aspect，直接调用被代理的方法
+            return targetInvoker.invoke(target, args);
         }
-        /*
-        1.按照order的顺序升序执行完所有Aspect的before方法
-        2.执行被代理类的方法
-        3.如果被代理方法正常返回，则按照order的顺序降序执行完所有Aspect的afterReturning方法
-        4.如果被代理方法抛出异常，则按照order的顺序降序执行完所有Aspect的afterThrowing方法
-         */
-        invokeBeforeAdvices(method, objects);
+        ChainedJoinPoint joinPoint = new ChainedJoinPoint(targetClass, aspectChain, proxy, target, method, args, targetInvoker);
         try {
-            returnValue =  methodProxy.invokeSuper(o, objects);
-            returnValue = invokeAfterReturningAdvices(method, objects, returnValue);
-        }  catch (Exception e) {
-            invokeAfterThrowingAdvices(method, objects, e);
+            return aspectChain[0].getAspectObject().around(joinPoint);
+        } catch (Exception e) {
+            //afterThrowing已经在链上按照order降序执行过了，异常不再向外抛出
+            return null;
         }
-        return returnValue;
     }
 
     /**
-     * 传入被代理方法的实例进行精筛，被代理方法实例是否真的匹配expression表达式。如果匹配就保留，否则就删除
+     * 按照下标在Aspect链上推进的连接点，一次方法调用只创建一个
+     *
+     * 下标为i的Aspect的around调用proceed时：
+     * 1.执行第i个Aspect的before
+     * 2.把下标移到i+1，执行第i+1个Aspect的around；i是最后一个Aspect时执行被代理类的方法
+     * 3.正常返回时把返回值交给第i个Aspect的afterReturning，抛出异常时执行第i个Aspect的afterThrowing并继续向外抛出
+     * 这样order值小的Aspect在最外层：before按照order升序执行，afterReturning、afterThrowing按照order降序执行
+     * proceed返回之前会把下标恢复成i，所以around中可以多次调用proceed
      */
-    private void collectAccurateMatchedAspectList(Method method) {
-        if (ValidationUtil.isEmpty(sortedAspectInfoList)) {
-            return;
+    private static final class ChainedJoinPoint extends ProceedingJoinPoint {
+        private final Class<?> targetClass;
+        private final AspectInfo[] aspectChain;
+        private final Object proxy;
+        private final Object target;
+        private final Method method;
+        private final Object[] args;
+        private final TargetInvoker targetInvoker;
+        private int index;
+
+        private ChainedJoinPoint(Class<?> targetClass, AspectInfo[] aspectChain, Object proxy, Object target, Method method,
+                                 Object[] args, TargetInvoker targetInvoker) {
+            this.targetClass = targetClass;
+            this.aspectChain = aspectChain;
+            this.proxy = proxy;
+            this.target = target;
+            this.method = method;
+            this.args = args;
+            this.targetInvoker = targetInvoker;
         }
-        /*
-         在遍历过程中可能需要删除元素，如果还是使用foreach方法进行遍历，当移除sortedAspectInfoList中的元素时，会报出
-         java.util.ConcurrentModificationException的异常，这是因为foreach中用到的iterator是工作在一个独立的线程中的，
-         并且有一个mutex锁，iterator在被创建之后，会建立一个指向原来对象的单链索引表，当原来的对象的数量发生变化时，索引表的内容不会发生变化，
-         当索引指针向后寻找的时候就找不到要迭代的对象了。接下来会按照一个fail-fast的原则，使得iterator马上抛出异常
 
-         但是可以使用iterator本身的remove方法删除对象，因为当remove时，会维护前面说的索引表，所以使用迭代器的方式进行遍历
-         */
-        sortedAspectInfoList.removeIf(aspectInfo -> !aspectInfo.getPointcutLocator().accurateMatches(method));
-        //Iterator<AspectInfo> it = sortedAspectInfoList.iterator();
-        //while (it.hasNext()){
-        //    AspectInfo aspectInfo = it.next();
-        //    if(!aspectInfo.getPointcutLocator().accurateMatches(method)){
-        //        it.remove();
-        //    }
-        //}
-    }
+        @Override
+        public Object proceed() throws Throwable {
+            int current = index;
+            DefaultAspect aspect = aspectChain[current].getAspectObject();
+            aspect.before(targetClass, method, args);
+            try {
+                Object returnValue;
+                int next = current + 1;
+                if (next == aspectChain.length) {
+                    returnValue = targetInvoker.invoke(target, args);
+                } else {
+                    index = next;
+                    try {
+                        returnValue = aspectChain[next].getAspectObject().around(this);
+                    } finally {
+                        index = current;
+                    }
+                }
+                return aspect.afterReturning(targetClass, method, args, returnValue);
+            } catch (Exception e) {
+                aspect.afterThrowing(targetClass, method, args, e);
+                throw e;
+            }
+        }
 
-    private void invokeAfterThrowingAdvices(Method method, Object[] args, Exception e) throws Throwable {
-        for (int i = sortedAspectInfoList.size() - 1; i >= 0; i--) {
-            sortedAspectInfoList.get(i).getAspectObject().afterThrowing(targetClass, method, args, e);
+        @Override
+        public Object getProxy() {
+            return proxy;
         }
-    }
 
-    private Object invokeAfterReturningAdvices(Method method, Object[] args, Object returnValue) throws Throwable {
-        Object result = null;
-        for (int i = sortedAspectInfoList.size() - 1; i >= 0; i--) {
-            result = sortedAspectInfoList.get(i).getAspectObject().afterReturning(targetClass, method, args, returnValue);
+        @Override
+        public Class<?> getTargetClass() {
+            return targetClass;
         }
-        return result;
-    }
 
-    private void invokeBeforeAdvices(Method method, Object[] args) throws Throwable {
-        for (AspectInfo aspectInfo : sortedAspectInfoList) {
-            aspectInfo.getAspectObject().before(targetClass, method, args);
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Object[] getArgs() {
+            return args;
         }
     }
 }
@@ -3,13 +3,23 @@ package org.myframework.aop;
 import org.myframework.aop.annotation.Aspect;
 import org.myframework.aop.annotation.Order;
 import org.myframework.aop.annotation.PointcutLocator;
+import org.myframework.aop.annotation.ProxyEngine;
+import org.myframework.aop.annotation.ProxyMode;
 import org.myframework.aop.aspect.AspectInfo;
 import org.myframework.aop.aspect.DefaultAspect;
 import org.myframework.core.BeanContainer;
+import org.myframework.core.BeanPostProcessor;
+import org.myframework.core.index.ComponentIndex;
+import org.myframework.core.plan.WiringPlan;
+import org.myframework.core.startup.StartupRecorder;
+import org.myframework.core.startup.StartupStep;
+import org.myframework.util.ClassUtil;
 import org.myframework.util.ValidationUtil;
 
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Target;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.util.*;
 
 /**
@@ -28,11 +38,23 @@ import java.util.*;
  * 将横切逻辑织入到被代理的对象以生成动态代理对象
  */
 public class AspectWeaver {
+
+    /**
+     * 没有被@ProxyEngine标记的bean使用的代理方式，默认为CGLIB
+     * 比如 -Dmyframework.aop.proxyMode=SUBCLASS
+     */
+    public static final String PROXY_MODE_PROPERTY = "myframework.aop.proxyMode";
+
     /*
     需要在容器中筛选出两种类型的bean，一种是被代理的bean，一种是被Aspect签标记的bean
      */
     private BeanContainer beanContainer;
 
+    /*
+    热更新改变了切面之后，装配计划里记录的Aspect链已经过期，重新织入时不再使用计划
+     */
+    private boolean ignorePlan;
+
     public AspectWeaver() {
         /*
         因为容器绝对是单例的，在这里获取到容器的实例
@@ -94,32 +116,189 @@ public class AspectWeaver {
         }
         //    2.拼接AspectInfoList 拼接@Aspect对应的order值和pointcutLocator
         List<AspectInfo> aspectInfoList = packAspectInfoList(aspectSet);
+        //延迟bean在第一次getBean时才会被创建，创建之后同样需要织入
+        //代理对象是一个新的实例，刚创建的实例会被丢弃，所以AOP的处理器始终在依赖注入之前执行，不管doAop和doIoC的调用顺序
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.AOP_ORDER, (targetClass, bean) -> {
+            Object proxyBean = createProxyIfNecessary(aspectInfoList, targetClass);
+            return proxyBean == null ? bean : proxyBean;
+        });
         //    3.遍历容器里的类
         Set<Class<?>> classSet = beanContainer.getClasses();
-        for (Class<?> targetClass: classSet) {
-            // 排除自身
-            if (targetClass.isAnnotationPresent(Aspect.class)) {
-                continue;
+        try (StartupStep step = StartupRecorder.start("doAop")) {
+            int proxyCount = 0;
+            for (Class<?> targetClass: classSet) {
+                // 4.粗筛并尝试进行Aspect的织入
+                Object proxyBean = createProxyIfNecessary(aspectInfoList, targetClass);
+                if (proxyBean != null) {
+                    beanContainer.addBean(targetClass, proxyBean);
+                    proxyCount++;
+                }
             }
-            /*
-            4.粗筛符合条件的Aspect
-            就是看一下pointcutLocator里面的pointcut表达式expression和当前类targetClass是否匹配
-            如果匹配，就这个类装进新的列表中
-             */
-            List<AspectInfo> roughMatchedAspectList  = collectRoughMatchedAspectListForSpecificClass(aspectInfoList, targetClass);
-            // 5.尝试进行Aspect的织入
-            wrapIfNecessary(roughMatchedAspectList, targetClass);
+            step.count("aspects", aspectInfoList.size()).count("proxies", proxyCount);
         }
     }
 
-    private void wrapIfNecessary(List<AspectInfo> roughMatchedAspectList, Class<?> targetClass) {
+    /**
+     * 热更新改变了切面之后重新织入：按照容器中当前的切面重新计算AspectInfo，替换AOP处理器
+     * 之后创建的bean使用新的切面，已经创建的bean需要由调用方重新创建
+     */
+    public void reweave() {
+        Set<Class<?>> aspectSet = beanContainer.getClassesByAnnotation(Aspect.class);
+        List<AspectInfo> aspectInfoList = ValidationUtil.isEmpty(aspectSet) ? Collections.emptyList() : packAspectInfoList(aspectSet);
+        ignorePlan = true;
+        //同一个order的处理器会替换掉doAop注册的处理器
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.AOP_ORDER, (targetClass, bean) -> {
+            Object proxyBean = createProxyIfNecessary(aspectInfoList, targetClass);
+            return proxyBean == null ? bean : proxyBean;
+        });
+    }
+
+    /**
+     * 获取容器中粗筛匹配切面的bean，不包括切面本身
+     * @param aspectClass 切面类，可以是热更新之前的旧版本
+     */
+    public Set<Class<?>> getRoughMatchedClasses(Class<?> aspectClass) {
+        Set<Class<?>> classSet = new HashSet<>();
+        Aspect aspectTag = aspectClass.getAnnotation(Aspect.class);
+        if (aspectTag == null) {
+            return classSet;
+        }
+        PointcutLocator pointcutLocator = new PointcutLocator(getPointcut(aspectClass, aspectTag));
+        for (Class<?> targetClass : beanContainer.getClasses()) {
+            if (!targetClass.isAnnotationPresent(Aspect.class) && pointcutLocator.roughMatches(targetClass)) {
+                classSet.add(targetClass);
+            }
+        }
+        return classSet;
+    }
+
+    /**
+     * 为目标类创建动态代理对象
+     * @return 没有匹配的Aspect时返回null
+     */
+    private Object createProxyIfNecessary(List<AspectInfo> aspectInfoList, Class<?> targetClass) {
+        // 排除自身
+        if (targetClass.isAnnotationPresent(Aspect.class)) {
+            return null;
+        }
+        WiringPlan wiringPlan = ignorePlan ? null : beanContainer.getWiringPlan();
+        WiringPlan.BeanPlan beanPlan = wiringPlan == null ? null : wiringPlan.getBeanPlan(targetClass);
+        if (beanPlan != null) {
+            return createPlannedProxy(aspectInfoList, targetClass, beanPlan);
+        }
+        /*
+        粗筛符合条件的Aspect
+        就是看一下pointcutLocator里面的pointcut表达式expression和当前类targetClass是否匹配
+        如果匹配，就这个类装进新的列表中
+         */
+        List<AspectInfo> roughMatchedAspectList  = collectRoughMatchedAspectListForSpecificClass(aspectInfoList, targetClass);
         if(ValidationUtil.isEmpty(roughMatchedAspectList)){
-            return;
+            return null;
         }
         //创建出动态代理对象
         AspectListExecutor aspectListExecutor = new AspectListExecutor(targetClass, roughMatchedAspectList);
-        Object proxyBean = ProxyCreator.createProxy(targetClass, aspectListExecutor);
-        beanContainer.addBean(targetClass, proxyBean);
+        Object proxyBean = createProxy(targetClass, aspectListExecutor);
+        StartupRecorder.recordProxy(targetClass);
+        return proxyBean;
+    }
+
+    /**
+     * 按照装配计划创建动态代理对象，不需要再进行pointcut的匹配
+     * @return 计划中没有匹配的Aspect时返回null
+     */
+    private Object createPlannedProxy(List<AspectInfo> aspectInfoList, Class<?> targetClass, WiringPlan.BeanPlan beanPlan) {
+        if (beanPlan.getAspectClassNames().isEmpty()) {
+            return null;
+        }
+        Map<String, AspectInfo> aspectInfoMap = new HashMap<>();
+        for (AspectInfo aspectInfo : aspectInfoList) {
+            aspectInfoMap.put(aspectInfo.getAspectObject().getClass().getName(), aspectInfo);
+        }
+        Map<Method, List<AspectInfo>> aspectChainMap = new HashMap<>();
+        List<Method> proxiedMethods = AspectListExecutor.getProxiedMethods(targetClass);
+        for (WiringPlan.MethodPlan methodPlan : beanPlan.getMethodPlans()) {
+            Method method = findProxiedMethod(proxiedMethods, methodPlan);
+            List<AspectInfo> aspectChain = new ArrayList<>();
+            for (String aspectClassName : methodPlan.getAspectClassNames()) {
+                AspectInfo aspectInfo = aspectInfoMap.get(aspectClassName);
+                if (method == null || aspectInfo == null) {
+                    throw new RuntimeException("wiring plan of " + targetClass.getName() + " is stale, rebuild it or set -D"
+                            + WiringPlan.IGNORE_PLAN_PROPERTY + "=true");
+                }
+                aspectChain.add(aspectInfo);
+            }
+            aspectChainMap.put(method, aspectChain);
+        }
+        AspectListExecutor aspectListExecutor = new AspectListExecutor(targetClass, aspectChainMap);
+        Object proxyBean = createProxy(targetClass, aspectListExecutor);
+        StartupRecorder.recordProxy(targetClass);
+        return proxyBean;
+    }
+
+    /**
+     * 按照bean指定的代理方式创建代理对象，构造器注入的bean需要用同样的参数调用构造器
+     * 只有存在Aspect链的方法会被拦截，其他方法直接调用被代理的方法
+     */
+    private Object createProxy(Class<?> targetClass, AspectListExecutor aspectListExecutor) {
+        ProxyFactory proxyFactory = ProxyFactory.of(getProxyMode(targetClass));
+        Constructor<?> constructor = BeanContainer.getAutowiredConstructor(targetClass);
+        if (constructor == null) {
+            return proxyFactory.createProxy(targetClass, aspectListExecutor, new Class<?>[0], new Object[0]);
+        }
+        return proxyFactory.createProxy(targetClass, aspectListExecutor, constructor.getParameterTypes(),
+                beanContainer.resolveConstructorArguments(targetClass));
+    }
+
+    private static ProxyMode getProxyMode(Class<?> targetClass) {
+        ProxyEngine proxyEngine = targetClass.getAnnotation(ProxyEngine.class);
+        if (proxyEngine != null) {
+            return proxyEngine.value();
+        }
+        String proxyMode = System.getProperty(PROXY_MODE_PROPERTY);
+        return proxyMode == null ? ProxyMode.CGLIB : ProxyMode.valueOf(proxyMode.trim().toUpperCase());
+    }
+
+    private static Method findProxiedMethod(List<Method> proxiedMethods, WiringPlan.MethodPlan methodPlan) {
+        for (Method method : proxiedMethods) {
+            if (method.getName().equals(methodPlan.getName()) && AspectListExecutor.getParameterTypeNames(method).equals(methodPlan.getParameterTypeNames())) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 为装配计划计算每个bean粗筛匹配的Aspect，以及每个方法精筛之后的Aspect链
+     * @param beanPlans bean的计划
+     */
+    public void planAspects(Collection<WiringPlan.BeanPlan> beanPlans) {
+        Set<Class<?>> aspectSet = beanContainer.getClassesByAnnotation(Aspect.class);
+        if (ValidationUtil.isEmpty(aspectSet)) {
+            return;
+        }
+        List<AspectInfo> aspectInfoList = AspectListExecutor.sortAspectInfoList(packAspectInfoList(aspectSet));
+        for (WiringPlan.BeanPlan beanPlan : beanPlans) {
+            Class<?> targetClass = ClassUtil.loadClass(beanPlan.getClassName(), false);
+            if (targetClass.isAnnotationPresent(Aspect.class)) {
+                continue;
+            }
+            List<AspectInfo> roughMatchedAspectList = collectRoughMatchedAspectListForSpecificClass(aspectInfoList, targetClass);
+            if (roughMatchedAspectList.isEmpty()) {
+                continue;
+            }
+            for (AspectInfo aspectInfo : roughMatchedAspectList) {
+                beanPlan.getAspectClassNames().add(aspectInfo.getAspectObject().getClass().getName());
+            }
+            for (Method method : AspectListExecutor.getProxiedMethods(targetClass)) {
+                List<String> aspectClassNames = new ArrayList<>();
+                for (AspectInfo aspectInfo : AspectListExecutor.collectAccurateMatchedAspects(roughMatchedAspectList, method)) {
+                    aspectClassNames.add(aspectInfo.getAspectObject().getClass().getName());
+                }
+                if (!aspectClassNames.isEmpty()) {
+                    beanPlan.getMethodPlans().add(new WiringPlan.MethodPlan(method.getName(), AspectListExecutor.getParameterTypeNames(method), aspectClassNames));
+                }
+            }
+        }
     }
 
     private List<AspectInfo> collectRoughMatchedAspectListForSpecificClass(List<AspectInfo> aspectInfoList, Class<?> targetClass) {
@@ -141,7 +320,7 @@ public class AspectWeaver {
                 Aspect aspectTag = aspectClass.getAnnotation(Aspect.class);
                 DefaultAspect defaultAspect = (DefaultAspect) beanContainer.getBean(aspectClass);
                 //初始化表达式定位器
-                PointcutLocator pointcutLocator = new PointcutLocator(aspectTag.pointcut());
+                PointcutLocator pointcutLocator = new PointcutLocator(getPointcut(aspectClass, aspectTag));
                 AspectInfo aspectInfo = new AspectInfo(orderTag.value(), defaultAspect, pointcutLocator);
                 aspectInfoList.add(aspectInfo);
             } else {
@@ -152,6 +331,21 @@ public class AspectWeaver {
         return aspectInfoList;
     }
 
+    /**
+     * 获取Aspect的pointcut表达式，优先使用组件索引中编译期记录的表达式
+     * 热更新重新加载的Aspect类来自新的类加载器，它的表达式可能已经改变，只能读取注解
+     */
+    private String getPointcut(Class<?> aspectClass, Aspect aspectTag) {
+        ComponentIndex componentIndex = beanContainer.getComponentIndex();
+        if (componentIndex != null && aspectClass.getClassLoader() == ClassUtil.getClassLoader()) {
+            String pointcut = componentIndex.getPointcut(aspectClass.getName());
+            if (pointcut != null) {
+                return pointcut;
+            }
+        }
+        return aspectTag.pointcut();
+    }
+
     ///**
     // * @param category 被织入的目标
     // * @param aspectInfos 织入的信息
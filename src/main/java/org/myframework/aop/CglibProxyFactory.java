@@ -0,0 +1,18 @@
+package org.myframework.aop;
+
+/**
+ * 通过CGLIB创建代理对象，只有存在Aspect链的方法会被拦截
+ */
+public class CglibProxyFactory implements ProxyFactory {
+
+    static final CglibProxyFactory INSTANCE = new CglibProxyFactory();
+
+    @Override
+    public Object createProxy(Class<?> targetClass, AspectListExecutor aspectListExecutor, Class<?>[] argumentTypes, Object[] arguments) {
+        if (argumentTypes.length == 0) {
+            return ProxyCreator.createProxy(targetClass, aspectListExecutor, aspectListExecutor.getAdvisedMethods());
+        }
+        return ProxyCreator.createProxy(targetClass, aspectListExecutor, aspectListExecutor.getAdvisedMethods(),
+                argumentTypes, arguments);
+    }
+}
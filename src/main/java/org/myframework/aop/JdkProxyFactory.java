@@ -0,0 +1,143 @@
+package org.myframework.aop;
+
+import org.myframework.core.TargetProxy;
+import org.myframework.util.BeanAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 通过java.lang.reflect.Proxy创建代理对象
+ *
+ * 代理对象只实现bean的类及其父类实现的接口（以及TargetProxy），bean的状态保存在单独创建的被代理对象中，
+ * 注入依赖、执行生命周期方法时容器通过TargetProxy找到被代理的对象。
+ * 因为代理对象不是bean的类的实例，依赖这个bean的地方只能通过接口注入
+ *
+ * 接口方法到被代理类中方法的映射，以及调用被代理方法的MethodHandle按类只解析一次
+ */
+public class JdkProxyFactory implements ProxyFactory {
+
+    static final JdkProxyFactory INSTANCE = new JdkProxyFactory();
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private static final ClassValue<ProxyInterfaces> PROXY_INTERFACES = new ClassValue<ProxyInterfaces>() {
+        @Override
+        protected ProxyInterfaces computeValue(Class<?> type) {
+            return new ProxyInterfaces(type);
+        }
+    };
+
+    @Override
+    public Object createProxy(Class<?> targetClass, AspectListExecutor aspectListExecutor, Class<?>[] argumentTypes, Object[] arguments) {
+        ProxyInterfaces proxyInterfaces = PROXY_INTERFACES.get(targetClass);
+        Object target;
+        if (argumentTypes.length == 0) {
+            target = BeanAccessor.of(targetClass).newInstance();
+        } else {
+            try {
+                target = BeanAccessor.of(targetClass).newInstance(targetClass.getDeclaredConstructor(argumentTypes), arguments);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return Proxy.newProxyInstance(targetClass.getClassLoader(), proxyInterfaces.interfaces,
+                new TargetInvocationHandler(target, aspectListExecutor, proxyInterfaces.targetMethodMap));
+    }
+
+    /**
+     * 一个类的代理接口，以及接口方法 -> 被代理类中的方法
+     */
+    private static final class ProxyInterfaces {
+        private final Class<?>[] interfaces;
+        private final Map<Method, TargetMethod> targetMethodMap = new HashMap<>();
+
+        private ProxyInterfaces(Class<?> targetClass) {
+            Set<Class<?>> interfaceSet = new LinkedHashSet<>();
+            for (Class<?> current = targetClass; current != null; current = current.getSuperclass()) {
+                for (Class<?> interfaceClass : current.getInterfaces()) {
+                    interfaceSet.add(interfaceClass);
+                }
+            }
+            if (interfaceSet.isEmpty()) {
+                throw new RuntimeException(targetClass.getName() + " does not implement any interface, unable to create JDK proxy");
+            }
+            MethodHandles.Lookup lookup;
+            try {
+                lookup = MethodHandles.privateLookupIn(targetClass, MethodHandles.lookup());
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            for (Class<?> interfaceClass : interfaceSet) {
+                for (Method interfaceMethod : interfaceClass.getMethods()) {
+                    targetMethodMap.put(interfaceMethod, new TargetMethod(lookup, targetClass, interfaceMethod));
+                }
+            }
+            for (String objectMethodName : new String[]{"toString", "equals", "hashCode"}) {
+                for (Method objectMethod : Object.class.getMethods()) {
+                    if (objectMethod.getName().equals(objectMethodName)) {
+                        targetMethodMap.put(objectMethod, new TargetMethod(lookup, targetClass, objectMethod));
+                    }
+                }
+            }
+            interfaceSet.add(TargetProxy.class);
+            interfaces = interfaceSet.toArray(new Class<?>[0]);
+        }
+    }
+
+    /**
+     * 被代理类中实现接口方法的方法，以及调用它的MethodHandle
+     */
+    private static final class TargetMethod {
+        private final Method method;
+        private final TargetInvoker targetInvoker;
+
+        private TargetMethod(MethodHandles.Lookup lookup, Class<?> targetClass, Method interfaceMethod) {
+            try {
+                this.method = targetClass.getMethod(interfaceMethod.getName(), interfaceMethod.getParameterTypes());
+                MethodHandle methodHandle = lookup.unreflect(method)
+                        .asSpreader(Object[].class, method.getParameterCount())
+                        .asType(INVOKER_TYPE);
+                this.targetInvoker = (target, args) -> (Object) methodHandle.invokeExact(target, args);
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static final class TargetInvocationHandler implements InvocationHandler {
+        private final Object target;
+        private final AspectListExecutor aspectListExecutor;
+        private final Map<Method, TargetMethod> targetMethodMap;
+
+        private TargetInvocationHandler(Object target, AspectListExecutor aspectListExecutor, Map<Method, TargetMethod> targetMethodMap) {
+            this.target = target;
+            this.aspectListExecutor = aspectListExecutor;
+            this.targetMethodMap = targetMethodMap;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            TargetMethod targetMethod = targetMethodMap.get(method);
+            if (targetMethod == null) {
+                //TargetProxy.getProxyTarget
+                return target;
+            }
+            if (args != null && args.length == 1 && method.getName().equals("equals") && args[0] == proxy) {
+                //被代理的对象不认识代理对象，代理对象和自己比较时直接返回true
+                return true;
+            }
+            return aspectListExecutor.invoke(proxy, target, targetMethod.method, args == null ? EMPTY_ARGS : args,
+                    targetMethod.targetInvoker);
+        }
+    }
+}
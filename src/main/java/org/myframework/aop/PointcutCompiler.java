@@ -0,0 +1,531 @@
+package org.myframework.aop;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 常用pointcut表达式的快速匹配
+ *
+ * 项目中的pointcut基本都是下面几种形式：
+ * within(com.example..*)、execution(* com.example.service..*.*(..))、@annotation(com.example.Log)、@within(com.example.Log)
+ * 这些表达式直接被编译成普通的判断（包名前缀、方法名、注解），不需要AspectJ的语法树和类型系统；
+ * 它们之间可以通过&&、||、!以及括号组合
+ *
+ * 其他的表达式（简单类名、参数类型、+、args、this、target等）编译失败，由PointcutLocator交给AspectJ处理
+ * 快速匹配的结果和AspectJ保持一致：
+ * 1.类型的名称使用AspectJ的形式，嵌套类是Outer.Inner而不是Outer$Inner，within(Outer)同样匹配嵌套类中的方法
+ * 2.execution中的声明类型既可以是方法声明所在的类，也可以是它的父类和接口，只要这些类型中声明了或者继承了同一个方法
+ */
+@Slf4j
+public final class PointcutCompiler {
+
+    private static final Pattern TYPE_PATTERN = Pattern.compile("[\\w$.*]+");
+    private static final Pattern NAME_PATTERN = Pattern.compile("[\\w$*]+");
+    private static final Pattern QUALIFIED_NAME = Pattern.compile("[\\w$]+(\\.[\\w$]+)+");
+    private static final Pattern PACKAGE_NAME = Pattern.compile("[\\w$]+(\\.[\\w$]+)*");
+    private static final Set<String> PRIMITIVE_TYPES = Set.of("void", "boolean", "byte", "char", "short", "int", "long", "float", "double");
+
+    private PointcutCompiler() {
+    }
+
+    /**
+     * 编译之后的pointcut表达式，可以被多个线程同时使用
+     */
+    public interface CompiledPointcut {
+
+        /**
+         * 初筛：类中是否可能存在匹配的方法，可以多报，但是不能漏报
+         * @param targetClass 目标类
+         * @return 是否可能匹配
+         */
+        boolean couldMatch(Class<?> targetClass);
+
+        /**
+         * 精筛：方法的执行是否匹配
+         * @param method 目标方法
+         * @return 是否匹配
+         */
+        boolean matches(Method method);
+    }
+
+    /**
+     * 编译pointcut表达式
+     * @param expression pointcut表达式
+     * @param classLoader 加载注解类型使用的类加载器
+     * @return 编译的结果，不支持的表达式返回null
+     */
+    public static CompiledPointcut compile(String expression, ClassLoader classLoader) {
+        try {
+            Parser parser = new Parser(expression, classLoader);
+            CompiledPointcut pointcut = parser.parseOr();
+            parser.skipWhitespace();
+            if (!parser.isEnd()) {
+                throw new UnsupportedPointcutException("unexpected character at " + parser.position);
+            }
+            return pointcut;
+        } catch (UnsupportedPointcutException e) {
+            log.debug("pointcut [" + expression + "] is not supported by fast path: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 递归下降解析：
+     * or      := and ('||' and)*
+     * and     := unary ('&&' unary)*
+     * unary   := '!' unary | '(' or ')' | designator '(' body ')'
+     */
+    private static final class Parser {
+        private final String expression;
+        private final ClassLoader classLoader;
+        private int position;
+
+        private Parser(String expression, ClassLoader classLoader) {
+            this.expression = expression;
+            this.classLoader = classLoader;
+        }
+
+        private CompiledPointcut parseOr() {
+            CompiledPointcut left = parseAnd();
+            while (consume("||")) {
+                CompiledPointcut first = left;
+                CompiledPointcut second = parseAnd();
+                left = new CompiledPointcut() {
+                    @Override
+                    public boolean couldMatch(Class<?> targetClass) {
+                        return first.couldMatch(targetClass) || second.couldMatch(targetClass);
+                    }
+
+                    @Override
+                    public boolean matches(Method method) {
+                        return first.matches(method) || second.matches(method);
+                    }
+                };
+            }
+            return left;
+        }
+
+        private CompiledPointcut parseAnd() {
+            CompiledPointcut left = parseUnary();
+            while (consume("&&")) {
+                CompiledPointcut first = left;
+                CompiledPointcut second = parseUnary();
+                left = new CompiledPointcut() {
+                    @Override
+                    public boolean couldMatch(Class<?> targetClass) {
+                        return first.couldMatch(targetClass) && second.couldMatch(targetClass);
+                    }
+
+                    @Override
+                    public boolean matches(Method method) {
+                        return first.matches(method) && second.matches(method);
+                    }
+                };
+            }
+            return left;
+        }
+
+        private CompiledPointcut parseUnary() {
+            if (consume("!")) {
+                CompiledPointcut negated = parseUnary();
+                return new CompiledPointcut() {
+                    @Override
+                    public boolean couldMatch(Class<?> targetClass) {
+                        //类中有不匹配的方法就可能匹配，这里无法判断，只能多报
+                        return true;
+                    }
+
+                    @Override
+                    public boolean matches(Method method) {
+                        return !negated.matches(method);
+                    }
+                };
+            }
+            if (consume("(")) {
+                CompiledPointcut pointcut = parseOr();
+                if (!consume(")")) {
+                    throw new UnsupportedPointcutException("missing ) at " + position);
+                }
+                return pointcut;
+            }
+            skipWhitespace();
+            int start = position;
+            while (!isEnd() && (Character.isLetter(expression.charAt(position)) || expression.charAt(position) == '@')) {
+                position++;
+            }
+            String designator = expression.substring(start, position);
+            if (!consume("(")) {
+                throw new UnsupportedPointcutException("missing ( after " + designator);
+            }
+            String body = readBody();
+            switch (designator) {
+                case "within":
+                    return within(compileTypePattern(body));
+                case "execution":
+                    return execution(body);
+                case "@annotation":
+                    return annotation(loadAnnotationType(body));
+                case "@within":
+                    return withinAnnotation(loadAnnotationType(body));
+                default:
+                    throw new UnsupportedPointcutException("designator " + designator);
+            }
+        }
+
+        /**
+         * 读取到和已经读过的(匹配的)为止，execution的参数列表中还有括号
+         */
+        private String readBody() {
+            int start = position;
+            int depth = 1;
+            while (!isEnd()) {
+                char c = expression.charAt(position++);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return expression.substring(start, position - 1).trim();
+                }
+            }
+            throw new UnsupportedPointcutException("missing )");
+        }
+
+        private Class<? extends Annotation> loadAnnotationType(String name) {
+            if (!QUALIFIED_NAME.matcher(name).matches()) {
+                throw new UnsupportedPointcutException("annotation type " + name);
+            }
+            Class<?> type;
+            try {
+                type = Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new UnsupportedPointcutException("annotation type " + name + " not found");
+            }
+            Retention retention = type.getAnnotation(Retention.class);
+            if (!type.isAnnotation() || retention == null || retention.value() != RetentionPolicy.RUNTIME) {
+                throw new UnsupportedPointcutException(name + " is not a runtime annotation");
+            }
+            return type.asSubclass(Annotation.class);
+        }
+
+        private boolean consume(String token) {
+            skipWhitespace();
+            if (expression.startsWith(token, position)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (!isEnd() && Character.isWhitespace(expression.charAt(position))) {
+                position++;
+            }
+        }
+
+        private boolean isEnd() {
+            return position >= expression.length();
+        }
+    }
+
+    /**
+     * 和AspectJ一样，嵌套类中的代码同样在外部类之内
+     */
+    private static CompiledPointcut within(TypePattern typePattern) {
+        return new CompiledPointcut() {
+            @Override
+            public boolean couldMatch(Class<?> targetClass) {
+                return matchesEnclosing(targetClass, typePattern);
+            }
+
+            @Override
+            public boolean matches(Method method) {
+                return matchesEnclosing(method.getDeclaringClass(), typePattern);
+            }
+        };
+    }
+
+    private static boolean matchesEnclosing(Class<?> type, TypePattern typePattern) {
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            if (typePattern.matches(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CompiledPointcut annotation(Class<? extends Annotation> annotationType) {
+        return new CompiledPointcut() {
+            @Override
+            public boolean couldMatch(Class<?> targetClass) {
+                for (Class<?> current = targetClass; current != null; current = current.getSuperclass()) {
+                    for (Method method : current.getDeclaredMethods()) {
+                        if (method.isAnnotationPresent(annotationType)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public boolean matches(Method method) {
+                return method.isAnnotationPresent(annotationType);
+            }
+        };
+    }
+
+    private static CompiledPointcut withinAnnotation(Class<? extends Annotation> annotationType) {
+        return new CompiledPointcut() {
+            @Override
+            public boolean couldMatch(Class<?> targetClass) {
+                for (Class<?> current = targetClass; current != null; current = current.getSuperclass()) {
+                    if (current.isAnnotationPresent(annotationType)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public boolean matches(Method method) {
+                return method.getDeclaringClass().isAnnotationPresent(annotationType);
+            }
+        };
+    }
+
+    /**
+     * execution([修饰符] 返回值类型 [声明类型.]方法名(参数))
+     * 返回值类型只支持*、基本类型和全限定类名，参数只支持(..)和()
+     */
+    private static CompiledPointcut execution(String body) {
+        int open = body.indexOf('(');
+        if (open < 0 || !body.endsWith(")")) {
+            throw new UnsupportedPointcutException("execution(" + body + ")");
+        }
+        String parameters = body.substring(open + 1, body.length() - 1).trim();
+        boolean anyParameters = parameters.equals("..");
+        if (!anyParameters && !parameters.isEmpty()) {
+            throw new UnsupportedPointcutException("parameter pattern " + parameters);
+        }
+        String[] head = body.substring(0, open).trim().split("\\s+");
+        if (head.length < 2) {
+            throw new UnsupportedPointcutException("execution(" + body + ")");
+        }
+        int requiredModifiers = 0;
+        for (int i = 0; i < head.length - 2; i++) {
+            requiredModifiers |= toModifier(head[i]);
+        }
+        String returnType = head[head.length - 2];
+        if (!returnType.equals("*") && !PRIMITIVE_TYPES.contains(returnType) && !QUALIFIED_NAME.matcher(returnType).matches()) {
+            throw new UnsupportedPointcutException("return type pattern " + returnType);
+        }
+        String declaringTypeAndName = head[head.length - 1];
+        int dot = declaringTypeAndName.lastIndexOf('.');
+        TypePattern declaringType = dot < 0 ? null : compileTypePattern(declaringTypeAndName.substring(0, dot));
+        NamePattern namePattern = compileNamePattern(declaringTypeAndName.substring(dot + 1));
+        int modifiers = requiredModifiers;
+        return new CompiledPointcut() {
+            @Override
+            public boolean couldMatch(Class<?> targetClass) {
+                //匹配的方法一定声明在目标类或者它的父类、接口中
+                return declaringType == null || matchesHierarchy(targetClass, declaringType::matches);
+            }
+
+            @Override
+            public boolean matches(Method method) {
+                if ((method.getModifiers() & modifiers) != modifiers
+                        || !namePattern.matches(method.getName())
+                        || (!anyParameters && method.getParameterCount() != 0)
+                        || !matchesReturnType(returnType, method.getReturnType())) {
+                    return false;
+                }
+                return declaringType == null || matchesHierarchy(method.getDeclaringClass(),
+                        type -> declaringType.matches(type) && matchesHierarchy(type, superType -> declaresMethod(superType, method)));
+            }
+        };
+    }
+
+    private static int toModifier(String modifier) {
+        switch (modifier) {
+            case "public":
+                return Modifier.PUBLIC;
+            case "protected":
+                return Modifier.PROTECTED;
+            case "private":
+                return Modifier.PRIVATE;
+            case "static":
+                return Modifier.STATIC;
+            case "final":
+                return Modifier.FINAL;
+            default:
+                throw new UnsupportedPointcutException("modifier " + modifier);
+        }
+    }
+
+    private static boolean matchesReturnType(String returnType, Class<?> actualType) {
+        if (returnType.equals("*")) {
+            return true;
+        }
+        return !actualType.isArray() && returnType.equals(getTypeName(actualType));
+    }
+
+    /**
+     * 类型本身、父类以及所有接口中是否有满足条件的
+     */
+    private static boolean matchesHierarchy(Class<?> type, Predicate<Class<?>> predicate) {
+        Deque<Class<?>> toVisit = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        toVisit.add(type);
+        while (!toVisit.isEmpty()) {
+            Class<?> current = toVisit.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            if (predicate.test(current)) {
+                return true;
+            }
+            if (current.getSuperclass() != null) {
+                toVisit.add(current.getSuperclass());
+            }
+            toVisit.addAll(Arrays.asList(current.getInterfaces()));
+        }
+        return false;
+    }
+
+    /**
+     * 类型中是否声明了同一个方法，和AspectJ一样，接口中被认为声明了Object的方法
+     */
+    private static boolean declaresMethod(Class<?> type, Method method) {
+        if (type == method.getDeclaringClass()) {
+            return true;
+        }
+        if (type.isInterface() && declaresMethod(Object.class, method)) {
+            return true;
+        }
+        for (Method candidate : type.getDeclaredMethods()) {
+            if (candidate.getName().equals(method.getName()) && !Modifier.isPrivate(candidate.getModifiers())
+                    && !Modifier.isStatic(candidate.getModifiers())
+                    && Arrays.equals(candidate.getParameterTypes(), method.getParameterTypes())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * AspectJ中类型的名称，嵌套类使用.分隔
+     */
+    static String getTypeName(Class<?> type) {
+        if (type.isMemberClass()) {
+            return getTypeName(type.getDeclaringClass()) + "." + type.getSimpleName();
+        }
+        return type.getName();
+    }
+
+    /**
+     * 类型的匹配
+     */
+    private interface TypePattern {
+        boolean matches(Class<?> type);
+    }
+
+    /**
+     * 支持全限定类名以及带有*、..的类型，简单类名需要按照import解析，交给AspectJ
+     */
+    private static TypePattern compileTypePattern(String pattern) {
+        if (pattern.equals("*")) {
+            return type -> true;
+        }
+        if (!TYPE_PATTERN.matcher(pattern).matches() || !pattern.contains(".")
+                || pattern.startsWith(".") || pattern.endsWith(".") || pattern.contains("...")) {
+            throw new UnsupportedPointcutException("type pattern " + pattern);
+        }
+        if (pattern.endsWith("..*") && PACKAGE_NAME.matcher(pattern.substring(0, pattern.length() - 3)).matches()) {
+            //包以及所有子包中的类型
+            String prefix = pattern.substring(0, pattern.length() - 2);
+            return type -> getTypeName(type).startsWith(prefix);
+        }
+        if (pattern.endsWith(".*") && PACKAGE_NAME.matcher(pattern.substring(0, pattern.length() - 2)).matches()) {
+            //包中直接声明的类型
+            String prefix = pattern.substring(0, pattern.length() - 1);
+            return type -> {
+                String typeName = getTypeName(type);
+                return typeName.startsWith(prefix) && typeName.indexOf('.', prefix.length()) < 0;
+            };
+        }
+        if (pattern.indexOf('*') < 0 && !pattern.contains("..")) {
+            return type -> getTypeName(type).equals(pattern);
+        }
+        Pattern regex = Pattern.compile(toRegex(pattern));
+        return type -> regex.matcher(getTypeName(type)).matches();
+    }
+
+    private static String toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '.' && i + 1 < pattern.length() && pattern.charAt(i + 1) == '.') {
+                //..匹配任意层数的包，包括没有
+                regex.append("\\.(?:.*\\.)?");
+                i++;
+            } else if (c == '.') {
+                regex.append("\\.");
+            } else if (c == '*') {
+                regex.append("[^.]*");
+            } else if (c == '$') {
+                regex.append("\\$");
+            } else {
+                regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+
+    /**
+     * 方法名的匹配
+     */
+    private interface NamePattern {
+        boolean matches(String name);
+    }
+
+    private static NamePattern compileNamePattern(String pattern) {
+        if (!NAME_PATTERN.matcher(pattern).matches()) {
+            throw new UnsupportedPointcutException("name pattern " + pattern);
+        }
+        if (pattern.equals("*")) {
+            return name -> true;
+        }
+        int wildcard = pattern.indexOf('*');
+        if (wildcard < 0) {
+            return pattern::equals;
+        }
+        if (wildcard == pattern.length() - 1) {
+            String prefix = pattern.substring(0, wildcard);
+            return name -> name.startsWith(prefix);
+        }
+        Pattern regex = Pattern.compile(toRegex(pattern));
+        return name -> regex.matcher(name).matches();
+    }
+
+    /**
+     * 表达式超出了快速匹配支持的范围，只在编译过程中使用，不会抛出到外面
+     */
+    private static final class UnsupportedPointcutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private UnsupportedPointcutException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.myframework.aop;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.core.GeneratorStrategy;
+import net.sf.cglib.proxy.Enhancer;
+import org.myframework.core.plan.WiringPlan;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的代理类缓存
+ *
+ * CGLIB每次启动都要用ASM为每个被代理的类重新生成子类的字节码，这是doAop中开销最大的部分。
+ * 指定缓存目录之后，第一次启动时把生成的字节码写入目录，之后的启动直接使用缓存的字节码定义代理类，不再生成字节码
+ *
+ * 缓存文件名是 被代理类的类名-key.class，key由下面的内容计算：
+ * 1.被代理类以及它所有父类的class文件的校验和，被代理类重新编译之后缓存自动失效
+ * 2.需要拦截的方法，也就是匹配到的Aspect集合决定的那部分代理类结构，Aspect的pointcut变化之后缓存自动失效
+ * 同一个类旧的缓存文件在写入新文件时被删除
+ *
+ * 只缓存Enhancer生成的代理类，MethodProxy第一次调用时生成的FastClass依然由CGLIB生成
+ */
+@Slf4j
+public final class ProxyClassCache {
+
+    /**
+     * 代理类缓存目录，没有设置时不缓存
+     * 比如 -Dmyframework.aop.proxyCacheDir=target/proxy-cache
+     */
+    public static final String CACHE_DIR_PROPERTY = "myframework.aop.proxyCacheDir";
+
+    /**
+     * 缓存格式的版本，生成方式变化时修改，使旧的缓存失效
+     */
+    private static final int VERSION = 1;
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+
+    private ProxyClassCache() {
+    }
+
+    /**
+     * @return 缓存目录没有设置时返回null
+     */
+    static Path getCacheDirectory() {
+        String cacheDirectory = System.getProperty(CACHE_DIR_PROPERTY);
+        return cacheDirectory == null || cacheDirectory.isEmpty() ? null : Paths.get(cacheDirectory);
+    }
+
+    /**
+     * 为代理类创建使用缓存的生成策略
+     * @param cacheDirectory 缓存目录
+     * @param targetClass 被代理的Class对象
+     * @param interceptedMethods 需要经过方法拦截器的方法
+     * @return 生成策略
+     */
+    static GeneratorStrategy strategyFor(Path cacheDirectory, Class<?> targetClass, Set<Method> interceptedMethods) {
+        return new CachingGeneratorStrategy(cacheDirectory, targetClass, interceptedMethods);
+    }
+
+    static long computeKey(Class<?> targetClass, Set<Method> interceptedMethods) throws IOException {
+        CRC32 crc32 = new CRC32();
+        crc32.update(VERSION);
+        for (Class<?> current = targetClass; current != null && current.getClassLoader() != null; current = current.getSuperclass()) {
+            update(crc32, current.getName());
+            long classChecksum = WiringPlan.classChecksum(current.getClassLoader(), current.getName());
+            if (classChecksum < 0) {
+                throw new IOException("class file of " + current.getName() + " not found");
+            }
+            crc32.update(ByteBuffer.allocate(Long.BYTES).putLong(0, classChecksum));
+        }
+        List<String> signatures = new ArrayList<>();
+        for (Method method : interceptedMethods) {
+            signatures.add(method.getDeclaringClass().getName() + "." + method.getName()
+                    + Arrays.toString(method.getParameterTypes()));
+        }
+        signatures.sort(null);
+        for (String signature : signatures) {
+            update(crc32, signature);
+        }
+        return crc32.getValue();
+    }
+
+    private static void update(CRC32 crc32, String value) {
+        crc32.update(value.getBytes(StandardCharsets.UTF_8));
+        crc32.update(0);
+    }
+
+    /**
+     * Enhancer生成代理类时先查找缓存，缓存不存在或者不可用时才生成字节码并写入缓存
+     * 缓存的读写失败都不影响代理类的创建
+     */
+    private static final class CachingGeneratorStrategy implements GeneratorStrategy {
+        private final Path cacheDirectory;
+        private final Class<?> targetClass;
+        private final Set<Method> interceptedMethods;
+
+        private CachingGeneratorStrategy(Path cacheDirectory, Class<?> targetClass, Set<Method> interceptedMethods) {
+            this.cacheDirectory = cacheDirectory;
+            this.targetClass = targetClass;
+            this.interceptedMethods = interceptedMethods;
+        }
+
+        @Override
+        public byte[] generate(ClassGenerator classGenerator) throws Exception {
+            if (!(classGenerator instanceof Enhancer)) {
+                return DefaultGeneratorStrategy.INSTANCE.generate(classGenerator);
+            }
+            Path cacheFile;
+            try {
+                cacheFile = cacheDirectory.resolve(targetClass.getName() + "-"
+                        + Long.toHexString(computeKey(targetClass, interceptedMethods)) + ".class");
+            } catch (IOException e) {
+                log.debug("unable to cache proxy class of " + targetClass.getName(), e);
+                return DefaultGeneratorStrategy.INSTANCE.generate(classGenerator);
+            }
+            byte[] classBytes = read(cacheFile);
+            if (classBytes != null) {
+                log.debug("load proxy class of " + targetClass.getName() + " from " + cacheFile);
+                return classBytes;
+            }
+            classBytes = DefaultGeneratorStrategy.INSTANCE.generate(classGenerator);
+            write(cacheFile, classBytes);
+            return classBytes;
+        }
+
+        private byte[] read(Path cacheFile) {
+            if (!Files.isRegularFile(cacheFile)) {
+                return null;
+            }
+            try {
+                byte[] classBytes = Files.readAllBytes(cacheFile);
+                if (classBytes.length >= 4 && ByteBuffer.wrap(classBytes).getInt() == CLASS_FILE_MAGIC) {
+                    return classBytes;
+                }
+                log.warn("ignore broken proxy class cache " + cacheFile);
+            } catch (IOException e) {
+                log.warn("ignore unreadable proxy class cache " + cacheFile, e);
+            }
+            return null;
+        }
+
+        /**
+         * 先写入临时文件再移动，多个进程同时启动时不会读到写了一半的文件
+         */
+        private void write(Path cacheFile, byte[] classBytes) {
+            try {
+                Files.createDirectories(cacheDirectory);
+                deleteStaleFiles(cacheFile);
+                Path tempFile = Files.createTempFile(cacheDirectory, targetClass.getName(), ".tmp");
+                Files.write(tempFile, classBytes);
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("unable to write proxy class cache " + cacheFile, e);
+            }
+        }
+
+        private void deleteStaleFiles(Path cacheFile) throws IOException {
+            try (DirectoryStream<Path> staleFiles = Files.newDirectoryStream(cacheDirectory, targetClass.getName() + "-*.class")) {
+                for (Path staleFile : staleFiles) {
+                    if (!staleFile.equals(cacheFile)) {
+                        Files.deleteIfExists(staleFile);
+                    }
+                }
+            }
+        }
+    }
+}
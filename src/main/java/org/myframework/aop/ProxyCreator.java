@@ -1,9 +1,20 @@
 package org.myframework.aop;
 
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.NoOp;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.Set;
 
 public class ProxyCreator {
+
+    private static final int NO_OP_CALLBACK = 0;
+    private static final int INTERCEPTOR_CALLBACK = 1;
+
     /**
      * 创建动态代理对象并返回
      * @param targetClass 被代理的Class对象
@@ -13,4 +24,87 @@ public class ProxyCreator {
     public static Object createProxy(Class<?> targetClass, MethodInterceptor methodInterceptor) {
         return Enhancer.create(targetClass, methodInterceptor);
     }
+
+    /**
+     * 通过带参数的构造器创建动态代理对象，用于没有无参构造器的构造器注入的bean
+     * @param targetClass 被代理的Class对象
+     * @param methodInterceptor 方法拦截器
+     * @param argumentTypes 构造器参数的类型
+     * @param arguments 构造器参数
+     * @return 动态代理对象
+     */
+    public static Object createProxy(Class<?> targetClass, MethodInterceptor methodInterceptor,
+                                     Class<?>[] argumentTypes, Object[] arguments) {
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(targetClass);
+        enhancer.setCallback(methodInterceptor);
+        return enhancer.create(argumentTypes, arguments);
+    }
+
+    /**
+     * 创建只拦截指定方法的动态代理对象
+     * 其他方法（包括toString、hashCode以及没有匹配Aspect的方法）由NoOp处理，代理类不会重写这些方法，调用时直接执行父类的方法
+     * @param targetClass 被代理的Class对象
+     * @param methodInterceptor 方法拦截器
+     * @param interceptedMethods 需要经过方法拦截器的方法
+     * @return 动态代理对象
+     */
+    public static Object createProxy(Class<?> targetClass, MethodInterceptor methodInterceptor, Set<Method> interceptedMethods) {
+        return createEnhancer(targetClass, methodInterceptor, interceptedMethods).create();
+    }
+
+    /**
+     * 通过带参数的构造器创建只拦截指定方法的动态代理对象
+     * @param targetClass 被代理的Class对象
+     * @param methodInterceptor 方法拦截器
+     * @param interceptedMethods 需要经过方法拦截器的方法
+     * @param argumentTypes 构造器参数的类型
+     * @param arguments 构造器参数
+     * @return 动态代理对象
+     */
+    public static Object createProxy(Class<?> targetClass, MethodInterceptor methodInterceptor, Set<Method> interceptedMethods,
+                                     Class<?>[] argumentTypes, Object[] arguments) {
+        return createEnhancer(targetClass, methodInterceptor, interceptedMethods).create(argumentTypes, arguments);
+    }
+
+    private static Enhancer createEnhancer(Class<?> targetClass, MethodInterceptor methodInterceptor, Set<Method> interceptedMethods) {
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(targetClass);
+        enhancer.setCallbacks(new Callback[]{NoOp.INSTANCE, methodInterceptor});
+        enhancer.setCallbackFilter(new InterceptedMethodFilter(interceptedMethods));
+        Path cacheDirectory = ProxyClassCache.getCacheDirectory();
+        if (cacheDirectory != null) {
+            enhancer.setStrategy(ProxyClassCache.strategyFor(cacheDirectory, targetClass, interceptedMethods));
+        }
+        return enhancer;
+    }
+
+    /**
+     * 按方法选择callback
+     *
+     * CGLIB用callbackFilter作为代理类缓存的key的一部分，
+     * 所以这里按需要拦截的方法集合实现equals和hashCode，同一个类的原型bean每次创建代理时可以复用同一个代理类
+     */
+    private static final class InterceptedMethodFilter implements CallbackFilter {
+        private final Set<Method> interceptedMethods;
+
+        private InterceptedMethodFilter(Set<Method> interceptedMethods) {
+            this.interceptedMethods = Set.copyOf(interceptedMethods);
+        }
+
+        @Override
+        public int accept(Method method) {
+            return interceptedMethods.contains(method) ? INTERCEPTOR_CALLBACK : NO_OP_CALLBACK;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InterceptedMethodFilter && interceptedMethods.equals(((InterceptedMethodFilter) o).interceptedMethods);
+        }
+
+        @Override
+        public int hashCode() {
+            return interceptedMethods.hashCode();
+        }
+    }
 }
@@ -0,0 +1,39 @@
+package org.myframework.aop;
+
+import org.myframework.aop.annotation.ProxyMode;
+
+/**
+ * 创建动态代理对象
+ *
+ * 所有的实现都把被代理的方法交给同一个AspectListExecutor执行Aspect链，区别只在于代理对象的形式以及如何调用被代理的方法：
+ * 1.CglibProxyFactory：CGLIB生成的子类，通过MethodProxy调用父类的方法
+ * 2.JdkProxyFactory：java.lang.reflect.Proxy，代理对象只实现bean的接口，调用被代理的对象
+ * 3.SubclassProxyFactory：直接生成的子类，重写的方法直接调用Aspect链，通过invokespecial调用父类的方法
+ */
+public interface ProxyFactory {
+
+    /**
+     * 创建动态代理对象
+     * @param targetClass 被代理的Class对象
+     * @param aspectListExecutor 被代理类的Aspect链
+     * @param argumentTypes 构造器参数的类型，使用无参构造器时为空数组
+     * @param arguments 构造器参数
+     * @return 动态代理对象
+     */
+    Object createProxy(Class<?> targetClass, AspectListExecutor aspectListExecutor, Class<?>[] argumentTypes, Object[] arguments);
+
+    /**
+     * @param proxyMode 代理方式
+     * @return 对应的实现，实现都是无状态的，可以共享
+     */
+    static ProxyFactory of(ProxyMode proxyMode) {
+        switch (proxyMode) {
+            case JDK:
+                return JdkProxyFactory.INSTANCE;
+            case SUBCLASS:
+                return SubclassProxyFactory.INSTANCE;
+            default:
+                return CglibProxyFactory.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package org.myframework.aop;
+
+import org.myframework.util.BeanAccessor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 直接生成被代理类的子类作为代理对象
+ *
+ * 和CGLIB一样只重写存在Aspect链的方法，区别在于重写的方法中是固定的调用，没有Callback、MethodProxy和FastClass：
+ * <pre>
+ * public String greet(String name) {
+ *     AspectListExecutor executor = this.myframework$executor;
+ *     if (executor == null) {
+ *         return super.greet(name);               //父类的构造器中调用的方法
+ *     }
+ *     return (String) executor.invoke(this, this, myframework$methods[0], new Object[]{name}, myframework$invokers[0]);
+ * }
+ *
+ * public Object myframework$invokeSuper(int index, Object[] args) {
+ *     switch (index) {
+ *         case 0: return super.greet((String) args[0]);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * Aspect链的最后一步通过myframework$invokeSuper中的tableswitch直接invokespecial父类的方法
+ *
+ * 代理类和被代理类在同一个包、同一个类加载器中，按照被代理类和需要拦截的方法缓存，原型bean不会重复生成
+ */
+public class SubclassProxyFactory implements ProxyFactory {
+
+    static final SubclassProxyFactory INSTANCE = new SubclassProxyFactory();
+
+    private static final String EXECUTOR_FIELD = "myframework$executor";
+    private static final String METHODS_FIELD = "myframework$methods";
+    private static final String INVOKERS_FIELD = "myframework$invokers";
+    private static final String SET_EXECUTOR_METHOD = "myframework$setExecutor";
+    private static final String INVOKE_SUPER_METHOD = "myframework$invokeSuper";
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final String EXECUTOR = Type.getInternalName(AspectListExecutor.class);
+    private static final String EXECUTOR_DESCRIPTOR = Type.getDescriptor(AspectListExecutor.class);
+    private static final String METHODS_DESCRIPTOR = Type.getDescriptor(Method[].class);
+    private static final String INVOKERS_DESCRIPTOR = Type.getDescriptor(TargetInvoker[].class);
+    private static final String INVOKE_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Object.class),
+            Type.getType(Object.class), Type.getType(Method.class), Type.getType(Object[].class), Type.getType(TargetInvoker.class));
+
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    /**
+     * 被代理类 -> (需要拦截的方法 -> 代理类)
+     */
+    private static final ClassValue<Map<Set<Method>, Class<?>>> PROXY_CLASSES = new ClassValue<Map<Set<Method>, Class<?>>>() {
+        @Override
+        protected Map<Set<Method>, Class<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * 生成的代理类实现的接口
+     */
+    public interface GeneratedProxy {
+
+        /**
+         * 设置代理对象使用的Aspect链，设置之前（比如父类的构造器中）调用的方法直接执行父类的方法
+         * @param aspectListExecutor Aspect链
+         */
+        void myframework$setExecutor(AspectListExecutor aspectListExecutor);
+
+        /**
+         * 调用父类的方法
+         * @param index 方法在代理类中的序号
+         * @param args 参数
+         * @return 父类方法的返回值
+         * @throws Throwable 父类方法抛出的异常
+         */
+        Object myframework$invokeSuper(int index, Object[] args) throws Throwable;
+    }
+
+    @Override
+    public Object createProxy(Class<?> targetClass, AspectListExecutor aspectListExecutor, Class<?>[] argumentTypes, Object[] arguments) {
+        Set<Method> advisedMethods = aspectListExecutor.getAdvisedMethods();
+        Map<Set<Method>, Class<?>> proxyClassMap = PROXY_CLASSES.get(targetClass);
+        Class<?> proxyClass = proxyClassMap.get(advisedMethods);
+        if (proxyClass == null) {
+            proxyClass = proxyClassMap.computeIfAbsent(advisedMethods, key -> defineProxyClass(targetClass, key));
+        }
+        Object proxy;
+        if (argumentTypes.length == 0) {
+            proxy = BeanAccessor.of(proxyClass).newInstance();
+        } else {
+            try {
+                proxy = BeanAccessor.of(proxyClass).newInstance(proxyClass.getDeclaredConstructor(argumentTypes), arguments);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        ((GeneratedProxy) proxy).myframework$setExecutor(aspectListExecutor);
+        return proxy;
+    }
+
+    private static Class<?> defineProxyClass(Class<?> targetClass, Set<Method> advisedMethods) {
+        if (Modifier.isFinal(targetClass.getModifiers())) {
+            throw new RuntimeException("unable to create subclass proxy of final class " + targetClass.getName());
+        }
+        List<Method> methods = new ArrayList<>();
+        for (Method method : advisedMethods) {
+            if (isOverridable(targetClass, method)) {
+                methods.add(method);
+            }
+        }
+        String proxyClassName = targetClass.getName() + "$$MyframeworkProxy$$" + CLASS_COUNTER.incrementAndGet();
+        byte[] classBytes = generate(targetClass, Type.getInternalName(targetClass), proxyClassName.replace('.', '/'), methods);
+        try {
+            Class<?> proxyClass = MethodHandles.privateLookupIn(targetClass, MethodHandles.lookup()).defineClass(classBytes);
+            TargetInvoker[] invokers = new TargetInvoker[methods.size()];
+            for (int i = 0; i < invokers.length; i++) {
+                int index = i;
+                invokers[i] = (target, args) -> ((GeneratedProxy) target).myframework$invokeSuper(index, args);
+            }
+            proxyClass.getField(METHODS_FIELD).set(null, methods.toArray(new Method[0]));
+            proxyClass.getField(INVOKERS_FIELD).set(null, invokers);
+            return proxyClass;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("unable to define subclass proxy of " + targetClass.getName(), e);
+        }
+    }
+
+    /**
+     * 其他包中父类的包私有方法无法在代理类中重写，和CGLIB一样不拦截
+     */
+    private static boolean isOverridable(Class<?> targetClass, Method method) {
+        int modifiers = method.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers) || Modifier.isFinal(modifiers)) {
+            return false;
+        }
+        return Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers)
+                || method.getDeclaringClass().getPackageName().equals(targetClass.getPackageName())
+                && method.getDeclaringClass().getClassLoader() == targetClass.getClassLoader();
+    }
+
+    private static byte[] generate(Class<?> targetClass, String superName, String proxyName, List<Method> methods) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                //生成的代码中分支合并时栈上的类型都相同，不会走到需要加载类的情况
+                return OBJECT;
+            }
+        };
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, proxyName, null, superName,
+                new String[]{Type.getInternalName(GeneratedProxy.class)});
+        classWriter.visitField(Opcodes.ACC_PRIVATE, EXECUTOR_FIELD, EXECUTOR_DESCRIPTOR, null, null).visitEnd();
+        classWriter.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, METHODS_FIELD, METHODS_DESCRIPTOR, null, null).visitEnd();
+        classWriter.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, INVOKERS_FIELD, INVOKERS_DESCRIPTOR, null, null).visitEnd();
+
+        boolean hasConstructor = false;
+        for (Constructor<?> constructor : targetClass.getDeclaredConstructors()) {
+            if (!Modifier.isPrivate(constructor.getModifiers())) {
+                generateConstructor(classWriter, superName, constructor);
+                hasConstructor = true;
+            }
+        }
+        if (!hasConstructor) {
+            throw new RuntimeException("unable to create subclass proxy of " + targetClass.getName() + " without non-private constructor");
+        }
+        generateSetExecutor(classWriter, proxyName);
+        for (int i = 0; i < methods.size(); i++) {
+            generateOverride(classWriter, superName, proxyName, methods.get(i), i);
+        }
+        generateInvokeSuper(classWriter, superName, methods);
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter classWriter, String superName, Constructor<?> constructor) {
+        String descriptor = Type.getConstructorDescriptor(constructor);
+        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        loadArguments(mv, constructor.getParameterTypes());
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", descriptor, false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateSetExecutor(ClassWriter classWriter, String proxyName) {
+        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, SET_EXECUTOR_METHOD,
+                Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(AspectListExecutor.class)), null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, proxyName, EXECUTOR_FIELD, EXECUTOR_DESCRIPTOR);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 重写被代理的方法：把参数装箱成数组，交给Aspect链
+     */
+    private static void generateOverride(ClassWriter classWriter, String superName, String proxyName, Method method, int index) {
+        String descriptor = Type.getMethodDescriptor(method);
+        int access = method.getModifiers() & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED);
+        String[] exceptions = new String[method.getExceptionTypes().length];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = Type.getInternalName(method.getExceptionTypes()[i]);
+        }
+        MethodVisitor mv = classWriter.visitMethod(access, method.getName(), descriptor, null, exceptions);
+        mv.visitCode();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Class<?> returnType = method.getReturnType();
+
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, proxyName, EXECUTOR_FIELD, EXECUTOR_DESCRIPTOR);
+        mv.visitInsn(Opcodes.DUP);
+        Label invokeChain = new Label();
+        mv.visitJumpInsn(Opcodes.IFNONNULL, invokeChain);
+        //Aspect链还没有设置，直接调用父类的方法
+        mv.visitInsn(Opcodes.POP);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        loadArguments(mv, parameterTypes);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, method.getName(), descriptor, false);
+        mv.visitInsn(Type.getType(returnType).getOpcode(Opcodes.IRETURN));
+
+        mv.visitLabel(invokeChain);
+        //executor.invoke(this, this, METHODS[index], new Object[]{args...}, INVOKERS[index])
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETSTATIC, proxyName, METHODS_FIELD, METHODS_DESCRIPTOR);
+        pushInt(mv, index);
+        mv.visitInsn(Opcodes.AALOAD);
+        pushInt(mv, parameterTypes.length);
+        mv.visitTypeInsn(Opcodes.ANEWARRAY, OBJECT);
+        int slot = 1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Type parameterType = Type.getType(parameterTypes[i]);
+            mv.visitInsn(Opcodes.DUP);
+            pushInt(mv, i);
+            mv.visitVarInsn(parameterType.getOpcode(Opcodes.ILOAD), slot);
+            box(mv, parameterType);
+            mv.visitInsn(Opcodes.AASTORE);
+            slot += parameterType.getSize();
+        }
+        mv.visitFieldInsn(Opcodes.GETSTATIC, proxyName, INVOKERS_FIELD, INVOKERS_DESCRIPTOR);
+        pushInt(mv, index);
+        mv.visitInsn(Opcodes.AALOAD);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR, "invoke", INVOKE_DESCRIPTOR, false);
+        returnUnboxed(mv, Type.getType(returnType));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * myframework$invokeSuper(int index, Object[] args)：按照序号调用父类的方法
+     */
+    private static void generateInvokeSuper(ClassWriter classWriter, String superName, List<Method> methods) {
+        MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, INVOKE_SUPER_METHOD,
+                Type.getMethodDescriptor(Type.getType(Object.class), Type.INT_TYPE, Type.getType(Object[].class)),
+                null, new String[]{Type.getInternalName(Throwable.class)});
+        mv.visitCode();
+        Label defaultLabel = new Label();
+        Label[] labels = new Label[methods.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+        if (!methods.isEmpty()) {
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitTableSwitchInsn(0, methods.size() - 1, defaultLabel, labels);
+        }
+        for (int i = 0; i < labels.length; i++) {
+            Method method = methods.get(i);
+            mv.visitLabel(labels[i]);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int j = 0; j < parameterTypes.length; j++) {
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                pushInt(mv, j);
+                mv.visitInsn(Opcodes.AALOAD);
+                unbox(mv, Type.getType(parameterTypes[j]));
+            }
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, method.getName(), Type.getMethodDescriptor(method), false);
+            Type returnType = Type.getType(method.getReturnType());
+            if (returnType.getSort() == Type.VOID) {
+                mv.visitInsn(Opcodes.ACONST_NULL);
+            } else {
+                box(mv, returnType);
+            }
+            mv.visitInsn(Opcodes.ARETURN);
+        }
+        mv.visitLabel(defaultLabel);
+        mv.visitTypeInsn(Opcodes.NEW, Type.getInternalName(IllegalArgumentException.class));
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(IllegalArgumentException.class), "<init>", "()V", false);
+        mv.visitInsn(Opcodes.ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void loadArguments(MethodVisitor mv, Class<?>[] parameterTypes) {
+        int slot = 1;
+        for (Class<?> parameterClass : parameterTypes) {
+            Type parameterType = Type.getType(parameterClass);
+            mv.visitVarInsn(parameterType.getOpcode(Opcodes.ILOAD), slot);
+            slot += parameterType.getSize();
+        }
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        }
+    }
+
+    /**
+     * 基本类型装箱，引用类型不变
+     */
+    private static void box(MethodVisitor mv, Type type) {
+        if (type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY) {
+            return;
+        }
+        Type boxedType = getBoxedType(type);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, boxedType.getInternalName(), "valueOf",
+                Type.getMethodDescriptor(boxedType, type), false);
+    }
+
+    /**
+     * 栈顶的Object转换成指定的类型
+     */
+    private static void unbox(MethodVisitor mv, Type type) {
+        if (type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY) {
+            if (!type.getInternalName().equals(OBJECT)) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, type.getInternalName());
+            }
+            return;
+        }
+        Type boxedType = getBoxedType(type);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, boxedType.getInternalName());
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxedType.getInternalName(), type.getClassName() + "Value",
+                Type.getMethodDescriptor(type), false);
+    }
+
+    /**
+     * 返回Aspect链的结果，和CGLIB一样，基本类型的返回值为null（比如异常被afterThrowing处理之后）时返回0
+     */
+    private static void returnUnboxed(MethodVisitor mv, Type returnType) {
+        switch (returnType.getSort()) {
+            case Type.VOID:
+                mv.visitInsn(Opcodes.POP);
+                mv.visitInsn(Opcodes.RETURN);
+                return;
+            case Type.OBJECT:
+            case Type.ARRAY:
+                unbox(mv, returnType);
+                mv.visitInsn(Opcodes.ARETURN);
+                return;
+            default:
+                Label notNull = new Label();
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitJumpInsn(Opcodes.IFNONNULL, notNull);
+                mv.visitInsn(Opcodes.POP);
+                pushZero(mv, returnType);
+                mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+                mv.visitLabel(notNull);
+                unbox(mv, returnType);
+                mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        }
+    }
+
+    private static void pushZero(MethodVisitor mv, Type type) {
+        switch (type.getSort()) {
+            case Type.LONG:
+                mv.visitInsn(Opcodes.LCONST_0);
+                break;
+            case Type.FLOAT:
+                mv.visitInsn(Opcodes.FCONST_0);
+                break;
+            case Type.DOUBLE:
+                mv.visitInsn(Opcodes.DCONST_0);
+                break;
+            default:
+                mv.visitInsn(Opcodes.ICONST_0);
+        }
+    }
+
+    private static Type getBoxedType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return Type.getType(Boolean.class);
+            case Type.BYTE:
+                return Type.getType(Byte.class);
+            case Type.CHAR:
+                return Type.getType(Character.class);
+            case Type.SHORT:
+                return Type.getType(Short.class);
+            case Type.INT:
+                return Type.getType(Integer.class);
+            case Type.LONG:
+                return Type.getType(Long.class);
+            case Type.FLOAT:
+                return Type.getType(Float.class);
+            case Type.DOUBLE:
+                return Type.getType(Double.class);
+            default:
+                throw new IllegalArgumentException(type.toString());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.myframework.aop;
+
+/**
+ * 调用被代理的方法，Aspect链的最后一步
+ *
+ * 不同的代理方式调用被代理方法的方式不同：CGLIB通过MethodProxy.invokeSuper，
+ * JDK动态代理调用被代理的对象，生成的子类调用父类的方法
+ */
+@FunctionalInterface
+public interface TargetInvoker {
+
+    /**
+     * @param target 被代理方法的调用对象
+     * @param args 参数
+     * @return 被代理方法的返回值
+     * @throws Throwable 被代理方法抛出的异常
+     */
+    Object invoke(Object target, Object[] args) throws Throwable;
+}
@@ -7,6 +7,7 @@ import java.lang.annotation.Target;
 
 /**
  * 同一类的Aspect（属性值相同）可能有很多个，需要用户设置顺序
+ * 注入List、Map或者数组时，同样按照这个值对实现类进行升序排列
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
@@ -3,41 +3,76 @@ package org.myframework.aop.annotation;
 import org.aspectj.weaver.tools.PointcutExpression;
 import org.aspectj.weaver.tools.PointcutParser;
 import org.aspectj.weaver.tools.ShadowMatch;
+import org.myframework.aop.PointcutCompiler;
+import org.myframework.util.ClassUtil;
 
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 解析Aspect表达式并定位被织入的目标
  * 不再使用固定的标签去筛选被代理的类
+ *
+ * 常用形式的表达式（within、execution、@annotation、@within以及它们的组合）由PointcutCompiler编译成普通的判断，
+ * 只有快速匹配不支持的表达式才会交给AspectJ，全部表达式都支持快速匹配时AspectJ的类不会被加载
+ *
+ * 创建AspectJ的PointcutParser（装配所有的语法树）和解析表达式的开销都很大，所以：
+ * 1.每个类加载器只创建一个PointcutParser，所有的PointcutLocator共享，第一次需要时才创建
+ * 2.同一个表达式只编译、解析一次，表达式相同的PointcutLocator共享编译结果以及下面的匹配结果
+ * 3.初筛、精筛的结果按类、按方法缓存，重复织入（比如延迟bean、原型bean每次创建时）不会重复匹配
+ *
+ * AspectJ的解析和匹配不是线程安全的，只有缓存未命中时才会在对应的PointcutParser上加锁执行
  */
 public class PointcutLocator {
-    /*
-    pointcut解析器，直接给它赋值AspectJ的所有表达式，以便支持对众多表达式的解析
 
-    pointParser是需要被创建出来的，并且需要装配上相关的语法树才能识别Aspect标签属性里面的pointcut表达式，所以调用这个方法
-    这样就能解析这些语法树了
+    /**
+     * 是否启用快速匹配，默认启用，怀疑快速匹配的结果有问题时可以关闭，全部交给AspectJ
+     * 比如 -Dmyframework.aop.fastPointcut=false
+     */
+    public static final String FAST_POINTCUT_PROPERTY = "myframework.aop.fastPointcut";
+
+    /*
+    类加载器 -> 表达式 -> 编译结果
+    使用的是线程上下文类加载器，在应用的整个生命周期内都存在，所以这里不需要弱引用
      */
-    private PointcutParser pointcutParser = PointcutParser.getPointcutParserSupportingSpecifiedPrimitivesAndUsingContextClassloaderForResolution(
-            // AspectJ所有的语法树
-            PointcutParser.getAllSupportedPointcutPrimitives()
-    );
+    private static final Map<ClassLoader, Map<String, ParsedPointcut>> PARSED_POINTCUTS = new ConcurrentHashMap<>();
 
     /*
-    表达式解析器
-    是PointParser根据表达式解析出来的产物，用来判断某个类或者方法是否匹配pointcut表达式
+    表达式的编译结果
+    用来判断某个类或者方法是否匹配pointcut表达式
      */
-    private PointcutExpression pointcutExpression;
+    private final ParsedPointcut parsedPointcut;
 
     public PointcutLocator(String expression) {
-        // pointcutParser解析expression的到对应的pointcutExpression
         /*
         经过这样的处理之后，就能针对@Aspect标签标记的类，获取标签里面的pointcut属性值
-        并将相关的属性值传入到PointcutLocator的构造函数中，生成一个和本expression相对应的pointcutExpression
+        并将相关的属性值传入到PointcutLocator的构造函数中，生成一个和本expression相对应的编译结果
         也就是说PointcutLocator是和Aspect一一对应的
-        既然是一一对应的，又有了pointcutExpression实例，我们就能去判断被代理的类或者方法是否满足和该PointcutLocator对应的Aspect对应的
+        既然是一一对应的，又有了编译结果，我们就能去判断被代理的类或者方法是否满足和该PointcutLocator对应的Aspect对应的
         pointcut条件了
          */
-        this.pointcutExpression = pointcutParser.parsePointcutExpression(expression);
+        ClassLoader classLoader = ClassUtil.getClassLoader();
+        if (classLoader == null) {
+            classLoader = PointcutLocator.class.getClassLoader();
+        }
+        Map<String, ParsedPointcut> parsedPointcutMap = PARSED_POINTCUTS.computeIfAbsent(classLoader, key -> new ConcurrentHashMap<>());
+        ParsedPointcut parsed = parsedPointcutMap.get(expression);
+        if (parsed == null) {
+            ClassLoader resolutionClassLoader = classLoader;
+            parsed = parsedPointcutMap.computeIfAbsent(expression, key -> new ParsedPointcut(compile(key, resolutionClassLoader)));
+        }
+        this.parsedPointcut = parsed;
+    }
+
+    private static PointcutCompiler.CompiledPointcut compile(String expression, ClassLoader classLoader) {
+        if (!"false".equals(System.getProperty(FAST_POINTCUT_PROPERTY))) {
+            PointcutCompiler.CompiledPointcut compiledPointcut = PointcutCompiler.compile(expression, classLoader);
+            if (compiledPointcut != null) {
+                return compiledPointcut;
+            }
+        }
+        return new AspectJPointcut(expression, classLoader);
     }
 
     /**
@@ -46,26 +81,101 @@ public class PointcutLocator {
      * @return 是否匹配
      */
     public boolean roughMatches(Class<?> targrtClass) {
-        /*
-        couldMatchJoinPointsInType比较坑，只能校验within
-        不能校验 (execution(精确到某个类除外), call, get, set)，面对无法校验的表达式，会直接返回true
-         */
-        return pointcutExpression.couldMatchJoinPointsInType(targrtClass);
+        return parsedPointcut.roughMatches.get(targrtClass);
     }
 
     /**
      * 判断传入的Method对象是否是Aspect的目标代理方法，即匹配Pointcut表达式(精筛)
      */
     public boolean accurateMatches(Method method){
+        Map<Method, Boolean> matchMap = parsedPointcut.accurateMatchMap.get(method.getDeclaringClass());
+        Boolean matches = matchMap.get(method);
+        if (matches == null) {
+            matches = matchMap.computeIfAbsent(method, parsedPointcut.compiledPointcut::matches);
+        }
+        return matches;
+    }
+
+    /**
+     * 一个表达式的编译结果以及匹配结果的缓存
+     * 缓存放在ClassValue中，被热更新替换掉的类被回收时，它们的匹配结果也一起被回收
+     */
+    private static final class ParsedPointcut {
+        private final PointcutCompiler.CompiledPointcut compiledPointcut;
+
+        private final ClassValue<Boolean> roughMatches = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return compiledPointcut.couldMatch(type);
+            }
+        };
 
-        ShadowMatch shadowMatch = pointcutExpression.matchesMethodExecution(method);
         /*
-        alwaysMatches方法用来判断是否完全匹配，还有其他匹配程度的方法
+        方法声明所在的类 -> (方法 -> 是否匹配)
          */
-        if(shadowMatch.alwaysMatches()){
-            return true;
-        } else{
-            return false;
+        private final ClassValue<Map<Method, Boolean>> accurateMatchMap = new ClassValue<Map<Method, Boolean>>() {
+            @Override
+            protected Map<Method, Boolean> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+        private ParsedPointcut(PointcutCompiler.CompiledPointcut compiledPointcut) {
+            this.compiledPointcut = compiledPointcut;
+        }
+    }
+
+    /**
+     * 快速匹配不支持的表达式由AspectJ解析和匹配
+     */
+    private static final class AspectJPointcut implements PointcutCompiler.CompiledPointcut {
+
+        /*
+        类加载器 -> pointcut解析器
+         */
+        private static final Map<ClassLoader, PointcutParser> POINTCUT_PARSERS = new ConcurrentHashMap<>();
+
+        private final PointcutParser pointcutParser;
+        private final PointcutExpression pointcutExpression;
+
+        private AspectJPointcut(String expression, ClassLoader classLoader) {
+            /*
+            pointcut解析器，直接给它赋值AspectJ的所有表达式，以便支持对众多表达式的解析
+
+            pointParser是需要被创建出来的，并且需要装配上相关的语法树才能识别Aspect标签属性里面的pointcut表达式，所以调用这个方法
+            这样就能解析这些语法树了
+             */
+            this.pointcutParser = POINTCUT_PARSERS.computeIfAbsent(classLoader, key ->
+                    PointcutParser.getPointcutParserSupportingSpecifiedPrimitivesAndUsingSpecifiedClassLoaderForResolution(
+                            // AspectJ所有的语法树
+                            PointcutParser.getAllSupportedPointcutPrimitives(), key));
+            // pointcutParser解析expression的到对应的pointcutExpression
+            synchronized (pointcutParser) {
+                this.pointcutExpression = pointcutParser.parsePointcutExpression(expression);
+            }
+        }
+
+        @Override
+        public boolean couldMatch(Class<?> targetClass) {
+            /*
+            couldMatchJoinPointsInType比较坑，只能校验within
+            不能校验 (execution(精确到某个类除外), call, get, set)，面对无法校验的表达式，会直接返回true
+             */
+            synchronized (pointcutParser) {
+                return pointcutExpression.couldMatchJoinPointsInType(targetClass);
+            }
+        }
+
+        @Override
+        public boolean matches(Method method) {
+            ShadowMatch shadowMatch;
+            synchronized (pointcutParser) {
+                shadowMatch = pointcutExpression.matchesMethodExecution(method);
+            }
+            /*
+            alwaysMatches方法用来判断是否完全匹配，还有其他匹配程度的方法
+             */
+            return shadowMatch.alwaysMatches();
         }
     }
 }
@@ -0,0 +1,15 @@
+package org.myframework.aop.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定被代理的bean使用的代理方式，没有标记的bean使用默认的方式（见AspectWeaver.PROXY_MODE_PROPERTY）
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ProxyEngine {
+    ProxyMode value();
+}
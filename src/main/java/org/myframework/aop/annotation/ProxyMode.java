@@ -0,0 +1,19 @@
+package org.myframework.aop.annotation;
+
+/**
+ * 创建动态代理对象的方式
+ */
+public enum ProxyMode {
+    /**
+     * CGLIB生成被代理类的子类，没有匹配Aspect的方法不会被重写
+     */
+    CGLIB,
+    /**
+     * java.lang.reflect.Proxy，只代理bean实现的接口，依赖这个bean的地方只能通过接口注入
+     */
+    JDK,
+    /**
+     * 直接生成被代理类的子类，重写的方法中直接调用Aspect链，不经过MethodProxy
+     */
+    SUBCLASS
+}
@@ -17,6 +17,17 @@ public abstract class DefaultAspect {
      */
     public void before(Class<?> targetClass, Method method, Object[] args) throws Throwable {}
 
+    /**
+     * 环绕拦截，包裹着当前Aspect的before、afterReturning、afterThrowing以及order更大的Aspect和被代理的方法
+     * 默认直接调用proceed，可以在proceed前后计时、从缓存中返回结果或者不调用proceed直接返回
+     * @param joinPoint 连接点，调用proceed执行链上剩下的部分
+     * @return 返回给调用方的值
+     * @throws Throwable
+     */
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        return joinPoint.proceed();
+    }
+
     /**
      * 事后拦截
      * @param targetClass 被代理的目标类
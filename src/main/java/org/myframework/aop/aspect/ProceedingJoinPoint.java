@@ -0,0 +1,41 @@
+package org.myframework.aop.aspect;
+
+import java.lang.reflect.Method;
+
+/**
+ * 环绕通知的连接点
+ *
+ * 一次方法调用只会创建一个连接点，在整条Aspect链上传递：
+ * 每个Aspect的around调用proceed时，连接点通过下标找到链上的下一个Aspect，最后一个Aspect的proceed执行被代理的方法，
+ * 所以无论链上有多少个Aspect，都不会为每个Aspect创建闭包或者新的连接点
+ */
+public abstract class ProceedingJoinPoint {
+
+    /**
+     * 执行链上剩下的Aspect以及被代理的方法
+     * 可以调用多次（比如重试），也可以不调用（直接返回结果，跳过被代理的方法）
+     * @return 被代理的方法经过剩下的Aspect处理之后的返回值
+     * @throws Throwable 被代理的方法或者剩下的Aspect抛出的异常
+     */
+    public abstract Object proceed() throws Throwable;
+
+    /**
+     * @return 代理对象
+     */
+    public abstract Object getProxy();
+
+    /**
+     * @return 被代理的目标类
+     */
+    public abstract Class<?> getTargetClass();
+
+    /**
+     * @return 被代理的目标方法
+     */
+    public abstract Method getMethod();
+
+    /**
+     * @return 被代理的目标方法对应的参数列表，修改其中的元素会影响proceed时传入的参数
+     */
+    public abstract Object[] getArgs();
+}
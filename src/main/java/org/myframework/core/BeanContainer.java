@@ -6,15 +6,29 @@ import lombok.extern.slf4j.Slf4j;
 import org.myframework.aop.annotation.Aspect;
 import org.myframework.core.annotation.Component;
 import org.myframework.core.annotation.Controller;
+import org.myframework.core.annotation.Lazy;
 import org.myframework.core.annotation.Repository;
+import org.myframework.core.annotation.Scope;
+import org.myframework.core.annotation.ScopeType;
 import org.myframework.core.annotation.Service;
+import org.myframework.core.index.ComponentIndex;
+import org.myframework.core.plan.WiringPlan;
+import org.myframework.core.scope.BeanScope;
+import org.myframework.core.startup.StartupRecorder;
+import org.myframework.core.startup.StartupStep;
+import org.myframework.inject.annotation.Autowired;
+import org.myframework.inject.annotation.Qualifier;
+import org.myframework.util.BeanAccessor;
 import org.myframework.util.ClassUtil;
 import org.myframework.util.ValidationUtil;
 
 import javax.print.attribute.standard.JobKOctets;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
 
 /**
  * 容器的组成：
@@ -42,6 +56,98 @@ public class BeanContainer {
      */
     private final Map<Class<?>, Object> beanMap = new ConcurrentHashMap<>();
 
+    /**
+     * 父类或接口 -> 容器中的子类或实现类（不包括其本身，也不包括Object）
+     * 注解 -> 容器中被该注解标记的类
+     * bean名称 -> 容器中使用这个名称的类（名称由@Qualifier声明，默认是类的简单名称，不同package下的类可能重名）
+     *
+     * 三个索引在loadBeans时一次性建立，之后随着addBean/removeBean同步更新，
+     * 索引中的Set都是不可变的，更新时整体替换（写时复制），这样查询时不需要加锁，也不需要每次都复制一份新的Set
+     */
+    private final Map<Class<?>, Set<Class<?>>> superIndex = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Annotation>, Set<Class<?>>> annotationIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<Class<?>>> nameIndex = new ConcurrentHashMap<>();
+    /**
+     * 更新索引时使用的锁，只在写的时候使用
+     */
+    private final Object indexLock = new Object();
+
+    /**
+     * 设置为true时开启全局延迟模式，所有的bean（@Aspect和@Lazy(false)的除外）都在第一次getBean时才创建
+     * 比如 -Dmyframework.container.lazy=true
+     */
+    public static final String LAZY_INIT_PROPERTY = "myframework.container.lazy";
+
+    /**
+     * 还没有被创建的延迟bean的定义，创建完成之后从这里移到beanMap中
+     */
+    private final Map<Class<?>, LazyBeanDefinition> lazyDefinitionMap = new ConcurrentHashMap<>();
+
+    /**
+     * freeze之后发布的只读快照，没有冻结时为null
+     * 快照本身不可变，修改容器时复制一份新的快照整体替换（写时复制）
+     */
+    private volatile Snapshot snapshot;
+    /**
+     * 发布快照时使用的锁，保证后发布的快照一定包含先完成的修改
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * 非单例bean的作用域，这些bean的实例由作用域管理，不会放入beanMap中
+     */
+    private final Map<Class<?>, BeanScope> scopeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 构建时生成的装配计划，没有计划或者计划已经过期时为null
+     */
+    private volatile WiringPlan wiringPlan;
+
+    /**
+     * 编译期生成的组件索引，classpath中没有索引或者索引被忽略时为null
+     */
+    private volatile ComponentIndex componentIndex;
+
+    /**
+     * 被依赖的bean -> 通过@Autowired依赖它的bean，由DependencyInjector在注入时登记，热更新时用来找出需要重新注入的bean
+     */
+    private final Map<Class<?>, Set<Class<?>>> dependentMap = new ConcurrentHashMap<>();
+
+    /**
+     * 创建延迟bean和非单例bean之后需要执行的处理器，order -> 处理器，按照order升序执行
+     */
+    private final Map<Integer, BeanPostProcessor> beanPostProcessors = new ConcurrentSkipListMap<>();
+
+    /**
+     * 构造器注入的参数解析器，doIoC之前为null，这时候还不能创建通过构造器注入的bean
+     */
+    private volatile ConstructorResolver constructorResolver;
+
+    /**
+     * 需要在启动时创建、但是通过构造器注入的bean，loadBeans时依赖还不一定存在，所以推迟到doIoC时创建
+     */
+    private final Set<Class<?>> deferredClasses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 类 -> 被@Autowired标记的构造器，没有时为空
+     */
+    private static final ClassValue<Optional<Constructor<?>>> AUTOWIRED_CONSTRUCTORS = new ClassValue<Optional<Constructor<?>>>() {
+        @Override
+        protected Optional<Constructor<?>> computeValue(Class<?> type) {
+            Constructor<?> autowiredConstructor = null;
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                if (!constructor.isAnnotationPresent(Autowired.class)) {
+                    continue;
+                }
+                if (autowiredConstructor != null) {
+                    throw new RuntimeException("multiple @Autowired constructors in " + type.getName());
+                }
+                autowiredConstructor = constructor;
+            }
+            return Optional.ofNullable(autowiredConstructor);
+        }
+    };
+
 
     /**
      * 功能二：1.实现容器的加载
@@ -94,6 +200,33 @@ public class BeanContainer {
         return loaded;
     }
 
+    /**
+     * 清空容器，回到loadBeans之前的状态
+     * bean、延迟bean的定义、作用域、索引、快照、装配计划、依赖关系、处理器和构造器参数解析器都会被丢弃
+     *
+     * 容器是单例，测试类之间通过这个方法互相隔离，不依赖执行的顺序；只对测试可见，其他包中的测试通过BeanContainerTestSupport调用
+     */
+    synchronized void reset() {
+        synchronized (snapshotLock) {
+            snapshot = null;
+        }
+        beanMap.clear();
+        lazyDefinitionMap.clear();
+        scopeMap.clear();
+        deferredClasses.clear();
+        dependentMap.clear();
+        beanPostProcessors.clear();
+        synchronized (indexLock) {
+            superIndex.clear();
+            annotationIndex.clear();
+            nameIndex.clear();
+        }
+        wiringPlan = null;
+        componentIndex = null;
+        constructorResolver = null;
+        loaded = false;
+    }
+
     /**
      * 功能二：2.依据配置提取Class对象，连同其实例一并存入容器当中
      *
@@ -102,6 +235,19 @@ public class BeanContainer {
      * @param packageName 包名
      */
     public synchronized void loadBeans(String packageName) {
+        doLoadBeans(packageName, Boolean.getBoolean(LAZY_INIT_PROPERTY));
+    }
+
+    /**
+     * 只登记package下所有bean的定义，不创建实例（@Aspect除外）
+     * 之后由ParallelBeanInitializer按照依赖关系并行地创建，或者在第一次getBean时创建
+     * @param packageName 包名
+     */
+    public synchronized void loadBeanDefinitions(String packageName) {
+        doLoadBeans(packageName, true);
+    }
+
+    private void doLoadBeans(String packageName, boolean lazyInit) {
 
         //判断bean容器是否被加载过
         if (isLoaded()) {
@@ -109,7 +255,20 @@ public class BeanContainer {
             return;
         }
 
-        Set<Class<?>> classSet = ClassUtil.extractPackageClass(packageName);
+        try (StartupStep step = StartupRecorder.start("loadBeans")) {
+            doLoadBeans(packageName, lazyInit, step);
+        }
+    }
+
+    private void doLoadBeans(String packageName, boolean lazyInit, StartupStep step) {
+        wiringPlan = WiringPlan.load(ClassUtil.getClassLoader(), packageName);
+        componentIndex = ComponentIndex.load(ClassUtil.getClassLoader());
+        step.count("plan", wiringPlan == null ? 0 : 1);
+        Set<Class<?>> classSet;
+        try (StartupStep scanStep = StartupRecorder.start("scan")) {
+            classSet = extractCandidateClasses(packageName);
+            scanStep.count("classes", classSet == null ? 0 : classSet.size());
+        }
 
         if (ValidationUtil.isEmpty(classSet)) {
             log.warn("extract nothing from packageName" + packageName);
@@ -124,15 +283,162 @@ public class BeanContainer {
                 // 如果类上面标记了定义的注解
                 // TODO：isAnnotationPresent方法？
                 if (clazz.isAnnotationPresent(annotation)) {
-                    //将目标类本身作为键，目标类的实例作为值，放入beanMap中
-                    beanMap.put(clazz,  ClassUtil.newInstance(clazz, true));
+                    Scope scope = getScope(clazz);
+                    if (scope != null) {
+                        //非单例bean只登记作用域，实例在作用域内第一次获取时创建
+                        scopeMap.put(clazz, BeanScope.of(scope, clazz, scopedInstanceFactory(clazz)));
+                    } else if (isLazy(clazz, lazyInit)) {
+                        //延迟bean只登记定义，第一次getBean时再创建
+                        lazyDefinitionMap.put(clazz, new LazyBeanDefinition(clazz));
+                    } else if (getAutowiredConstructor(clazz) != null) {
+                        //构造器注入的bean同样只登记定义，在doIoC时创建
+                        lazyDefinitionMap.put(clazz, new LazyBeanDefinition(clazz));
+                        deferredClasses.add(clazz);
+                    } else {
+                        //将目标类本身作为键，目标类的实例作为值，放入beanMap中
+                        beanMap.put(clazz, instantiate(clazz));
+                    }
                 }
             }
         }
+        rebuildIndexes();
+        step.count("beans", beanMap.size()).count("lazy", lazyDefinitionMap.size()).count("scoped", scopeMap.size());
 
         loaded = true;
     }
 
+    /**
+     * 非单例bean的实例工厂，原型、请求作用域的bean会被频繁创建，所以这里直接持有类的BeanAccessor
+     */
+    private Supplier<Object> scopedInstanceFactory(Class<?> clazz) {
+        BeanAccessor accessor = BeanAccessor.of(clazz);
+        Constructor<?> constructor = getAutowiredConstructor(clazz);
+        if (constructor == null) {
+            return () -> postProcess(clazz, accessor.newInstance());
+        }
+        return () -> postProcess(clazz, accessor.newInstance(constructor, resolveConstructorArguments(clazz)));
+    }
+
+    /**
+     * 创建bean实例，并记录实例化的耗时
+     */
+    private Object instantiate(Class<?> clazz) {
+        long startNanos = System.nanoTime();
+        BeanAccessor accessor = BeanAccessor.of(clazz);
+        Constructor<?> constructor = getAutowiredConstructor(clazz);
+        Object bean = constructor == null ? accessor.newInstance()
+                : accessor.newInstance(constructor, resolveConstructorArguments(clazz));
+        StartupRecorder.recordBean(clazz, System.nanoTime() - startNanos);
+        return bean;
+    }
+
+    /**
+     * 获取类中被@Autowired标记的构造器，结果按类缓存
+     * @param clazz Class对象
+     * @return 没有被@Autowired标记的构造器时返回null
+     */
+    public static Constructor<?> getAutowiredConstructor(Class<?> clazz) {
+        return AUTOWIRED_CONSTRUCTORS.get(clazz).orElse(null);
+    }
+
+    /**
+     * 解析构造器注入的参数，创建代理时也需要用同样的方式调用父类的构造器
+     * @param clazz bean的Class对象
+     * @return 按照参数顺序排列的参数值
+     */
+    public Object[] resolveConstructorArguments(Class<?> clazz) {
+        ConstructorResolver resolver = constructorResolver;
+        if (resolver == null) {
+            throw new RuntimeException(clazz.getName() + " uses constructor injection and can not be created before doIoC");
+        }
+        return resolver.resolveArguments(clazz);
+    }
+
+    /**
+     * 注册构造器注入的参数解析器
+     * @param constructorResolver 解析器
+     */
+    public void setConstructorResolver(ConstructorResolver constructorResolver) {
+        this.constructorResolver = constructorResolver;
+    }
+
+    /**
+     * 获取需要在启动时创建、但是因为构造器注入而推迟创建，并且还没有被创建的bean
+     * @return Class集合的副本
+     */
+    public Set<Class<?>> getDeferredClasses() {
+        deferredClasses.removeIf(clazz -> !lazyDefinitionMap.containsKey(clazz));
+        return new LinkedHashSet<>(deferredClasses);
+    }
+
+    /**
+     * 判断bean是否需要延迟实例化
+     * 切面需要在doAop时参与织入，所以始终在启动时创建
+     */
+    private boolean isLazy(Class<?> clazz, boolean lazyInit) {
+        if (clazz.isAnnotationPresent(Aspect.class)) {
+            return false;
+        }
+        Lazy lazy = clazz.getAnnotation(Lazy.class);
+        return lazy != null ? lazy.value() : lazyInit;
+    }
+
+    /**
+     * 获取bean的非单例作用域，切面始终是单例
+     * @return 单例时返回null
+     */
+    private Scope getScope(Class<?> clazz) {
+        Scope scope = clazz.getAnnotation(Scope.class);
+        if (scope == null || scope.value() == ScopeType.SINGLETON || clazz.isAnnotationPresent(Aspect.class)) {
+            return null;
+        }
+        return scope;
+    }
+
+    /**
+     * 获取package下被BEAN_ANNOTATION标记的类
+     *
+     * 0.有这个package的装配计划时，直接使用计划中的bean，顺序就是计划中的创建顺序
+     * 1.classpath中存在编译期生成的组件索引时，直接从索引中获取，完全跳过目录和jar包的扫描
+     * 2.没有索引，或者索引中没有这个package的类时（比如依赖的jar是在引入注解处理器之前打包的），
+     *   使用预过滤模式扫描，只有被BEAN_ANNOTATION标记的类才会被加载
+     *
+     * @param packageName 包名
+     * @return Class集合
+     */
+    private Set<Class<?>> extractCandidateClasses(String packageName) {
+        if (wiringPlan != null) {
+            Set<Class<?>> classSet = new LinkedHashSet<>();
+            String packagePrefix = packageName + ".";
+            for (WiringPlan.BeanPlan beanPlan : wiringPlan.getBeanPlans()) {
+                if (beanPlan.getClassName().startsWith(packagePrefix)) {
+                    classSet.add(ClassUtil.loadClass(beanPlan.getClassName(), false));
+                }
+            }
+            if (!classSet.isEmpty()) {
+                log.debug("load " + classSet.size() + " beans of " + packageName + " from wiring plan");
+                return classSet;
+            }
+        }
+        ComponentIndex componentIndex = this.componentIndex;
+        if (componentIndex != null) {
+            List<String> stereotypes = new ArrayList<>();
+            for (Class<? extends Annotation> annotation : BEAN_ANNOTATION) {
+                stereotypes.add(annotation.getName());
+            }
+            Set<String> classNameSet = componentIndex.getCandidateTypes(packageName, stereotypes);
+            if (!ValidationUtil.isEmpty(classNameSet)) {
+                log.debug("load " + classNameSet.size() + " candidate classes of " + packageName + " from component index");
+                Set<Class<?>> classSet = new HashSet<>();
+                for (String className : classNameSet) {
+                    classSet.add(ClassUtil.loadClass(className, false));
+                }
+                return classSet;
+            }
+        }
+        return ClassUtil.extractPackageClass(BEAN_ANNOTATION, packageName);
+    }
+
     /**
      * 功能三：容器的操作：增删改查
      *
@@ -142,7 +448,13 @@ public class BeanContainer {
      * @return put操作会返回添加的Bean实例，没有则返回null
      */
     public Object addBean(Class<?> clazz, Object bean) {
-        return beanMap.put(clazz, bean);
+        Object previousBean = beanMap.put(clazz, bean);
+        // 替换已有的bean（比如AOP用代理对象替换原来的实例），或者直接给延迟bean设置了实例时，类型已经在索引中了
+        if (previousBean == null && lazyDefinitionMap.remove(clazz) == null && scopeMap.remove(clazz) == null) {
+            updateIndexes(clazz, true);
+        }
+        refreshSnapshot();
+        return previousBean;
     }
 
     /**
@@ -151,32 +463,301 @@ public class BeanContainer {
      * @return 返回删除的Bean实例，没有则返回null
      */
     public Object removeBean(Class<?> clazz) {
-        return beanMap.remove(clazz);
+        Object removedBean = beanMap.remove(clazz);
+        LazyBeanDefinition removedDefinition = lazyDefinitionMap.remove(clazz);
+        BeanScope removedScope = scopeMap.remove(clazz);
+        if (removedBean != null || removedDefinition != null || removedScope != null) {
+            updateIndexes(clazz, false);
+        }
+        refreshSnapshot();
+        return removedBean;
+    }
+
+    /**
+     * 热更新一个bean：移除旧版本的类，登记新版本的类
+     * 新版本的类同样会经过所有的处理器（依赖注入、AOP织入），被@Lazy标记或者非单例的bean依然在第一次获取时创建
+     *
+     * @param oldClass 旧版本的类，新增的类时为null
+     * @param newClass 新版本的类，类被删除或者不再是bean时为null
+     */
+    public synchronized void refreshBean(Class<?> oldClass, Class<?> newClass) {
+        if (oldClass != null) {
+            removeBean(oldClass);
+        }
+        if (newClass == null || !isBeanClass(newClass)) {
+            return;
+        }
+        Scope scope = getScope(newClass);
+        if (scope != null) {
+            scopeMap.put(newClass, BeanScope.of(scope, newClass, scopedInstanceFactory(newClass)));
+        } else {
+            lazyDefinitionMap.put(newClass, new LazyBeanDefinition(newClass));
+        }
+        updateIndexes(newClass, true);
+        if (scope == null && !isLazy(newClass, false)) {
+            getBean(newClass);
+        }
+    }
+
+    /**
+     * 获取bean的名称
+     * @param clazz Class对象
+     * @return @Qualifier声明的名称，没有时为类的简单名称
+     */
+    public static String getBeanName(Class<?> clazz) {
+        Qualifier qualifier = clazz.getAnnotation(Qualifier.class);
+        return qualifier == null ? clazz.getSimpleName() : qualifier.value();
+    }
+
+    /**
+     * 根据bean的名称获取类
+     * @param name bean的名称
+     * @return 不可修改的Class集合，没有这个名称的bean时返回null
+     */
+    public Set<Class<?>> getClassesByName(String name) {
+        return nameIndex.get(name);
+    }
+
+    /**
+     * 判断类是否被BEAN_ANNOTATION中的任意一个注解标记
+     * @param clazz Class对象
+     * @return 是否是bean
+     */
+    public static boolean isBeanClass(Class<?> clazz) {
+        for (Class<? extends Annotation> annotation : BEAN_ANNOTATION) {
+            if (clazz.isAnnotationPresent(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 登记bean之间的依赖关系
+     * @param beanClass 注入了依赖的bean
+     * @param dependencyClass 被注入的bean
+     */
+    public void registerDependency(Class<?> beanClass, Class<?> dependencyClass) {
+        dependentMap.computeIfAbsent(dependencyClass, k -> ConcurrentHashMap.newKeySet()).add(beanClass);
+    }
+
+    /**
+     * 获取依赖了指定bean的bean
+     * @param clazz 被依赖的bean
+     * @return Class集合的副本
+     */
+    public Set<Class<?>> getDependents(Class<?> clazz) {
+        Set<Class<?>> dependents = dependentMap.get(clazz);
+        return dependents == null ? new HashSet<>() : new HashSet<>(dependents);
     }
 
     /**
      * 根据Class对象获取Bean实例
+     * 延迟bean在第一次获取时创建，非单例bean返回当前作用域内的实例
      * @param clazz Class对象
      * @return Bean实例
      */
     public Object getBean(Class<?> clazz) {
-        return beanMap.get(clazz);
+        Snapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            //冻结之后绝大部分的bean都能直接从快照中获取，不需要访问ConcurrentHashMap
+            Object bean = currentSnapshot.beanMap.get(clazz);
+            if (bean != null) {
+                return bean;
+            }
+        }
+        Object bean = beanMap.get(clazz);
+        if (bean != null) {
+            return bean;
+        }
+        LazyBeanDefinition definition = lazyDefinitionMap.get(clazz);
+        if (definition != null) {
+            return createLazyBean(definition);
+        }
+        BeanScope scope = scopeMap.get(clazz);
+        return scope == null ? null : scope.get();
     }
 
     /**
-     * 获取容器管理的所有class对象集合
-     * @return Class对象
+     * 判断bean是否是非单例bean
+     * @param clazz Class对象
+     * @return 是否由作用域管理
+     */
+    public boolean isScoped(Class<?> clazz) {
+        return scopeMap.containsKey(clazz);
+    }
+
+    /**
+     * 获取注入到其他bean的成员变量中的对象
+     * 和getBean的区别在于，非单例bean注入的是作用域代理（PROTOTYPE除外，每次注入一个新的实例），
+     * 这样单例bean在不同的线程、请求中使用的都是当前作用域内的实例
+     * @param clazz Class对象
+     * @return 注入的对象
+     */
+    public Object getBeanForInjection(Class<?> clazz) {
+        BeanScope scope = scopeMap.get(clazz);
+        return scope == null ? getBean(clazz) : scope.getInjectable();
+    }
+
+    /**
+     * 创建延迟bean，每个bean使用自己的定义作为锁，不同bean的创建互不影响
+     *
+     * 1.同一个bean被多个线程同时获取时，只有一个线程负责创建，其他线程等待创建完成后直接使用
+     * 2.创建的过程中，同一个线程因为循环依赖再次获取这个bean时，返回还没有处理完的早期实例
+     *   构造器注入的bean在构造器返回之前没有早期实例，这时候的循环依赖无法解决，直接抛出异常
+     *
+     * 注意：两个线程同时创建两个互相依赖的延迟bean时会互相等待，这种情况下应该把其中一个改为启动时创建
+     */
+    private Object createLazyBean(LazyBeanDefinition definition) {
+        synchronized (definition) {
+            Object bean = beanMap.get(definition.beanClass);
+            if (bean != null) {
+                return bean;
+            }
+            if (definition.earlyInstance != null) {
+                return definition.earlyInstance;
+            }
+            if (lazyDefinitionMap.get(definition.beanClass) != definition) {
+                //等待的过程中bean已经被移除
+                return null;
+            }
+            if (definition.creating) {
+                throw new RuntimeException("circular dependency detected: " + definition.beanClass.getName()
+                        + " is required while resolving its own constructor arguments");
+            }
+            try {
+                definition.creating = true;
+                bean = instantiate(definition.beanClass);
+                definition.earlyInstance = bean;
+                for (BeanPostProcessor beanPostProcessor : beanPostProcessors.values()) {
+                    bean = beanPostProcessor.postProcess(definition.beanClass, bean);
+                    definition.earlyInstance = bean;
+                }
+                //先放入beanMap再移除定义，保证其他线程在任何时候都能获取到这个bean
+                beanMap.put(definition.beanClass, bean);
+                lazyDefinitionMap.remove(definition.beanClass, definition);
+                refreshSnapshot();
+                return bean;
+            } finally {
+                definition.creating = false;
+                definition.earlyInstance = null;
+            }
+        }
+    }
+
+    /**
+     * 获取启动时使用的装配计划
+     * @return 没有计划或者计划已经过期时返回null
+     */
+    public WiringPlan getWiringPlan() {
+        return wiringPlan;
+    }
+
+    /**
+     * 获取loadBeans时读取的组件索引
+     * @return 没有索引或者索引被忽略时返回null
+     */
+    public ComponentIndex getComponentIndex() {
+        return componentIndex;
+    }
+
+    /**
+     * 判断容器中是否有这个bean，包括还没有被创建的延迟bean和非单例bean
+     * @param clazz Class对象
+     * @return 是否存在
+     */
+    public boolean containsBean(Class<?> clazz) {
+        return beanMap.containsKey(clazz) || lazyDefinitionMap.containsKey(clazz) || scopeMap.containsKey(clazz);
+    }
+
+    /**
+     * 依次执行所有的处理器
+     */
+    private Object postProcess(Class<?> clazz, Object bean) {
+        for (BeanPostProcessor beanPostProcessor : beanPostProcessors.values()) {
+            bean = beanPostProcessor.postProcess(clazz, bean);
+        }
+        return bean;
+    }
+
+    /**
+     * 注册创建延迟bean和非单例bean之后需要执行的处理器
+     * 同一个order已经有处理器时替换原来的处理器，所以重复调用doIoC等方法不会让同一个bean被处理多次
+     * @param order 执行顺序，见BeanPostProcessor中的常量
+     * @param beanPostProcessor 处理器
+     */
+    public void addBeanPostProcessor(int order, BeanPostProcessor beanPostProcessor) {
+        beanPostProcessors.put(order, beanPostProcessor);
+    }
+
+    /**
+     * 冻结容器：在loadBeans、doAop、doIoC都完成之后调用，发布一个不可变的只读快照
+     *
+     * 1.getBean优先从快照中获取，快照使用Map.copyOf创建，查询时没有锁竞争，也不会分配对象
+     * 2.getBeans、getClasses直接返回快照中预先创建好的不可变集合，不需要每次复制
+     * 3.冻结之后依然可以addBean、removeBean，或者创建延迟bean，每次修改都会重新发布一个完整的快照，
+     *   所以冻结之后的修改代价是O(n)的，只适合偶尔的修改
+     */
+    public void freeze() {
+        synchronized (snapshotLock) {
+            snapshot = new Snapshot(beanMap);
+        }
+        log.debug("BeanContainer is frozen with " + snapshot.beanMap.size() + " beans");
+    }
+
+    /**
+     * 容器是否已经冻结
+     * @return 是否冻结
+     */
+    public boolean isFrozen() {
+        return snapshot != null;
+    }
+
+    /**
+     * 冻结之后，修改了beanMap的操作需要重新发布快照
+     */
+    private void refreshSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            snapshot = new Snapshot(beanMap);
+        }
+    }
+
+    /**
+     * 获取容器中已经创建了实例的class对象集合，不包括还没有被创建的延迟bean
+     * @return Class对象，冻结之后不可修改
      */
     public Set<Class<?>> getClasses() {
-        return beanMap.keySet();
+        Snapshot currentSnapshot = snapshot;
+        return currentSnapshot == null ? beanMap.keySet() : currentSnapshot.classes;
+    }
+
+    /**
+     * 获取还没有被创建的延迟bean的class对象集合
+     * @return Class对象
+     */
+    public Set<Class<?>> getLazyClasses() {
+        return Collections.unmodifiableSet(lazyDefinitionMap.keySet());
+    }
+
+    /**
+     * 判断bean是否是还没有被创建的延迟bean
+     * @param clazz Class对象
+     * @return 是否还没有被创建
+     */
+    public boolean isLazyPending(Class<?> clazz) {
+        return lazyDefinitionMap.containsKey(clazz);
     }
 
     /**
      * 获取所有的bean集合
-     * @return Bean集合
+     * @return Bean集合，冻结之后不可修改
      */
     public Set<Object> getBeans() {
-        return new HashSet<>(beanMap.values());
+        Snapshot currentSnapshot = snapshot;
+        return currentSnapshot == null ? new HashSet<>(beanMap.values()) : currentSnapshot.beans;
     }
 
     /**
@@ -184,54 +765,162 @@ public class BeanContainer {
      * @return 数量
      */
     public int size() {
-        return beanMap.size();
+        Snapshot currentSnapshot = snapshot;
+        return currentSnapshot == null ? beanMap.size() : currentSnapshot.beanMap.size();
     }
 
     /**
      * 根据注解筛选出bean的Class集合
      * @param annotation 注解
-     * @return Class集合
+     * @return 不可修改的Class集合
      */
     public Set<Class<?>> getClassesByAnnotation(Class<? extends Annotation> annotation) {
-        //1.获取beanMap的所有class对象
-        Set<Class<?>> keySet = getClasses();
-        if (ValidationUtil.isEmpty(keySet)) {
+        if (beanMap.isEmpty() && lazyDefinitionMap.isEmpty() && scopeMap.isEmpty()) {
             log.warn("nothing in beanMap");
             return null;
         }
-        //2.通过注解筛选被注解标注过的class对象，并添加到classSet中
-        Set<Class<?>> classSet = new HashSet<>();
-        for (Class<?> clazz : keySet) {
-            //判断类是否有相关的注解标记
-            if (clazz.isAnnotationPresent(annotation)) {
-                classSet.add(clazz);
-            }
-        }
-        return classSet.size() > 0 ? classSet : null;
+        //直接从注解索引中获取，不需要遍历beanMap
+        return annotationIndex.get(annotation);
     }
 
     /**
      * 通过接口或者父类获取实现类或者子类的Class集合，不包括其本身
      *
      * @param interfaceOrClass 接口Class或者父类Class
-     * @return Class集合
+     * @return 不可修改的Class集合
      */
     public Set<Class<?>> getClassesBySuper(Class<?> interfaceOrClass) {
-        //1.获取beanMap的所有class对象
-        Set<Class<?>> keySet = getClasses();
-        if (ValidationUtil.isEmpty(keySet)) {
+        if (beanMap.isEmpty() && lazyDefinitionMap.isEmpty() && scopeMap.isEmpty()) {
             log.warn("nothing in beanMap");
             return null;
         }
-        //2.判断keySet里面元素是否是传入的接口或者类的子类，如果是，就将其添加到classSet中
-        Set<Class<?>> classSet = new HashSet<>();
-        for (Class<?> clazz : keySet) {
-            //判断keySet里的元素是否是传入的接口或者类的子类
-            //因为isAssignableFrom方法本身和本身也认为true的，所以需要添加一个验证
-            if (clazz.isAssignableFrom(clazz) && !clazz.equals(interfaceOrClass)) {
-                classSet.add(clazz);
+        //所有的类都是Object的子类，索引中不记录Object，避免每次更新索引都要复制一个包含全部类的Set
+        if (interfaceOrClass == Object.class) {
+            Set<Class<?>> classSet = new HashSet<>(beanMap.keySet());
+            classSet.addAll(lazyDefinitionMap.keySet());
+            classSet.addAll(scopeMap.keySet());
+            classSet.remove(Object.class);
+            return classSet.size() > 0 ? Collections.unmodifiableSet(classSet) : null;
+        }
+        return superIndex.get(interfaceOrClass);
+    }
+
+    /**
+     * 根据beanMap、延迟bean的定义和非单例bean的作用域重新建立全部索引
+     */
+    private void rebuildIndexes() {
+        Map<Class<?>, Set<Class<?>>> superMap = new HashMap<>();
+        Map<Class<? extends Annotation>, Set<Class<?>>> annotationMap = new HashMap<>();
+        Map<String, Set<Class<?>>> nameMap = new HashMap<>();
+        Set<Class<?>> allClasses = new HashSet<>(beanMap.keySet());
+        allClasses.addAll(lazyDefinitionMap.keySet());
+        allClasses.addAll(scopeMap.keySet());
+        for (Class<?> clazz : allClasses) {
+            for (Class<?> superType : getSuperTypes(clazz)) {
+                superMap.computeIfAbsent(superType, k -> new HashSet<>()).add(clazz);
+            }
+            for (Annotation annotation : clazz.getAnnotations()) {
+                annotationMap.computeIfAbsent(annotation.annotationType(), k -> new HashSet<>()).add(clazz);
+            }
+            nameMap.computeIfAbsent(getBeanName(clazz), k -> new HashSet<>()).add(clazz);
+        }
+        synchronized (indexLock) {
+            superIndex.clear();
+            annotationIndex.clear();
+            nameIndex.clear();
+            superMap.forEach((superType, classSet) -> superIndex.put(superType, Collections.unmodifiableSet(classSet)));
+            annotationMap.forEach((annotation, classSet) -> annotationIndex.put(annotation, Collections.unmodifiableSet(classSet)));
+            nameMap.forEach((name, classSet) -> nameIndex.put(name, Collections.unmodifiableSet(classSet)));
+        }
+    }
+
+    /**
+     * 把一个类加入索引或者从索引中移除，受影响的Set会被整体替换
+     * @param clazz Class对象
+     * @param add true表示加入索引，false表示移除
+     */
+    private void updateIndexes(Class<?> clazz, boolean add) {
+        synchronized (indexLock) {
+            for (Class<?> superType : getSuperTypes(clazz)) {
+                copyOnWrite(superIndex, superType, clazz, add);
+            }
+            for (Annotation annotation : clazz.getAnnotations()) {
+                copyOnWrite(annotationIndex, annotation.annotationType(), clazz, add);
+            }
+            copyOnWrite(nameIndex, getBeanName(clazz), clazz, add);
+        }
+    }
+
+    private static <K> void copyOnWrite(Map<K, Set<Class<?>>> index, K key, Class<?> clazz, boolean add) {
+        Set<Class<?>> classSet = index.get(key);
+        Set<Class<?>> newClassSet = classSet == null ? new HashSet<>() : new HashSet<>(classSet);
+        if (add) {
+            newClassSet.add(clazz);
+        } else {
+            newClassSet.remove(clazz);
+        }
+        if (newClassSet.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, Collections.unmodifiableSet(newClassSet));
+        }
+    }
+
+    /**
+     * 冻结之后的只读快照
+     */
+    private static class Snapshot {
+        private final Map<Class<?>, Object> beanMap;
+        private final Set<Class<?>> classes;
+        private final Set<Object> beans;
+
+        Snapshot(Map<Class<?>, Object> beanMap) {
+            this.beanMap = Map.copyOf(beanMap);
+            this.classes = this.beanMap.keySet();
+            this.beans = Collections.unmodifiableSet(new HashSet<>(this.beanMap.values()));
+        }
+    }
+
+    /**
+     * 延迟bean的定义，同时作为创建这个bean时使用的锁
+     */
+    private static class LazyBeanDefinition {
+        private final Class<?> beanClass;
+        /**
+         * 创建过程中的早期实例，只会被持有锁的线程（也就是正在创建的线程）读取
+         */
+        private Object earlyInstance;
+        /**
+         * 持有锁的线程是否正在创建这个bean
+         */
+        private boolean creating;
+
+        LazyBeanDefinition(Class<?> beanClass) {
+            this.beanClass = beanClass;
+        }
+    }
+
+    /**
+     * 获取一个类所有的父类和接口（包括间接的），不包括其本身和Object
+     * @param clazz Class对象
+     * @return 父类和接口的集合
+     */
+    private static Set<Class<?>> getSuperTypes(Class<?> clazz) {
+        Set<Class<?>> superTypes = new HashSet<>();
+        Deque<Class<?>> toVisit = new ArrayDeque<>();
+        toVisit.push(clazz);
+        while (!toVisit.isEmpty()) {
+            Class<?> current = toVisit.pop();
+            Class<?> superClass = current.getSuperclass();
+            if (superClass != null && superClass != Object.class && superTypes.add(superClass)) {
+                toVisit.push(superClass);
+            }
+            for (Class<?> interfaceClass : current.getInterfaces()) {
+                if (superTypes.add(interfaceClass)) {
+                    toVisit.push(interfaceClass);
+                }
             }
         }
-        return classSet.size() > 0? classSet : null;
+        return superTypes;
     }
 }
@@ -0,0 +1,29 @@
+package org.myframework.core;
+
+/**
+ * bean创建之后的处理器
+ *
+ * 延迟实例化的bean在第一次getBean时才会被创建，非单例bean在作用域内第一次获取时才会被创建，
+ * 这时候启动阶段的doIoC和doAop已经执行完了，
+ * 所以AspectWeaver、DependencyInjector和BeanLifecycle会把自己注册为处理器，由容器在创建这些bean之后依次调用
+ *
+ * 调用的顺序由注册时指定的order决定，值小的先执行，和注册的先后无关：
+ * 1.AOP_ORDER：AOP用代理对象替换刚创建的实例，代理对象是一个新的实例，所以必须在注入之前执行
+ * 2.INJECTION_ORDER：在最终的实例（代理对象）上注入依赖
+ * 3.LIFECYCLE_ORDER：依赖注入完成之后执行@PostConstruct方法
+ * 同一个order只保留最后注册的处理器，多次调用doAop、doIoC或者start不会重复处理
+ */
+public interface BeanPostProcessor {
+
+    int AOP_ORDER = 100;
+    int INJECTION_ORDER = 200;
+    int LIFECYCLE_ORDER = 300;
+
+    /**
+     * 处理刚创建的bean
+     * @param clazz bean在容器中的Class对象
+     * @param bean bean实例
+     * @return 处理之后的bean，可以是原来的实例，也可以是替换后的实例（比如代理对象）
+     */
+    Object postProcess(Class<?> clazz, Object bean);
+}
@@ -0,0 +1,18 @@
+package org.myframework.core;
+
+/**
+ * 构造器注入的参数解析器
+ *
+ * 被@Autowired标记了构造器的bean在创建时就需要它的依赖，
+ * 而接口到实现类的查找在DependencyInjector中，所以由DependencyInjector在doIoC时把自己注册为解析器，
+ * 容器创建这类bean（以及为它们创建代理）时通过解析器获取构造器参数
+ */
+public interface ConstructorResolver {
+
+    /**
+     * 解析被@Autowired标记的构造器的参数
+     * @param clazz bean在容器中的Class对象
+     * @return 按照参数顺序排列的参数值
+     */
+    Object[] resolveArguments(Class<?> clazz);
+}
@@ -0,0 +1,22 @@
+package org.myframework.core;
+
+/**
+ * 不是bean的类的子类的代理对象（比如JDK动态代理）
+ *
+ * 这类代理对象中没有bean的成员变量和方法，注入依赖、执行@PostConstruct等生命周期方法时需要作用在被代理的对象上
+ */
+public interface TargetProxy {
+
+    /**
+     * @return 被代理的对象
+     */
+    Object getProxyTarget();
+
+    /**
+     * @param bean 容器中的bean，可能是代理对象
+     * @return 实际保存bean的状态的对象
+     */
+    static Object unwrap(Object bean) {
+        return bean instanceof TargetProxy ? ((TargetProxy) bean).getProxyTarget() : bean;
+    }
+}
@@ -0,0 +1,16 @@
+package org.myframework.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 延迟实例化的bean，loadBeans时只登记，第一次getBean时才会创建实例、注入依赖并织入切面
+ * 容器开启了全局延迟模式时，可以通过@Lazy(false)让某个bean依然在启动时创建
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Lazy {
+    boolean value() default true;
+}
@@ -0,0 +1,15 @@
+package org.myframework.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 依赖注入和AOP织入完成之后执行的初始化方法，方法不能有参数
+ * 没有依赖关系的bean的初始化方法会被并行执行，一个bean的初始化方法总是在它所依赖的bean的初始化方法之后执行
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PostConstruct {
+}
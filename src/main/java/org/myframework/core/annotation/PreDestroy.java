@@ -0,0 +1,15 @@
+package org.myframework.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 容器关闭时执行的销毁方法，方法不能有参数
+ * 依赖方的销毁方法先于被依赖方执行
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PreDestroy {
+}
@@ -0,0 +1,21 @@
+package org.myframework.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定bean的作用域，没有标记时为单例
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Scope {
+    ScopeType value();
+
+    /**
+     * 对象池的容量，只对POOLED作用域有效
+     * 池满时归还的实例会被直接丢弃
+     */
+    int poolSize() default 16;
+}
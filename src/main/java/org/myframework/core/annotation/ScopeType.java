@@ -0,0 +1,27 @@
+package org.myframework.core.annotation;
+
+/**
+ * bean的作用域
+ */
+public enum ScopeType {
+    /**
+     * 整个容器中只有一个实例，默认的作用域
+     */
+    SINGLETON,
+    /**
+     * 每次获取都创建一个新的实例
+     */
+    PROTOTYPE,
+    /**
+     * 每个线程一个实例
+     */
+    THREAD,
+    /**
+     * 每个请求一个实例，请求的范围由RequestContext.begin和RequestContext.end界定
+     */
+    REQUEST,
+    /**
+     * 每个请求从对象池中借出一个实例，请求结束时归还，适合创建开销大并且不是线程安全的对象
+     */
+    POOLED
+}
@@ -0,0 +1,19 @@
+package org.myframework.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 预热方法，在所有的初始化方法执行完之后、容器就绪之前被反复调用，方法不能有参数
+ * 用来提前执行热点的controller、service路径，让JIT在第一个真正的请求到来之前完成编译
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Warmup {
+    /**
+     * 调用的次数，默认的次数足够触发C2编译
+     */
+    int value() default 10000;
+}
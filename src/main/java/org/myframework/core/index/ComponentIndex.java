@@ -0,0 +1,163 @@
+package org.myframework.core.index;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期生成的组件索引，由ComponentIndexProcessor写入，BeanContainer在启动时读取
+ *
+ * 索引文件的格式，每行一个类，字段之间用tab分隔，pointcut只有@Aspect才有：
+ * 类的全名    注解全名（多个时用逗号分隔）    pointcut表达式
+ * AspectWeaver织入时直接使用索引中的pointcut表达式，不需要再读取@Aspect注解
+ *
+ * 注意：这个类会和ComponentIndexProcessor一起被提前编译，所以同样不能使用lombok
+ */
+public class ComponentIndex {
+
+    /**
+     * 索引文件在classpath中的位置
+     */
+    public static final String INDEX_LOCATION = "META-INF/myframework.components";
+
+    /**
+     * 设置为true时忽略索引，始终扫描classpath
+     * 比如 -Dmyframework.index.ignore=true
+     */
+    public static final String IGNORE_INDEX_PROPERTY = "myframework.index.ignore";
+
+    private static final String SEPARATOR = "\t";
+    private static final String STEREOTYPE_SEPARATOR = ",";
+    private static final String COMMENT = "#";
+
+    /**
+     * 类名 -> 索引项
+     */
+    private final Map<String, Entry> entryMap;
+
+    private ComponentIndex(Map<String, Entry> entryMap) {
+        this.entryMap = entryMap;
+    }
+
+    /**
+     * 读取classpath中所有的索引文件，多个jar中的索引会被合并
+     * @param classLoader 类加载器
+     * @return 组件索引，没有任何索引文件或者索引被忽略时返回null
+     */
+    public static ComponentIndex load(ClassLoader classLoader) {
+        if (Boolean.getBoolean(IGNORE_INDEX_PROPERTY)) {
+            return null;
+        }
+        Map<String, Entry> entryMap = new LinkedHashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+            while (urls.hasMoreElements()) {
+                try (Reader reader = new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8)) {
+                    for (Entry entry : read(reader)) {
+                        entryMap.merge(entry.getClassName(), entry, (oldEntry, newEntry) -> {
+                            oldEntry.getStereotypes().addAll(newEntry.getStereotypes());
+                            return oldEntry;
+                        });
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("unable to load component index", e);
+        }
+        return entryMap.isEmpty() ? null : new ComponentIndex(entryMap);
+    }
+
+    /**
+     * 获取指定package（包括子package）下，带有任意一个目标注解的类名
+     * @param packageName 包名
+     * @param stereotypes 目标注解的全名
+     * @return 类名集合
+     */
+    public Set<String> getCandidateTypes(String packageName, Collection<String> stereotypes) {
+        Set<String> classNameSet = new LinkedHashSet<>();
+        String packagePrefix = packageName + ".";
+        for (Entry entry : entryMap.values()) {
+            if (entry.getClassName().startsWith(packagePrefix) && !Collections.disjoint(entry.getStereotypes(), stereotypes)) {
+                classNameSet.add(entry.getClassName());
+            }
+        }
+        return classNameSet;
+    }
+
+    /**
+     * 获取@Aspect类在编译期记录的pointcut表达式
+     * @param className 类名
+     * @return pointcut表达式，不是@Aspect类时返回null
+     */
+    public String getPointcut(String className) {
+        Entry entry = entryMap.get(className);
+        return entry == null ? null : entry.getPointcut();
+    }
+
+    static List<Entry> read(Reader reader) throws IOException {
+        List<Entry> entryList = new ArrayList<>();
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            if (line.trim().isEmpty() || line.startsWith(COMMENT)) {
+                continue;
+            }
+            String[] fields = line.split(SEPARATOR, 3);
+            if (fields.length < 2) {
+                throw new IOException("malformed component index line: " + line);
+            }
+            Entry entry = new Entry(fields[0]);
+            entry.getStereotypes().addAll(Arrays.asList(fields[1].split(STEREOTYPE_SEPARATOR)));
+            if (fields.length == 3) {
+                entry.setPointcut(fields[2]);
+            }
+            entryList.add(entry);
+        }
+        return entryList;
+    }
+
+    static void write(Collection<Entry> entries, Writer writer) throws IOException {
+        writer.write(COMMENT + " generated by " + ComponentIndexProcessor.class.getName() + ", do not edit\n");
+        for (Entry entry : entries) {
+            writer.write(entry.getClassName());
+            writer.write(SEPARATOR);
+            writer.write(String.join(STEREOTYPE_SEPARATOR, entry.getStereotypes()));
+            if (entry.getPointcut() != null) {
+                writer.write(SEPARATOR);
+                // pointcut表达式中不应该出现换行，这里保证一行只对应一个类
+                writer.write(entry.getPointcut().replaceAll("\\s+", " "));
+            }
+            writer.write("\n");
+        }
+    }
+
+    /**
+     * 索引项
+     */
+    static class Entry {
+        private final String className;
+        private final Set<String> stereotypes = new TreeSet<>();
+        private String pointcut;
+
+        Entry(String className) {
+            this.className = className;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        Set<String> getStereotypes() {
+            return stereotypes;
+        }
+
+        String getPointcut() {
+            return pointcut;
+        }
+
+        void setPointcut(String pointcut) {
+            this.pointcut = pointcut;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.myframework.core.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期生成组件索引的注解处理器
+ *
+ * 编译时把所有被BEAN_ANNOTATION标记的类，连同@Aspect的pointcut表达式一起写入META-INF/myframework.components，
+ * 运行时BeanContainer直接读取这个索引，不再需要扫描目录和jar包，容器的启动时间也就和classpath的大小无关了
+ *
+ * 注意：这个类会在编译其他代码之前被单独编译，并且编译时关闭了注解处理（见pom.xml），
+ * 所以这里不能使用lombok，也不能引用框架中的其他类，注解只能通过全名来引用
+ */
+@SupportedAnnotationTypes({
+        ComponentIndexProcessor.COMPONENT,
+        ComponentIndexProcessor.CONTROLLER,
+        ComponentIndexProcessor.REPOSITORY,
+        ComponentIndexProcessor.SERVICE,
+        ComponentIndexProcessor.ASPECT})
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    /**
+     * 和BeanContainer中的BEAN_ANNOTATION保持一致
+     */
+    static final String COMPONENT = "org.myframework.core.annotation.Component";
+    static final String CONTROLLER = "org.myframework.core.annotation.Controller";
+    static final String REPOSITORY = "org.myframework.core.annotation.Repository";
+    static final String SERVICE = "org.myframework.core.annotation.Service";
+    static final String ASPECT = "org.myframework.aop.annotation.Aspect";
+    private static final String POINTCUT = "pointcut";
+
+    /**
+     * 类名 -> 索引项，使用TreeMap保证每次生成的文件内容一致
+     */
+    private final Map<String, ComponentIndex.Entry> entryMap = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    addEntry((TypeElement) element, annotation);
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        // 不独占这些注解，其他的处理器同样可以处理
+        return false;
+    }
+
+    private void addEntry(TypeElement type, TypeElement annotation) {
+        Elements elements = processingEnv.getElementUtils();
+        String className = elements.getBinaryName(type).toString();
+        String annotationName = annotation.getQualifiedName().toString();
+        ComponentIndex.Entry entry = entryMap.computeIfAbsent(className, ComponentIndex.Entry::new);
+        entry.getStereotypes().add(annotationName);
+        if (ASPECT.equals(annotationName)) {
+            entry.setPointcut(readPointcut(type));
+        }
+    }
+
+    private String readPointcut(TypeElement type) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!ASPECT.equals(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString())) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : mirror.getElementValues().entrySet()) {
+                if (POINTCUT.contentEquals(value.getKey().getSimpleName())) {
+                    return value.getValue().getValue().toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeIndex() {
+        mergeExistingIndex();
+        if (entryMap.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                ComponentIndex.write(entryMap.values(), writer);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "unable to write component index: " + e);
+        }
+    }
+
+    /**
+     * 增量编译时只有部分源文件参与编译，需要保留上一次生成的索引中，没有参与本次编译但依然有效的类
+     */
+    private void mergeExistingIndex() {
+        List<ComponentIndex.Entry> existingEntries;
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.INDEX_LOCATION);
+            try (Reader reader = new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8)) {
+                existingEntries = ComponentIndex.read(reader);
+            }
+        } catch (IOException e) {
+            // 第一次编译时索引还不存在
+            return;
+        }
+        Elements elements = processingEnv.getElementUtils();
+        for (ComponentIndex.Entry entry : existingEntries) {
+            if (entryMap.containsKey(entry.getClassName())) {
+                continue;
+            }
+            // 类已经被删除，或者已经不再带有组件注解的，从索引中去掉
+            TypeElement type = elements.getTypeElement(entry.getClassName().replace('$', '.'));
+            if (type != null && isStillAnnotated(type, entry.getStereotypes())) {
+                entryMap.put(entry.getClassName(), entry);
+            }
+        }
+    }
+
+    private boolean isStillAnnotated(TypeElement type, Set<String> stereotypes) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            String annotationName = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (stereotypes.contains(annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
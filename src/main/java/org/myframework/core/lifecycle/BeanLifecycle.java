@@ -0,0 +1,267 @@
+package org.myframework.core.lifecycle;
+
+import lombok.extern.slf4j.Slf4j;
+import org.myframework.core.BeanContainer;
+import org.myframework.core.BeanPostProcessor;
+import org.myframework.core.TargetProxy;
+import org.myframework.core.annotation.PostConstruct;
+import org.myframework.core.annotation.PreDestroy;
+import org.myframework.core.annotation.Warmup;
+import org.myframework.core.startup.StartupRecorder;
+import org.myframework.core.startup.StartupStep;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * bean的生命周期：初始化、预热、销毁
+ *
+ * 在loadBeans、doAop、doIoC都完成之后调用start：
+ * 1.并行执行所有bean的@PostConstruct方法，一个bean的初始化方法在它所依赖的bean的初始化方法都执行完之后才会执行，
+ *   依赖关系来自依赖注入时登记的信息，没有依赖关系的bean互不等待
+ * 2.并行执行所有的@Warmup方法，让热点路径在容器就绪之前完成JIT编译
+ * 3.通知StartupListener容器已经就绪
+ * 之后创建的延迟bean和非单例bean，在创建时执行@PostConstruct方法
+ *
+ * 关闭时调用stop，按照依赖方在前、被依赖方在后的顺序执行@PreDestroy方法
+ */
+@Slf4j
+public class BeanLifecycle {
+
+    /**
+     * 并行执行初始化方法和预热方法使用的线程数，默认为CPU的核数
+     * 比如 -Dmyframework.lifecycle.parallelism=8
+     */
+    public static final String PARALLELISM_PROPERTY = "myframework.lifecycle.parallelism";
+
+    private final BeanContainer beanContainer;
+    private volatile boolean ready = false;
+
+    public BeanLifecycle() {
+        beanContainer = BeanContainer.getInstance();
+    }
+
+    /**
+     * 初始化、预热，然后标记容器就绪，已经就绪时重复调用不会再次执行初始化方法
+     */
+    public synchronized void start() {
+        if (ready) {
+            return;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(getParallelism(), new LifecycleThreadFactory());
+        try {
+            initialize(executorService);
+            warmup(executorService);
+        } finally {
+            executorService.shutdown();
+        }
+        ready = true;
+        StartupRecorder.markReady();
+    }
+
+    /**
+     * 容器是否已经就绪
+     * @return 是否就绪
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void initialize(ExecutorService executorService) {
+        try (StartupStep step = StartupRecorder.start("postConstruct")) {
+            //之后才创建的bean在创建时初始化
+            beanContainer.addBeanPostProcessor(BeanPostProcessor.LIFECYCLE_ORDER, (clazz, bean) -> {
+                invokeAll(clazz, bean, PostConstruct.class);
+                return bean;
+            });
+            //处理器注册之后再复制：初始化方法中创建的延迟bean已经由处理器初始化过，不能再次被调度
+            List<Class<?>> classList = new ArrayList<>(beanContainer.getClasses());
+            Set<Class<?>> classSet = new HashSet<>(classList);
+            Map<Class<?>, Set<Class<?>>> dependencyMap = new HashMap<>();
+            for (Class<?> clazz : classList) {
+                for (Class<?> dependent : beanContainer.getDependents(clazz)) {
+                    dependencyMap.computeIfAbsent(dependent, k -> new HashSet<>()).add(clazz);
+                }
+            }
+            Map<Class<?>, CompletableFuture<Void>> futureMap = new HashMap<>();
+            for (Class<?> clazz : classList) {
+                scheduleInitialize(clazz, classSet, dependencyMap, futureMap, new HashSet<>(), executorService);
+            }
+            join(futureMap.values());
+            step.count("beans", futureMap.size());
+        }
+    }
+
+    /**
+     * 为一个bean创建初始化任务，它依赖的bean的初始化任务会先被创建
+     * @param classSet 开始调度时容器中已经创建的bean，只有这些bean由这里初始化
+     * @param visiting 当前路径上正在创建任务的bean，字段注入允许循环依赖，遇到环时忽略这条依赖
+     */
+    private CompletableFuture<Void> scheduleInitialize(Class<?> clazz, Set<Class<?>> classSet,
+                                                       Map<Class<?>, Set<Class<?>>> dependencyMap,
+                                                       Map<Class<?>, CompletableFuture<Void>> futureMap,
+                                                       Set<Class<?>> visiting, ExecutorService executorService) {
+        CompletableFuture<Void> future = futureMap.get(clazz);
+        if (future != null) {
+            return future;
+        }
+        visiting.add(clazz);
+        List<CompletableFuture<Void>> dependencyFutures = new ArrayList<>();
+        for (Class<?> dependency : dependencyMap.getOrDefault(clazz, Collections.emptySet())) {
+            if (!visiting.contains(dependency) && classSet.contains(dependency)) {
+                dependencyFutures.add(scheduleInitialize(dependency, classSet, dependencyMap, futureMap, visiting, executorService));
+            }
+        }
+        visiting.remove(clazz);
+        Object bean = beanContainer.getBean(clazz);
+        future = CompletableFuture.allOf(dependencyFutures.toArray(new CompletableFuture<?>[0]))
+                .thenRunAsync(() -> invokeAll(clazz, bean, PostConstruct.class), executorService);
+        futureMap.put(clazz, future);
+        return future;
+    }
+
+    private void warmup(ExecutorService executorService) {
+        try (StartupStep step = StartupRecorder.start("warmup")) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (Class<?> clazz : beanContainer.getClasses()) {
+                Object bean = beanContainer.getBean(clazz);
+                for (Method method : findMethods(clazz, Warmup.class)) {
+                    int iterations = method.getAnnotation(Warmup.class).value();
+                    futures.add(CompletableFuture.runAsync(() -> {
+                        for (int i = 0; i < iterations; i++) {
+                            invoke(method, bean);
+                        }
+                    }, executorService));
+                }
+            }
+            join(futures);
+            step.count("methods", futures.size());
+        }
+    }
+
+    /**
+     * 执行所有的@PreDestroy方法，依赖方先于被依赖方，单个方法失败不影响其他bean的销毁
+     * 非单例bean的实例由作用域管理，还没有被创建的延迟bean也不需要销毁，这些bean都会被跳过，
+     * 否则获取它们时反而会创建出新的实例，请求作用域在请求之外获取还会直接失败
+     */
+    public void stop() {
+        ready = false;
+        List<Class<?>> destroyOrder = new ArrayList<>();
+        Set<Class<?>> visited = new HashSet<>();
+        for (Class<?> clazz : beanContainer.getClasses()) {
+            visitDependentsFirst(clazz, visited, destroyOrder);
+        }
+        for (Class<?> clazz : destroyOrder) {
+            if (beanContainer.isScoped(clazz) || beanContainer.isLazyPending(clazz)) {
+                continue;
+            }
+            try {
+                Object bean = beanContainer.getBean(clazz);
+                if (bean == null) {
+                    continue;
+                }
+                invokeAll(clazz, bean, PreDestroy.class);
+            } catch (RuntimeException e) {
+                log.warn("pre destroy of " + clazz.getName() + " failed", e);
+            }
+        }
+    }
+
+    private void visitDependentsFirst(Class<?> clazz, Set<Class<?>> visited, List<Class<?>> destroyOrder) {
+        if (!visited.add(clazz)) {
+            return;
+        }
+        for (Class<?> dependent : beanContainer.getDependents(clazz)) {
+            visitDependentsFirst(dependent, visited, destroyOrder);
+        }
+        destroyOrder.add(clazz);
+    }
+
+    /**
+     * 注册JVM关闭时执行stop的钩子
+     */
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "bean-lifecycle-shutdown"));
+    }
+
+    private static void invokeAll(Class<?> clazz, Object bean, Class<? extends Annotation> annotation) {
+        for (Method method : findMethods(clazz, annotation)) {
+            invoke(method, bean);
+        }
+    }
+
+    /**
+     * 获取类及其父类中被注解标记的方法，父类的方法在前
+     */
+    private static List<Method> findMethods(Class<?> clazz, Class<? extends Annotation> annotation) {
+        LinkedList<Method> methodList = new LinkedList<>();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            Method[] methods = current.getDeclaredMethods();
+            for (int i = methods.length - 1; i >= 0; i--) {
+                Method method = methods[i];
+                if (!method.isAnnotationPresent(annotation)) {
+                    continue;
+                }
+                if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())) {
+                    throw new RuntimeException("@" + annotation.getSimpleName() + " method must be a non-static method without parameters: " + method);
+                }
+                method.setAccessible(true);
+                methodList.addFirst(method);
+            }
+        }
+        return methodList;
+    }
+
+    /**
+     * 生命周期方法是bean的类中声明的，JDK动态代理时在被代理的对象上执行
+     */
+    private static void invoke(Method method, Object bean) {
+        try {
+            method.invoke(TargetProxy.unwrap(bean));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("lifecycle method " + method + " failed", e.getTargetException());
+        }
+    }
+
+    private static void join(Collection<CompletableFuture<Void>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static int getParallelism() {
+        int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, 0);
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 执行生命周期方法的线程，使用守护线程，避免初始化失败时线程池阻止JVM退出
+     */
+    private static class LifecycleThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bean-lifecycle-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
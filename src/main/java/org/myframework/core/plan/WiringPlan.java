@@ -0,0 +1,486 @@
+package org.myframework.core.plan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.myframework.core.index.ComponentIndex;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * 构建时生成的装配计划，由WiringPlanGenerator写入，BeanContainer在启动时读取
+ *
+ * 启动时的发现过程需要大量的反射：扫描类、getDeclaredFields、isAnnotationPresent、getClassesBySuper，
+ * 以及AspectJ的pointcut匹配，而对同一个构建产物来说这些结果每次都是一样的。
+ * 装配计划把这些结果提前算好：
+ * 1.所有的bean，按照依赖关系排好创建的顺序
+ * 2.每个bean需要注入的成员变量，以及成员变量对应的实现类；ObjectProvider和集合记录注入的方式和元素类型，它们的实现类在运行时解析
+ * 3.每个bean粗筛匹配的Aspect，以及每个方法精筛之后的Aspect链
+ * 启动时直接按照计划创建、注入、织入
+ *
+ * 计划是否过期通过校验和判断：组件索引的校验和，以及每个bean的class文件的校验和，任何一个不一致时整个计划作废，
+ * 容器退回到正常的发现过程。新增的bean只能通过组件索引的变化发现，所以classpath中没有组件索引时不使用计划
+ *
+ * 计划只对生成时的包有效，loadBeans的包不一致时同样不使用计划，否则会只加载到计划中的一部分bean，
+ * 或者漏掉计划之外的bean
+ *
+ * 文件格式（DataOutputStream）：
+ * magic(int) version(short) packageName(UTF) indexChecksum(long)
+ * 字符串表：count(int) string(UTF)...，之后所有的字符串都是字符串表中的下标
+ * bean：count(int)，每个bean：className checksum(long) 成员变量 粗筛的Aspect 方法链
+ * 成员变量：count(short)，每个成员变量：fieldName kind(byte) className beanName
+ */
+@Slf4j
+public class WiringPlan {
+
+    /**
+     * 装配计划在classpath中的位置
+     */
+    public static final String PLAN_LOCATION = "META-INF/myframework.plan";
+
+    /**
+     * 设置为true时忽略装配计划，始终使用发现过程
+     * 比如 -Dmyframework.plan.ignore=true
+     */
+    public static final String IGNORE_PLAN_PROPERTY = "myframework.plan.ignore";
+
+    private static final int MAGIC = 0x4D465750;
+    private static final short VERSION = 3;
+
+    /**
+     * classpath中没有组件索引时的校验和
+     */
+    public static final long NO_INDEX = -1;
+
+    private final String packageName;
+    private final long indexChecksum;
+    /**
+     * 类名 -> bean的计划，按照创建的顺序排列
+     */
+    private final Map<String, BeanPlan> beanPlanMap = new LinkedHashMap<>();
+
+    /**
+     * @param packageName 生成计划时扫描的包名
+     * @param indexChecksum 生成计划时组件索引的校验和
+     */
+    public WiringPlan(String packageName, long indexChecksum) {
+        this.packageName = packageName;
+        this.indexChecksum = indexChecksum;
+    }
+
+    /**
+     * 读取classpath中的装配计划
+     * @param classLoader 类加载器
+     * @param packageName loadBeans的包名
+     * @return 没有计划、计划被忽略、计划不是这个包的、计划已经过期或者损坏时返回null
+     */
+    public static WiringPlan load(ClassLoader classLoader, String packageName) {
+        if (Boolean.getBoolean(IGNORE_PLAN_PROPERTY)) {
+            return null;
+        }
+        URL url = classLoader.getResource(PLAN_LOCATION);
+        if (url == null) {
+            return null;
+        }
+        try (InputStream in = url.openStream()) {
+            WiringPlan wiringPlan = read(in);
+            String staleReason = wiringPlan.verify(classLoader, packageName);
+            if (staleReason != null) {
+                log.info("ignore stale wiring plan " + url + ": " + staleReason);
+                return null;
+            }
+            return wiringPlan;
+        } catch (IOException | RuntimeException e) {
+            log.warn("ignore broken wiring plan " + url, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return 过期的原因，没有过期时返回null
+     */
+    private String verify(ClassLoader classLoader, String packageName) throws IOException {
+        if (!this.packageName.equals(packageName)) {
+            return "generated for package " + this.packageName + " instead of " + packageName;
+        }
+        long currentIndexChecksum = indexChecksum(classLoader);
+        if (currentIndexChecksum == NO_INDEX) {
+            return "no component index to detect added beans";
+        }
+        if (indexChecksum != currentIndexChecksum) {
+            return "component index changed";
+        }
+        for (BeanPlan beanPlan : beanPlanMap.values()) {
+            if (beanPlan.checksum != classChecksum(classLoader, beanPlan.className)) {
+                return beanPlan.className + " changed";
+            }
+            beanPlan.verifiedClassLoader = classLoader;
+        }
+        return null;
+    }
+
+    /**
+     * 计算classpath中所有组件索引的校验和，增删bean都会改变组件索引
+     * @param classLoader 类加载器
+     * @return 校验和，没有组件索引时为NO_INDEX
+     */
+    public static long indexChecksum(ClassLoader classLoader) throws IOException {
+        CRC32 crc32 = new CRC32();
+        boolean found = false;
+        Enumeration<URL> urls = classLoader.getResources(ComponentIndex.INDEX_LOCATION);
+        while (urls.hasMoreElements()) {
+            try (InputStream in = urls.nextElement().openStream()) {
+                update(crc32, in);
+            }
+            found = true;
+        }
+        return found ? crc32.getValue() : NO_INDEX;
+    }
+
+    /**
+     * 计算类的class文件的校验和
+     * @param classLoader 类加载器
+     * @param className 类名
+     * @return 校验和，找不到class文件时为-1
+     */
+    public static long classChecksum(ClassLoader classLoader, String className) throws IOException {
+        try (InputStream in = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (in == null) {
+                return -1;
+            }
+            CRC32 crc32 = new CRC32();
+            update(crc32, in);
+            return crc32.getValue();
+        }
+    }
+
+    private static void update(CRC32 crc32, InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            crc32.update(buffer, 0, length);
+        }
+    }
+
+    /**
+     * @return 生成计划时扫描的包名
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * 添加一个bean的计划，添加的顺序就是创建的顺序
+     * @param beanPlan bean的计划
+     */
+    public void addBeanPlan(BeanPlan beanPlan) {
+        beanPlanMap.put(beanPlan.className, beanPlan);
+    }
+
+    /**
+     * @return 按照创建顺序排列的bean的计划
+     */
+    public Collection<BeanPlan> getBeanPlans() {
+        return Collections.unmodifiableCollection(beanPlanMap.values());
+    }
+
+    /**
+     * 获取bean的计划
+     * @param clazz bean的Class对象
+     * @return 不在计划中的bean返回null，比如运行时通过addBean添加的bean
+     */
+    public BeanPlan getBeanPlan(Class<?> clazz) {
+        BeanPlan beanPlan = beanPlanMap.get(clazz.getName());
+        //热更新之后同名的类可能来自不同的类加载器，这时候计划中的信息已经不可靠了
+        return beanPlan != null && beanPlan.checksumVerifiedFor(clazz) ? beanPlan : null;
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        StringTable stringTable = new StringTable();
+        for (BeanPlan beanPlan : beanPlanMap.values()) {
+            beanPlan.collectStrings(stringTable);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeUTF(packageName);
+        out.writeLong(indexChecksum);
+        out.writeInt(stringTable.strings.size());
+        for (String string : stringTable.strings) {
+            out.writeUTF(string);
+        }
+        out.writeInt(beanPlanMap.size());
+        for (BeanPlan beanPlan : beanPlanMap.values()) {
+            beanPlan.write(out, stringTable);
+        }
+        out.flush();
+    }
+
+    static WiringPlan read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a wiring plan");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported wiring plan version " + version);
+        }
+        WiringPlan wiringPlan = new WiringPlan(in.readUTF(), in.readLong());
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int beanCount = in.readInt();
+        for (int i = 0; i < beanCount; i++) {
+            wiringPlan.addBeanPlan(BeanPlan.read(in, strings));
+        }
+        return wiringPlan;
+    }
+
+    private static List<String> readStrings(DataInputStream in, String[] strings) throws IOException {
+        int count = in.readUnsignedShort();
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(strings[in.readInt()]);
+        }
+        return list;
+    }
+
+    private static void writeStrings(DataOutputStream out, StringTable stringTable, List<String> list) throws IOException {
+        out.writeShort(list.size());
+        for (String string : list) {
+            out.writeInt(stringTable.indexOf(string));
+        }
+    }
+
+    /**
+     * 一个bean的计划
+     */
+    public static class BeanPlan {
+        private final String className;
+        private final long checksum;
+        private final List<FieldPlan> fieldPlans = new ArrayList<>();
+        private final List<String> aspectClassNames = new ArrayList<>();
+        private final List<MethodPlan> methodPlans = new ArrayList<>();
+        private volatile ClassLoader verifiedClassLoader;
+
+        public BeanPlan(String className, long checksum) {
+            this.className = className;
+            this.checksum = checksum;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return 需要注入的成员变量
+         */
+        public List<FieldPlan> getFieldPlans() {
+            return fieldPlans;
+        }
+
+        /**
+         * @return 粗筛匹配的Aspect的类名，为空时不需要代理
+         */
+        public List<String> getAspectClassNames() {
+            return aspectClassNames;
+        }
+
+        /**
+         * @return 精筛之后有Aspect的方法，以及按照order排好序的Aspect链
+         */
+        public List<MethodPlan> getMethodPlans() {
+            return methodPlans;
+        }
+
+        private boolean checksumVerifiedFor(Class<?> clazz) {
+            ClassLoader classLoader = clazz.getClassLoader();
+            if (classLoader == verifiedClassLoader) {
+                return true;
+            }
+            try {
+                if (classLoader != null && classChecksum(classLoader, className) == checksum) {
+                    verifiedClassLoader = classLoader;
+                    return true;
+                }
+            } catch (IOException e) {
+                log.warn("unable to verify wiring plan of " + className, e);
+            }
+            return false;
+        }
+
+        private void collectStrings(StringTable stringTable) {
+            stringTable.add(className);
+            for (FieldPlan fieldPlan : fieldPlans) {
+                stringTable.add(fieldPlan.fieldName);
+                stringTable.add(fieldPlan.beanClassName);
+                stringTable.add(fieldPlan.beanName);
+            }
+            aspectClassNames.forEach(stringTable::add);
+            for (MethodPlan methodPlan : methodPlans) {
+                stringTable.add(methodPlan.name);
+                methodPlan.parameterTypeNames.forEach(stringTable::add);
+                methodPlan.aspectClassNames.forEach(stringTable::add);
+            }
+        }
+
+        private void write(DataOutputStream out, StringTable stringTable) throws IOException {
+            out.writeInt(stringTable.indexOf(className));
+            out.writeLong(checksum);
+            out.writeShort(fieldPlans.size());
+            for (FieldPlan fieldPlan : fieldPlans) {
+                out.writeInt(stringTable.indexOf(fieldPlan.fieldName));
+                out.writeByte(fieldPlan.kind.ordinal());
+                out.writeInt(stringTable.indexOf(fieldPlan.beanClassName));
+                out.writeInt(stringTable.indexOf(fieldPlan.beanName));
+            }
+            writeStrings(out, stringTable, aspectClassNames);
+            out.writeShort(methodPlans.size());
+            for (MethodPlan methodPlan : methodPlans) {
+                out.writeInt(stringTable.indexOf(methodPlan.name));
+                writeStrings(out, stringTable, methodPlan.parameterTypeNames);
+                writeStrings(out, stringTable, methodPlan.aspectClassNames);
+            }
+        }
+
+        private static BeanPlan read(DataInputStream in, String[] strings) throws IOException {
+            BeanPlan beanPlan = new BeanPlan(strings[in.readInt()], in.readLong());
+            int fieldCount = in.readUnsignedShort();
+            InjectionKind[] kinds = InjectionKind.values();
+            for (int i = 0; i < fieldCount; i++) {
+                String fieldName = strings[in.readInt()];
+                InjectionKind kind = kinds[in.readUnsignedByte()];
+                beanPlan.fieldPlans.add(new FieldPlan(fieldName, kind, strings[in.readInt()], strings[in.readInt()]));
+            }
+            beanPlan.aspectClassNames.addAll(readStrings(in, strings));
+            int methodCount = in.readUnsignedShort();
+            for (int i = 0; i < methodCount; i++) {
+                String name = strings[in.readInt()];
+                List<String> parameterTypeNames = readStrings(in, strings);
+                beanPlan.methodPlans.add(new MethodPlan(name, parameterTypeNames, readStrings(in, strings)));
+            }
+            return beanPlan;
+        }
+    }
+
+    /**
+     * 成员变量注入的方式
+     */
+    public enum InjectionKind {
+        /**
+         * 注入一个已经确定了实现类的bean
+         */
+        BEAN,
+        /**
+         * 注入ObjectProvider，第一次get时才解析
+         */
+        PROVIDER,
+        /**
+         * 注入所有的实现类，分别对应T[]、List<T>和Map<String, T>
+         */
+        ARRAY,
+        LIST,
+        MAP
+    }
+
+    /**
+     * 一个需要注入的成员变量
+     */
+    public static class FieldPlan {
+        private final String fieldName;
+        private final InjectionKind kind;
+        private final String beanClassName;
+        private final String beanName;
+
+        /**
+         * @param fieldName 成员变量名
+         * @param beanClassName 注入的bean在容器中的类名，也就是已经确定了的实现类
+         */
+        public FieldPlan(String fieldName, String beanClassName) {
+            this(fieldName, InjectionKind.BEAN, beanClassName, "");
+        }
+
+        /**
+         * @param fieldName 成员变量名
+         * @param kind 注入的方式
+         * @param beanClassName BEAN时是已经确定了的实现类，其他方式是ObjectProvider的泛型参数或者集合的元素类型
+         * @param beanName @Qualifier或者@Autowired中指定的bean名称，没有指定时为空字符串
+         */
+        public FieldPlan(String fieldName, InjectionKind kind, String beanClassName, String beanName) {
+            this.fieldName = fieldName;
+            this.kind = kind;
+            this.beanClassName = beanClassName;
+            this.beanName = beanName;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public InjectionKind getKind() {
+            return kind;
+        }
+
+        public String getBeanClassName() {
+            return beanClassName;
+        }
+
+        public String getBeanName() {
+            return beanName;
+        }
+    }
+
+    /**
+     * 一个被织入的方法
+     */
+    public static class MethodPlan {
+        private final String name;
+        private final List<String> parameterTypeNames;
+        private final List<String> aspectClassNames;
+
+        public MethodPlan(String name, List<String> parameterTypeNames, List<String> aspectClassNames) {
+            this.name = name;
+            this.parameterTypeNames = parameterTypeNames;
+            this.aspectClassNames = aspectClassNames;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 参数类型的类名（Class.getName）
+         */
+        public List<String> getParameterTypeNames() {
+            return parameterTypeNames;
+        }
+
+        /**
+         * @return 按照order排好序的Aspect的类名
+         */
+        public List<String> getAspectClassNames() {
+            return aspectClassNames;
+        }
+    }
+
+    /**
+     * 字符串表，同一个类名在计划中会出现很多次，只保存一份
+     */
+    private static class StringTable {
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> indexMap = new HashMap<>();
+
+        void add(String string) {
+            indexMap.computeIfAbsent(string, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+
+        int indexOf(String string) {
+            return indexMap.get(string);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.myframework.core.plan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.myframework.aop.AspectWeaver;
+import org.myframework.core.BeanContainer;
+import org.myframework.inject.annotation.DependencyInjector;
+import org.myframework.inject.annotation.ParallelBeanInitializer;
+import org.myframework.util.ClassUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * 构建时生成装配计划
+ *
+ * 在编译之后执行（见pom.xml中的wiring-plan profile）：
+ * mvn process-classes -Pwiring-plan -Dwiring.plan.package=com.example
+ * 生成的计划会写入到class输出目录的META-INF/myframework.plan中，随构建产物一起发布
+ *
+ * 生成计划时只登记bean的定义，不会创建bean（切面除外）
+ */
+@Slf4j
+public class WiringPlanGenerator {
+
+    private final BeanContainer beanContainer;
+
+    public WiringPlanGenerator() {
+        beanContainer = BeanContainer.getInstance();
+    }
+
+    /**
+     * @param args 包名 class输出目录
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("usage: WiringPlanGenerator <packageName> <classOutputDirectory>");
+        }
+        //生成计划时必须使用发现过程，不能读取上一次生成的计划
+        System.setProperty(WiringPlan.IGNORE_PLAN_PROPERTY, "true");
+        WiringPlan wiringPlan = new WiringPlanGenerator().generate(args[0]);
+        File planFile = new File(args[1], WiringPlan.PLAN_LOCATION);
+        if (!planFile.getParentFile().isDirectory() && !planFile.getParentFile().mkdirs()) {
+            throw new IOException("unable to create directory " + planFile.getParentFile());
+        }
+        try (OutputStream out = new FileOutputStream(planFile)) {
+            wiringPlan.write(out);
+        }
+        log.info("write wiring plan of " + wiringPlan.getBeanPlans().size() + " beans to " + planFile);
+    }
+
+    /**
+     * 通过发现过程计算package下所有bean的装配计划
+     * @param packageName 包名
+     * @return 装配计划
+     */
+    public WiringPlan generate(String packageName) throws IOException {
+        ClassLoader classLoader = ClassUtil.getClassLoader();
+        beanContainer.loadBeanDefinitions(packageName);
+        Set<Class<?>> classSet = beanContainer.getClassesBySuper(Object.class);
+        long indexChecksum = WiringPlan.indexChecksum(classLoader);
+        if (indexChecksum == WiringPlan.NO_INDEX) {
+            log.warn("no component index in classpath, the wiring plan of " + packageName + " will not be used at startup");
+        }
+        WiringPlan wiringPlan = new WiringPlan(packageName, indexChecksum);
+        if (classSet == null) {
+            return wiringPlan;
+        }
+
+        DependencyInjector dependencyInjector = new DependencyInjector();
+        Map<Class<?>, WiringPlan.BeanPlan> beanPlanMap = new HashMap<>();
+        Map<Class<?>, Set<Class<?>>> dependencyGraph = new HashMap<>();
+        Map<String, Class<?>> classNameMap = new HashMap<>();
+        for (Class<?> clazz : classSet) {
+            classNameMap.put(clazz.getName(), clazz);
+        }
+        for (Class<?> clazz : classSet) {
+            WiringPlan.BeanPlan beanPlan = new WiringPlan.BeanPlan(clazz.getName(), WiringPlan.classChecksum(classLoader, clazz.getName()));
+            dependencyInjector.planInjection(clazz, beanPlan);
+            beanPlanMap.put(clazz, beanPlan);
+            Set<Class<?>> dependencies = new HashSet<>();
+            for (WiringPlan.FieldPlan fieldPlan : beanPlan.getFieldPlans()) {
+                if (fieldPlan.getKind() != WiringPlan.InjectionKind.BEAN) {
+                    continue;
+                }
+                Class<?> dependency = classNameMap.get(fieldPlan.getBeanClassName());
+                if (dependency != null) {
+                    dependencies.add(dependency);
+                }
+            }
+            dependencyGraph.put(clazz, dependencies);
+        }
+        new AspectWeaver().planAspects(beanPlanMap.values());
+
+        //按照依赖关系排列创建的顺序，字段注入允许循环依赖，有环时保持原来的顺序
+        List<Class<?>> createOrder = new ArrayList<>();
+        try {
+            ParallelBeanInitializer.sortByLevel(dependencyGraph).forEach(createOrder::addAll);
+        } catch (RuntimeException e) {
+            log.info("keep discovery order in wiring plan: " + e.getMessage());
+            createOrder.addAll(classSet);
+        }
+        for (Class<?> clazz : createOrder) {
+            wiringPlan.addBeanPlan(beanPlanMap.get(clazz));
+        }
+        return wiringPlan;
+    }
+}
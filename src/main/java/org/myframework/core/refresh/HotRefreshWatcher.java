@@ -0,0 +1,334 @@
+package org.myframework.core.refresh;
+
+import lombok.extern.slf4j.Slf4j;
+import org.myframework.aop.AspectWeaver;
+import org.myframework.aop.annotation.Aspect;
+import org.myframework.core.BeanContainer;
+import org.myframework.core.startup.StartupRecorder;
+import org.myframework.core.startup.StartupStep;
+import org.myframework.inject.annotation.DependencyInjector;
+import org.myframework.util.ClassUtil;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 增量热更新：监听扫描过的class目录，只重新加载发生了变化的类
+ *
+ * 1.通过WatchService监听package对应的class目录（包括子目录），一次编译通常会修改多个文件，
+ *   所以收到第一个事件之后会再等待一小段时间，把这段时间内的变化合并成一次更新
+ * 2.变化的class文件由一个新的RefreshClassLoader加载，旧版本的bean从容器中移除，新版本的bean重新创建，
+ *   创建时同样会经过依赖注入和AOP织入的处理器
+ * 3.只有依赖了旧版本bean的bean需要重新注入，其他的bean不受影响
+ * 4.切面发生变化时，先替换AOP处理器，再重新创建粗筛匹配了旧版本或者新版本切面的bean，它们的依赖方同样会重新注入
+ *
+ * 所以一次更新的开销只和变化的类以及依赖它们的bean的数量有关，和整个应用的大小无关
+ *
+ * 限制：
+ * 1.依赖方的成员变量类型必须是接口或者没有变化的父类，如果直接使用了被更新的类作为成员变量的类型，新版本的类无法注入，只能重启
+ * 2.重新织入的bean是新创建的实例，旧实例中的状态不会被保留
+ *
+ * 只适合在开发环境和灰度环境中使用，比如通过 -Dmyframework.refresh.enabled=true 开启
+ */
+@Slf4j
+public class HotRefreshWatcher implements AutoCloseable {
+
+    /**
+     * 设置为true时，startIfEnabled会启动热更新
+     */
+    public static final String REFRESH_ENABLED_PROPERTY = "myframework.refresh.enabled";
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+    /**
+     * 合并变化的等待时间
+     */
+    private static final long QUIET_PERIOD_MILLIS = 200;
+
+    private final String packageName;
+    private final BeanContainer beanContainer;
+    private final DependencyInjector dependencyInjector;
+    private final AspectWeaver aspectWeaver;
+    /**
+     * 被监听的目录 -> 这个目录所属的class根目录
+     */
+    private final Map<WatchKey, Path> watchedRootMap = new HashMap<>();
+    /**
+     * 最近一次热更新使用的类加载器，下一次热更新的类加载器以它作为父加载器
+     */
+    private ClassLoader lastClassLoader;
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public HotRefreshWatcher(String packageName) {
+        this.packageName = packageName;
+        this.beanContainer = BeanContainer.getInstance();
+        this.dependencyInjector = new DependencyInjector();
+        this.aspectWeaver = new AspectWeaver();
+        this.lastClassLoader = ClassUtil.getClassLoader();
+    }
+
+    /**
+     * 设置了REFRESH_ENABLED_PROPERTY时启动热更新
+     * @param packageName 包名，和loadBeans时的一致
+     * @return 没有开启时返回null
+     */
+    public static HotRefreshWatcher startIfEnabled(String packageName) {
+        if (!Boolean.getBoolean(REFRESH_ENABLED_PROPERTY)) {
+            return null;
+        }
+        HotRefreshWatcher watcher = new HotRefreshWatcher(packageName);
+        watcher.start();
+        return watcher;
+    }
+
+    /**
+     * 开始监听package对应的所有class目录，jar包中的类不会被监听
+     */
+    public synchronized void start() {
+        if (watchThread != null) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            String packagePath = packageName.replace(".", "/");
+            Enumeration<URL> urls = ClassUtil.getClassLoader().getResources(packagePath);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                if (!ClassUtil.FILE_PROTOCOL.equalsIgnoreCase(url.getProtocol())) {
+                    continue;
+                }
+                Path packageDirectory = Paths.get(url.toURI());
+                Path root = packageDirectory;
+                for (int i = 0; i < packageName.split("\\.").length; i++) {
+                    root = root.getParent();
+                }
+                registerRecursively(packageDirectory, root, null);
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("unable to watch class directories of " + packageName, e);
+        }
+        watchThread = new Thread(this::watch, "hot-refresh-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("hot refresh is watching " + watchedRootMap.size() + " directories of " + packageName);
+    }
+
+    /**
+     * 注册目录和它的所有子目录
+     * @param changedFiles 不为null时，把目录中已经存在的class文件作为变化的文件，用于处理新建目录的情况
+     */
+    private void registerRecursively(Path directory, Path root, Set<Path> changedFiles) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedRootMap.put(key, root);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (changedFiles != null && file.toString().endsWith(CLASS_FILE_SUFFIX)) {
+                    changedFiles.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Map<Path, Set<Path>> changedFileMap = new HashMap<>();
+                WatchKey key = watchService.take();
+                //收到第一个事件之后继续收集，直到一段时间内没有新的事件
+                while (key != null) {
+                    collectChanges(key, changedFileMap);
+                    key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                for (Map.Entry<Path, Set<Path>> entry : changedFileMap.entrySet()) {
+                    try {
+                        refresh(entry.getKey(), entry.getValue());
+                    } catch (RuntimeException e) {
+                        log.error("hot refresh failed, restart is required", e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //close
+        }
+    }
+
+    private void collectChanges(WatchKey key, Map<Path, Set<Path>> changedFileMap) {
+        Path root = watchedRootMap.get(key);
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                log.warn("hot refresh lost some file events under " + directory + ", restart may be required");
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            Set<Path> changedFiles = changedFileMap.computeIfAbsent(root, k -> new HashSet<>());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                try {
+                    registerRecursively(file, root, changedFiles);
+                } catch (IOException e) {
+                    log.warn("unable to watch new directory " + file, e);
+                }
+            } else if (file.toString().endsWith(CLASS_FILE_SUFFIX)) {
+                changedFiles.add(file);
+            }
+        }
+        if (!key.reset()) {
+            //目录被删除
+            watchedRootMap.remove(key);
+        }
+    }
+
+    /**
+     * 根据变化的class文件更新容器，文件不存在时表示类被删除
+     * @param root class根目录
+     * @param changedFiles 变化的class文件
+     */
+    public synchronized void refresh(Path root, Collection<Path> changedFiles) {
+        if (changedFiles.isEmpty()) {
+            return;
+        }
+        try (StartupStep step = StartupRecorder.start("refresh")) {
+            Map<String, Class<?>> currentClassMap = new HashMap<>();
+            Set<Class<?>> currentClasses = beanContainer.getClassesBySuper(Object.class);
+            if (currentClasses != null) {
+                for (Class<?> clazz : currentClasses) {
+                    currentClassMap.put(clazz.getName(), clazz);
+                }
+            }
+            Map<String, Path> classFileMap = new HashMap<>();
+            Set<String> deletedClassNames = new HashSet<>();
+            for (Path file : changedFiles) {
+                String className = toClassName(root, file);
+                if (Files.isRegularFile(file)) {
+                    classFileMap.put(className, file);
+                } else {
+                    deletedClassNames.add(className);
+                }
+            }
+            RefreshClassLoader classLoader = new RefreshClassLoader(lastClassLoader, classFileMap);
+            lastClassLoader = classLoader;
+
+            int refreshedCount = 0;
+            //粗筛匹配了变化的切面（旧版本或者新版本）的bean，需要重新织入
+            Set<Class<?>> rewovenClasses = new HashSet<>();
+            boolean aspectChanged = false;
+            for (String className : deletedClassNames) {
+                Class<?> oldClass = currentClassMap.get(className);
+                if (oldClass != null) {
+                    if (oldClass.isAnnotationPresent(Aspect.class)) {
+                        rewovenClasses.addAll(aspectWeaver.getRoughMatchedClasses(oldClass));
+                        aspectChanged = true;
+                    }
+                    refreshClass(oldClass, null);
+                    refreshedCount++;
+                }
+            }
+            Map<Class<?>, Class<?>> changedClassMap = new HashMap<>();
+            Map<Class<?>, Class<?>> changedAspectMap = new HashMap<>();
+            for (String className : classFileMap.keySet()) {
+                Class<?> newClass;
+                try {
+                    newClass = Class.forName(className, false, classLoader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    log.warn("unable to load changed class " + className, e);
+                    continue;
+                }
+                Class<?> oldClass = currentClassMap.get(className);
+                if (oldClass == null && !BeanContainer.isBeanClass(newClass)) {
+                    //普通的类（比如内部类、工具类）在被引用到时由新的类加载器加载
+                    continue;
+                }
+                if (newClass.isAnnotationPresent(Aspect.class) || (oldClass != null && oldClass.isAnnotationPresent(Aspect.class))) {
+                    changedAspectMap.put(newClass, oldClass);
+                } else {
+                    changedClassMap.put(newClass, oldClass);
+                }
+            }
+            //先更新切面并替换AOP处理器，同一批次中变化的其他类创建时就会使用新的切面
+            for (Map.Entry<Class<?>, Class<?>> entry : changedAspectMap.entrySet()) {
+                if (entry.getValue() != null) {
+                    rewovenClasses.addAll(aspectWeaver.getRoughMatchedClasses(entry.getValue()));
+                }
+                refreshClass(entry.getValue(), entry.getKey());
+                refreshedCount++;
+                aspectChanged = true;
+            }
+            if (aspectChanged) {
+                aspectWeaver.reweave();
+                for (Class<?> aspectClass : changedAspectMap.keySet()) {
+                    rewovenClasses.addAll(aspectWeaver.getRoughMatchedClasses(aspectClass));
+                }
+            }
+            for (Map.Entry<Class<?>, Class<?>> entry : changedClassMap.entrySet()) {
+                refreshClass(entry.getValue(), entry.getKey());
+                refreshedCount++;
+            }
+            for (Class<?> rewovenClass : rewovenClasses) {
+                //同一批次中被替换的类和还没有被创建的延迟bean不需要重新创建
+                if (!beanContainer.containsBean(rewovenClass) || beanContainer.isLazyPending(rewovenClass)) {
+                    continue;
+                }
+                refreshClass(rewovenClass, rewovenClass);
+                refreshedCount++;
+            }
+            step.count("files", changedFiles.size()).count("beans", refreshedCount);
+        }
+    }
+
+    /**
+     * 用新版本的类替换旧版本的类，并重新注入依赖了旧版本bean的bean
+     * @param oldClass 旧版本的类，新增的类时为null
+     * @param newClass 新版本的类，类被删除时为null
+     */
+    public synchronized void refreshClass(Class<?> oldClass, Class<?> newClass) {
+        Set<Class<?>> dependents = oldClass == null ? Collections.emptySet() : beanContainer.getDependents(oldClass);
+        beanContainer.refreshBean(oldClass, newClass);
+        for (Class<?> dependent : dependents) {
+            //还没有被创建的延迟bean创建时会注入新的版本
+            if (!beanContainer.containsBean(dependent) || beanContainer.isLazyPending(dependent)) {
+                continue;
+            }
+            if (BeanContainer.getAutowiredConstructor(dependent) != null) {
+                //构造器注入的依赖保存在final成员变量中，只能重新创建，它的依赖方也会随之重新注入
+                refreshClass(dependent, dependent);
+                continue;
+            }
+            dependencyInjector.injectBean(dependent, beanContainer.getBean(dependent));
+        }
+        log.info("hot refreshed " + (newClass != null ? newClass.getName() : oldClass.getName())
+                + ", re-injected " + dependents.size() + " dependents");
+    }
+
+    private static String toClassName(Path root, Path classFile) {
+        String relativePath = root.relativize(classFile).toString();
+        return relativePath.substring(0, relativePath.length() - CLASS_FILE_SUFFIX.length())
+                .replace(classFile.getFileSystem().getSeparator(), ".");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchThread == null) {
+            return;
+        }
+        watchThread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("unable to close watch service", e);
+        }
+        watchThread = null;
+    }
+}
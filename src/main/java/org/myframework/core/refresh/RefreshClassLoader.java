@@ -0,0 +1,57 @@
+package org.myframework.core.refresh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 加载发生了变化的类的类加载器
+ *
+ * 已经加载过的类不能在原来的类加载器中重新定义，所以每次热更新都会创建一个新的类加载器：
+ * 只有这次变化了的类由它自己从class文件中加载（子优先），其他的类都交给父加载器，
+ * 父加载器是上一次热更新的类加载器，这样上一次更新过的类依然可以被引用到
+ */
+class RefreshClassLoader extends ClassLoader {
+
+    /**
+     * 类名 -> class文件
+     */
+    private final Map<String, Path> classFileMap;
+
+    RefreshClassLoader(ClassLoader parent, Map<String, Path> classFileMap) {
+        super(parent);
+        this.classFileMap = classFileMap;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!classFileMap.containsKey(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null) {
+                clazz = findClass(name);
+            }
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Path classFile = classFileMap.get(name);
+        if (classFile == null) {
+            throw new ClassNotFoundException(name);
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(classFile);
+            return defineClass(name, bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+}
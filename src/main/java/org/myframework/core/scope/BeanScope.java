@@ -0,0 +1,128 @@
+package org.myframework.core.scope;
+
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Dispatcher;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+import org.myframework.core.annotation.Scope;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * 非单例bean的作用域，负责在合适的时候创建实例，以及找到当前应该使用的那个实例
+ *
+ * 单例bean的成员变量只会被注入一次，而作用域内的实例是会变化的，所以注入的是一个作用域代理：
+ * 代理是bean类型的子类，每次方法调用时通过CGLIB的Dispatcher直接向作用域对象要当前的实例，
+ * 作用域对象在创建代理时就已经确定了，调用时不需要再根据Class去容器中查找
+ *
+ * 代理只是一个转发调用的空壳，它自己的成员变量永远不会被使用，所以创建代理时不调用bean的构造器：
+ * 构造器注入的bean没有无参构造器也可以被代理，构造器中的副作用也不会因为代理多执行一次
+ */
+public abstract class BeanScope {
+
+    /**
+     * jdk.unsupported模块中的sun.reflect.ReflectionFactory，通过反射访问，编译时不依赖内部API
+     * 运行环境中没有时为null，这时候只有注入作用域代理才会失败，直接获取实例不受影响
+     */
+    private static final Object REFLECTION_FACTORY;
+    private static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+    static {
+        Object reflectionFactory = null;
+        Method newConstructorForSerialization = null;
+        try {
+            Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+            reflectionFactory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+            newConstructorForSerialization = factoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            reflectionFactory = null;
+            newConstructorForSerialization = null;
+        }
+        REFLECTION_FACTORY = reflectionFactory;
+        NEW_CONSTRUCTOR_FOR_SERIALIZATION = newConstructorForSerialization;
+    }
+
+    protected final Class<?> beanClass;
+    /**
+     * 创建一个完整的实例（包括依赖注入和AOP）
+     */
+    protected final Supplier<Object> beanFactory;
+    private volatile Object scopedProxy;
+
+    protected BeanScope(Class<?> beanClass, Supplier<Object> beanFactory) {
+        this.beanClass = beanClass;
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * 根据@Scope创建作用域
+     * @param scope 作用域注解
+     * @param beanClass bean的Class对象
+     * @param beanFactory 创建实例的方法
+     * @return 作用域
+     */
+    public static BeanScope of(Scope scope, Class<?> beanClass, Supplier<Object> beanFactory) {
+        switch (scope.value()) {
+            case PROTOTYPE:
+                return new PrototypeScope(beanClass, beanFactory);
+            case THREAD:
+                return new ThreadScope(beanClass, beanFactory);
+            case REQUEST:
+                return new RequestScope(beanClass, beanFactory);
+            case POOLED:
+                return new PooledScope(beanClass, beanFactory, scope.poolSize());
+            default:
+                throw new RuntimeException("unsupported scope " + scope.value() + " of " + beanClass.getName());
+        }
+    }
+
+    /**
+     * 获取当前作用域内的实例
+     * @return bean实例
+     */
+    public abstract Object get();
+
+    /**
+     * 获取注入到其他bean中的对象，默认是作用域代理
+     * @return 注入的对象
+     */
+    public Object getInjectable() {
+        Object proxy = scopedProxy;
+        if (proxy == null) {
+            synchronized (this) {
+                proxy = scopedProxy;
+                if (proxy == null) {
+                    proxy = createScopedProxy();
+                    scopedProxy = proxy;
+                }
+            }
+        }
+        return proxy;
+    }
+
+    /**
+     * 只生成代理类，实例通过ReflectionFactory创建（和Objenesis在HotSpot上的做法一样），
+     * 只执行Object的构造器，不执行bean及其父类的构造器；Dispatcher通过CGLIB的Factory接口设置到实例上
+     */
+    private Object createScopedProxy() {
+        if (NEW_CONSTRUCTOR_FOR_SERIALIZATION == null) {
+            throw new RuntimeException("unable to create scoped proxy of " + beanClass.getName()
+                    + ": sun.reflect.ReflectionFactory is not available in this runtime");
+        }
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(beanClass);
+        enhancer.setCallbackType(Dispatcher.class);
+        Class<?> proxyClass = enhancer.createClass();
+        try {
+            Constructor<?> constructor = (Constructor<?>) NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(REFLECTION_FACTORY,
+                    proxyClass, Object.class.getDeclaredConstructor());
+            Factory proxy = (Factory) constructor.newInstance();
+            proxy.setCallbacks(new Callback[]{(Dispatcher) this::get});
+            return proxy;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("unable to create scoped proxy of " + beanClass.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.myframework.core.scope;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界的无锁对象池
+ *
+ * 每个槽位要么为空，要么保存一个空闲的实例，借出和归还都只是对某个槽位做一次CAS，不需要加锁；
+ * 不同的线程从不同的槽位开始查找，减少多个线程争抢同一个槽位的情况
+ *
+ * @param <T> 实例的类型
+ */
+class BoundedObjectPool<T> {
+
+    private final AtomicReferenceArray<T> slots;
+
+    BoundedObjectPool(int capacity) {
+        if (capacity <= 0) {
+            throw new RuntimeException("pool capacity must be positive, but was " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * 借出一个空闲的实例
+     * @return 没有空闲的实例时返回null
+     */
+    T borrow() {
+        int capacity = slots.length();
+        int start = startIndex(capacity);
+        for (int i = 0; i < capacity; i++) {
+            int index = (start + i) % capacity;
+            T instance = slots.get(index);
+            if (instance != null && slots.compareAndSet(index, instance, null)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 归还一个实例
+     * @param instance 实例
+     * @return 池已满时返回false，实例被丢弃
+     */
+    boolean release(T instance) {
+        int capacity = slots.length();
+        int start = startIndex(capacity);
+        for (int i = 0; i < capacity; i++) {
+            int index = (start + i) % capacity;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int startIndex(int capacity) {
+        return (int) (Thread.currentThread().getId() % capacity);
+    }
+}
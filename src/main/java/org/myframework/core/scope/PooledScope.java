@@ -0,0 +1,28 @@
+package org.myframework.core.scope;
+
+import java.util.function.Supplier;
+
+/**
+ * 每个请求从对象池中借出一个实例，请求结束时归还
+ * 池中没有空闲的实例时创建一个新的，归还时池已满就直接丢弃，所以池的大小只限制保留的实例数，不会让请求等待
+ */
+class PooledScope extends RequestScope {
+
+    private final BoundedObjectPool<Object> pool;
+
+    PooledScope(Class<?> beanClass, Supplier<Object> beanFactory, int poolSize) {
+        super(beanClass, beanFactory);
+        this.pool = new BoundedObjectPool<>(poolSize);
+    }
+
+    @Override
+    protected Object create(RequestContext requestContext) {
+        Object bean = pool.borrow();
+        if (bean == null) {
+            bean = beanFactory.get();
+        }
+        Object borrowedBean = bean;
+        requestContext.addCompletionCallback(() -> pool.release(borrowedBean));
+        return bean;
+    }
+}
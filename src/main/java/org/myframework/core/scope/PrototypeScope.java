@@ -0,0 +1,26 @@
+package org.myframework.core.scope;
+
+import java.util.function.Supplier;
+
+/**
+ * 每次获取都创建一个新的实例
+ */
+class PrototypeScope extends BeanScope {
+
+    PrototypeScope(Class<?> beanClass, Supplier<Object> beanFactory) {
+        super(beanClass, beanFactory);
+    }
+
+    @Override
+    public Object get() {
+        return beanFactory.get();
+    }
+
+    /**
+     * 每次注入都是一个新的实例，不需要代理
+     */
+    @Override
+    public Object getInjectable() {
+        return get();
+    }
+}
@@ -0,0 +1,98 @@
+package org.myframework.core.scope;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 当前线程正在处理的请求，保存请求作用域和对象池作用域的实例
+ *
+ * 使用方式（比如在DispatcherServlet或者Filter中）：
+ * RequestContext.begin();
+ * try {
+ *     ...
+ * } finally {
+ *     RequestContext.end();
+ * }
+ */
+@Slf4j
+public final class RequestContext {
+
+    /**
+     * 已经分配出去的槽位数量，每个请求作用域占用一个槽位
+     */
+    private static final AtomicInteger SLOT_COUNT = new AtomicInteger();
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private Object[] slots = new Object[SLOT_COUNT.get()];
+    /**
+     * 请求结束时执行的回调，比如把借出的实例归还给对象池
+     */
+    private final List<Runnable> completionCallbacks = new ArrayList<>();
+
+    private RequestContext() {
+    }
+
+    /**
+     * 在当前线程中开始一个请求
+     */
+    public static void begin() {
+        if (CURRENT.get() != null) {
+            throw new RuntimeException("request has already begun in thread " + Thread.currentThread().getName());
+        }
+        CURRENT.set(new RequestContext());
+    }
+
+    /**
+     * 结束当前线程中的请求，归还借出的实例，请求作用域的实例随之失效
+     */
+    public static void end() {
+        RequestContext requestContext = CURRENT.get();
+        if (requestContext == null) {
+            return;
+        }
+        CURRENT.remove();
+        for (Runnable callback : requestContext.completionCallbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                log.warn("request completion callback failed", e);
+            }
+        }
+    }
+
+    /**
+     * 当前线程中是否有正在处理的请求
+     * @return 是否有请求
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    static int allocateSlot() {
+        return SLOT_COUNT.getAndIncrement();
+    }
+
+    Object get(int slot) {
+        return slot < slots.length ? slots[slot] : null;
+    }
+
+    void set(int slot, Object bean) {
+        if (slot >= slots.length) {
+            //请求开始之后又注册了新的作用域
+            slots = Arrays.copyOf(slots, SLOT_COUNT.get());
+        }
+        slots[slot] = bean;
+    }
+
+    void addCompletionCallback(Runnable callback) {
+        completionCallbacks.add(callback);
+    }
+}
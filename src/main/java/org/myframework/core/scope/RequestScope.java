@@ -0,0 +1,40 @@
+package org.myframework.core.scope;
+
+import java.util.function.Supplier;
+
+/**
+ * 每个请求一个实例
+ * 每个作用域在创建时分配一个固定的槽位，实例保存在当前请求的数组中，获取时直接按下标访问
+ */
+class RequestScope extends BeanScope {
+
+    private final int slot;
+
+    RequestScope(Class<?> beanClass, Supplier<Object> beanFactory) {
+        super(beanClass, beanFactory);
+        this.slot = RequestContext.allocateSlot();
+    }
+
+    @Override
+    public Object get() {
+        RequestContext requestContext = RequestContext.current();
+        if (requestContext == null) {
+            throw new RuntimeException("no active request for " + beanClass.getName() + ", call RequestContext.begin() first");
+        }
+        Object bean = requestContext.get(slot);
+        if (bean == null) {
+            bean = create(requestContext);
+            requestContext.set(slot, bean);
+        }
+        return bean;
+    }
+
+    /**
+     * 当前请求第一次获取时创建实例
+     * @param requestContext 当前请求
+     * @return bean实例
+     */
+    protected Object create(RequestContext requestContext) {
+        return beanFactory.get();
+    }
+}
@@ -0,0 +1,21 @@
+package org.myframework.core.scope;
+
+import java.util.function.Supplier;
+
+/**
+ * 每个线程一个实例，实例保存在ThreadLocal中，线程结束之后随线程一起被回收
+ */
+class ThreadScope extends BeanScope {
+
+    private final ThreadLocal<Object> threadLocal;
+
+    ThreadScope(Class<?> beanClass, Supplier<Object> beanFactory) {
+        super(beanClass, beanFactory);
+        threadLocal = ThreadLocal.withInitial(beanFactory);
+    }
+
+    @Override
+    public Object get() {
+        return threadLocal.get();
+    }
+}
@@ -0,0 +1,39 @@
+package org.myframework.core.startup;
+
+/**
+ * 启动过程的监听器，通过StartupRecorder.addListener注册
+ * 可以用来在CI中检查启动时间是否退化，或者把启动数据上报到监控系统
+ *
+ * 回调可能在并行创建bean的工作线程中执行，实现需要是线程安全的
+ */
+public interface StartupListener {
+
+    /**
+     * 一个启动阶段结束
+     * @param phase 阶段的统计数据
+     */
+    default void onPhaseEnd(StartupReport.Phase phase) {
+    }
+
+    /**
+     * 创建了一个bean实例
+     * @param beanClass bean的Class对象
+     * @param nanos 实例化耗费的时间，单位纳秒
+     */
+    default void onBeanCreated(Class<?> beanClass, long nanos) {
+    }
+
+    /**
+     * 创建了一个AOP代理
+     * @param targetClass 被代理的Class对象
+     */
+    default void onProxyCreated(Class<?> targetClass) {
+    }
+
+    /**
+     * 容器就绪，初始化和预热都已经完成
+     * @param report 到目前为止的启动报告
+     */
+    default void onReady(StartupReport report) {
+    }
+}
@@ -0,0 +1,27 @@
+package org.myframework.core.startup;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 启动阶段对应的JFR事件，只有在JFR录制中才会被提交
+ * 比如 -XX:StartFlightRecording=filename=startup.jfr，之后在JMC中按照Category查看
+ */
+@Name("org.myframework.StartupPhase")
+@Label("Startup Phase")
+@Category("MyFramework")
+class StartupPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Counters")
+    String counters;
+}
@@ -0,0 +1,132 @@
+package org.myframework.core.startup;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录容器启动过程的耗时
+ *
+ * 容器的各个阶段（scan、loadBeans、doAop、doIoC、parallelInitialize）都会记录耗时、当前线程分配的字节数和一些计数，
+ * 另外还会记录每个bean的实例化耗时和创建的AOP代理的数量。
+ * 结果可以通过getReport获取，也可以注册StartupListener实时获取，同时每个阶段也会作为JFR事件提交
+ *
+ * 记录本身只有几次System.nanoTime的开销，所以始终开启
+ */
+@Slf4j
+public class StartupRecorder {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final List<StartupReport.Phase> PHASES = new CopyOnWriteArrayList<>();
+    private static final Map<Class<?>, Long> BEAN_NANOS = new ConcurrentHashMap<>();
+    private static final AtomicInteger PROXY_COUNT = new AtomicInteger();
+    private static final List<StartupListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private StartupRecorder() {
+    }
+
+    /**
+     * 开始一个启动阶段
+     * @param name 阶段名称
+     * @return 阶段，结束时调用close
+     */
+    public static StartupStep start(String name) {
+        return new StartupStep(name);
+    }
+
+    /**
+     * 记录一个bean的实例化耗时
+     * @param beanClass bean的Class对象
+     * @param nanos 耗时，单位纳秒
+     */
+    public static void recordBean(Class<?> beanClass, long nanos) {
+        BEAN_NANOS.merge(beanClass, nanos, Long::sum);
+        for (StartupListener listener : LISTENERS) {
+            listener.onBeanCreated(beanClass, nanos);
+        }
+    }
+
+    /**
+     * 记录创建了一个AOP代理
+     * @param targetClass 被代理的Class对象
+     */
+    public static void recordProxy(Class<?> targetClass) {
+        PROXY_COUNT.incrementAndGet();
+        for (StartupListener listener : LISTENERS) {
+            listener.onProxyCreated(targetClass);
+        }
+    }
+
+    static void endPhase(StartupReport.Phase phase) {
+        PHASES.add(phase);
+        log.debug("startup phase " + phase);
+        for (StartupListener listener : LISTENERS) {
+            listener.onPhaseEnd(phase);
+        }
+    }
+
+    /**
+     * 标记容器已经就绪，通知所有的监听器
+     */
+    public static void markReady() {
+        StartupReport report = getReport();
+        log.info("container is ready, " + report);
+        for (StartupListener listener : LISTENERS) {
+            listener.onReady(report);
+        }
+    }
+
+    /**
+     * 注册监听器
+     * @param listener 监听器
+     */
+    public static void addListener(StartupListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * 移除监听器
+     * @param listener 监听器
+     */
+    public static void removeListener(StartupListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 获取到目前为止的启动报告
+     * @return 启动报告
+     */
+    public static StartupReport getReport() {
+        return new StartupReport(new ArrayList<>(PHASES), BEAN_NANOS, PROXY_COUNT.get());
+    }
+
+    /**
+     * 清空已经记录的数据，监听器不受影响
+     */
+    public static void reset() {
+        PHASES.clear();
+        BEAN_NANOS.clear();
+        PROXY_COUNT.set(0);
+    }
+
+    /**
+     * @return 当前线程到目前为止分配的字节数，JVM不支持时返回-1
+     */
+    static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
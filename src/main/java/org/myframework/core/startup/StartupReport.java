@@ -0,0 +1,125 @@
+package org.myframework.core.startup;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动报告，由StartupRecorder.getReport生成，生成之后不会再变化
+ */
+public class StartupReport {
+
+    private final List<Phase> phases;
+    private final Map<Class<?>, Long> beanNanos;
+    private final int proxyCount;
+
+    StartupReport(List<Phase> phases, Map<Class<?>, Long> beanNanos, int proxyCount) {
+        this.phases = Collections.unmodifiableList(new ArrayList<>(phases));
+        this.beanNanos = Collections.unmodifiableMap(new LinkedHashMap<>(beanNanos));
+        this.proxyCount = proxyCount;
+    }
+
+    /**
+     * @return 按照结束顺序排列的阶段，嵌套的阶段（比如loadBeans中的scan）会排在外层阶段之前
+     */
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    /**
+     * 获取指定名称的阶段，同名的阶段有多个时返回最后一个
+     * @param name 阶段名称
+     * @return 没有时返回null
+     */
+    public Phase getPhase(String name) {
+        for (int i = phases.size() - 1; i >= 0; i--) {
+            if (phases.get(i).getName().equals(name)) {
+                return phases.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return bean -> 实例化耗费的时间，单位纳秒
+     */
+    public Map<Class<?>, Long> getBeanNanos() {
+        return beanNanos;
+    }
+
+    /**
+     * 获取实例化最慢的几个bean
+     * @param limit 数量
+     * @return 按照耗时从大到小排列
+     */
+    public List<Map.Entry<Class<?>, Long>> getSlowestBeans(int limit) {
+        List<Map.Entry<Class<?>, Long>> entryList = new ArrayList<>(beanNanos.entrySet());
+        entryList.sort(Map.Entry.<Class<?>, Long>comparingByValue().reversed());
+        return entryList.subList(0, Math.min(limit, entryList.size()));
+    }
+
+    /**
+     * @return 创建的AOP代理的数量
+     */
+    public int getProxyCount() {
+        return proxyCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("startup report:\n");
+        for (Phase phase : phases) {
+            report.append("  ").append(phase).append('\n');
+        }
+        report.append("  beans: ").append(beanNanos.size()).append(", proxies: ").append(proxyCount).append('\n');
+        for (Map.Entry<Class<?>, Long> entry : getSlowestBeans(10)) {
+            report.append("    ").append(entry.getKey().getName()).append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMicros(entry.getValue())).append("us\n");
+        }
+        return report.toString();
+    }
+
+    /**
+     * 一个启动阶段的统计数据
+     */
+    public static class Phase {
+        private final String name;
+        private final long durationNanos;
+        private final long allocatedBytes;
+        private final Map<String, Long> counters;
+
+        Phase(String name, long durationNanos, long allocatedBytes, Map<String, Long> counters) {
+            this.name = name;
+            this.durationNanos = durationNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.counters = Collections.unmodifiableMap(new LinkedHashMap<>(counters));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * @return 阶段执行期间当前线程分配的字节数，其他线程（比如并行扫描的线程）的分配不计算在内，JVM不支持时返回-1
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return 计数的名称 -> 计数的值
+         */
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms"
+                    + (allocatedBytes < 0 ? "" : " " + allocatedBytes / 1024 + "KB") + " " + counters;
+        }
+    }
+}
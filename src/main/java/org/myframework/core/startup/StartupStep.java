@@ -0,0 +1,54 @@
+package org.myframework.core.startup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个正在进行中的启动阶段，配合try-with-resources使用：
+ * try (StartupStep step = StartupRecorder.start("loadBeans")) {
+ *     ...
+ *     step.count("beans", n);
+ * }
+ */
+public class StartupStep implements AutoCloseable {
+
+    private final String name;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private final StartupPhaseEvent event;
+
+    StartupStep(String name) {
+        this.name = name;
+        this.event = new StartupPhaseEvent();
+        this.event.begin();
+        this.startAllocatedBytes = StartupRecorder.currentThreadAllocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 记录这个阶段的一个计数，比如扫描到的类的数量
+     * @param key 计数的名称
+     * @param value 计数的值
+     * @return 当前阶段
+     */
+    public StartupStep count(String key, long value) {
+        counters.put(key, value);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        long durationNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = startAllocatedBytes < 0 ? -1 : StartupRecorder.currentThreadAllocatedBytes() - startAllocatedBytes;
+        StartupReport.Phase phase = new StartupReport.Phase(name, durationNanos, allocatedBytes, counters);
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = name;
+            event.allocatedBytes = allocatedBytes;
+            event.counters = counters.toString();
+            event.commit();
+        }
+        StartupRecorder.endPhase(phase);
+    }
+}
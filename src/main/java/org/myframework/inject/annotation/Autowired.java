@@ -6,11 +6,14 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * 注解标签，在这里只支持ElementType.FIELD
+ * 注解标签，支持成员变量注入和构造器注入
+ * 1.FIELD：创建实例之后注入
+ * 2.CONSTRUCTOR：一个类中最多只能有一个被标记的构造器，容器通过它创建实例，依赖可以保存在final成员变量中
+ * 3.PARAMETER：在构造器参数上通过value指定使用哪一个实现类，不标记时和没有设置value的成员变量一样
  */
 
 // 作用的目标对象
-@Target(ElementType.FIELD)
+@Target({ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.PARAMETER})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Autowired {
     String value() default "";
@@ -0,0 +1,60 @@
+package org.myframework.inject.annotation;
+
+import org.myframework.core.BeanContainer;
+
+/**
+ * ObjectProvider的实现，在第一次get时才通过DependencyInjector解析依赖
+ *
+ * 单例bean解析之后保存在volatile成员变量中，之后的get只是一次读操作；
+ * 非单例bean不能缓存，否则原型bean每次都是同一个实例，请求作用域的bean会跨请求共享
+ */
+final class DeferredObjectProvider<T> implements ObjectProvider<T> {
+
+    private final DependencyInjector dependencyInjector;
+    private final BeanContainer beanContainer;
+    /**
+     * 持有这个provider的bean
+     */
+    private final Class<?> ownerClass;
+    private final Class<T> providedType;
+    private final String autowiredValue;
+
+    private volatile T instance;
+
+    DeferredObjectProvider(DependencyInjector dependencyInjector, BeanContainer beanContainer, Class<?> ownerClass,
+                           Class<T> providedType, String autowiredValue) {
+        this.dependencyInjector = dependencyInjector;
+        this.beanContainer = beanContainer;
+        this.ownerClass = ownerClass;
+        this.providedType = providedType;
+        this.autowiredValue = autowiredValue;
+    }
+
+    @Override
+    public T get() {
+        T current = instance;
+        if (current != null) {
+            return current;
+        }
+        Class<?> beanClass = dependencyInjector.getBeanClass(providedType, autowiredValue);
+        if (beanClass == null) {
+            throw new RuntimeException("unable to provide relevant type, target providedClass is : " + providedType.getName()
+                    + " of " + ownerClass.getName() + ", autowiredValue is : " + autowiredValue);
+        }
+        if (beanContainer.isScoped(beanClass)) {
+            return providedType.cast(beanContainer.getBean(beanClass));
+        }
+        synchronized (this) {
+            if (instance == null) {
+                instance = providedType.cast(beanContainer.getBeanForInjection(beanClass));
+                beanContainer.registerDependency(ownerClass, beanClass);
+            }
+            return instance;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectProvider<" + providedType.getName() + "> of " + ownerClass.getName();
+    }
+}
@@ -1,12 +1,18 @@
 package org.myframework.inject.annotation;
 
 import lombok.extern.slf4j.Slf4j;
+import org.myframework.aop.annotation.Order;
 import org.myframework.core.BeanContainer;
-import org.myframework.util.ClassUtil;
+import org.myframework.core.BeanPostProcessor;
+import org.myframework.core.TargetProxy;
+import org.myframework.core.plan.WiringPlan;
+import org.myframework.core.startup.StartupRecorder;
+import org.myframework.core.startup.StartupStep;
+import org.myframework.util.BeanAccessor;
 import org.myframework.util.ValidationUtil;
 
-import java.lang.reflect.Field;
-import java.util.Set;
+import java.lang.reflect.Array;
+import java.util.*;
 
 /**
  * 创建spring框架的思路是什么？
@@ -41,7 +47,7 @@ import java.util.Set;
  *   2. 实现创建被注解标记的成员变量实例，并将其注入到成员变量里
  *   3. 使用注解
  *
- * 在这里只实现成员变量的注入
+ * 在这里实现成员变量的注入和构造器注入
  * 提供依赖注入的服务
  */
 @Slf4j
@@ -65,6 +71,14 @@ public class DependencyInjector {
      * 6.通过反射将对应的成员变量实例注入到成员变量所在类的实例中
      */
     public void doIoC() {
+        //构造器注入的bean在创建时就需要解析参数
+        beanContainer.setConstructorResolver(this::resolveConstructorArguments);
+        //延迟bean在第一次getBean时才会被创建，创建之后同样需要注入依赖，注入在AOP之后，注入的是最终的代理对象
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.INJECTION_ORDER, (clazz, bean) -> {
+            injectBean(clazz, bean);
+            return bean;
+        });
+
         //1.遍历Bean容器中所有的Class对象
         if (ValidationUtil.isEmpty(beanContainer.getClasses())) {
             log.warn("empty classSet in BeanContainer");
@@ -73,82 +87,271 @@ public class DependencyInjector {
 
         //foreach之前最好要判空
 
-        for (Class<?> clazz : beanContainer.getClasses()) {
-            //2.遍历Class对象的所有成员对象
-            // TODO Filed是？？？
-            Field[] fields = clazz.getDeclaredFields();
-            //3.找出被Autowired标记的成员变量
-            for (Field field : fields) {
-                if (field.isAnnotationPresent(Autowired.class)) {
-                    //获取到autowired实例，从而获取到autowired中设定的值
-                    Autowired autowired = field.getAnnotation(Autowired.class);
-                    String autowiredValue = autowired.value();
-                    //4.获取这些成员变量的类型
-                    Class<?> fieldClass = field.getType();
-                    //5.获取这些成员变量类型在容器中对应的实例
-                    Object fieldValue = getFieldInstance(fieldClass, autowiredValue);
-                    if (fieldValue == null) {
-                        throw new RuntimeException("unable to inject relevant type, target fieldClass is : " + fieldClass.getName() + "autowiredValue is : " + autowiredValue);
-                    } else {
-                        //6.通过反射将对应的成员变量实例注入到成员变量所在类的实例中
-                        Object bean = beanContainer.getBean(clazz);
-                        // 知道类名就可以直接注入了
-                        ClassUtil.setFiled(field, bean, fieldValue, true);
-                    }
-                }
+        try (StartupStep step = StartupRecorder.start("doIoC")) {
+            for (Class<?> clazz : beanContainer.getClasses()) {
+                injectBean(clazz, beanContainer.getBean(clazz));
+            }
+            //loadBeans时推迟创建的构造器注入的bean，被其他bean依赖的已经在上面的注入中创建了
+            Set<Class<?>> deferredClasses = beanContainer.getDeferredClasses();
+            for (Class<?> clazz : deferredClasses) {
+                beanContainer.getBean(clazz);
             }
+            step.count("beans", beanContainer.getClasses().size()).count("constructorInjected", deferredClasses.size());
+        }
+
+
+    }
+
+    /**
+     * 给一个bean实例注入被Autowired标记的成员变量
+     * @param clazz bean在容器中的Class对象
+     * @param bean bean实例
+     */
+    public void injectBean(Class<?> clazz, Object bean) {
+        //JDK动态代理的成员变量在被代理的对象中
+        bean = TargetProxy.unwrap(bean);
+        WiringPlan wiringPlan = beanContainer.getWiringPlan();
+        WiringPlan.BeanPlan beanPlan = wiringPlan == null ? null : wiringPlan.getBeanPlan(clazz);
+        if (beanPlan != null) {
+            injectByPlan(clazz, bean, beanPlan);
+            return;
+        }
+        //2.遍历Class对象的所有成员对象，3.找出被Autowired标记的成员变量
+        //这两步的结果按类缓存在InjectionPlan中，每个类只解析一次
+        for (InjectionPlan.InjectionPoint injectionPoint : InjectionPlan.of(clazz).getInjectionPoints()) {
+            //4.获取这些成员变量的类型，5.获取这些成员变量类型在容器中对应的实例
+            Object fieldValue = resolveDependency(clazz, injectionPoint.getDependency(), injectionPoint.getField());
+            //6.将对应的成员变量实例注入到成员变量所在类的实例中
+            injectionPoint.inject(bean, fieldValue);
         }
+    }
+
+    /**
+     * 解析被@Autowired标记的构造器的参数，参数和成员变量一样通过接口查找实现类
+     * @param clazz bean的Class对象
+     * @return 按照参数顺序排列的参数值
+     */
+    public Object[] resolveConstructorArguments(Class<?> clazz) {
+        List<InjectionPlan.Dependency> constructorParameters = InjectionPlan.of(clazz).getConstructorParameters();
+        Object[] args = new Object[constructorParameters.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = resolveDependency(clazz, constructorParameters.get(i), "parameter " + i + " of " + clazz.getName() + " constructor");
+        }
+        return args;
+    }
 
+    /**
+     * 获取一个注入点的值，并登记依赖关系
+     * @param clazz 注入点所在的bean
+     * @param dependency 注入点依赖的内容
+     * @param injectionPoint 注入点，用于异常信息
+     * @return 注入的值
+     */
+    private Object resolveDependency(Class<?> clazz, InjectionPlan.Dependency dependency, Object injectionPoint) {
+        switch (dependency.getKind()) {
+            case PROVIDER:
+                //ObjectProvider在第一次get时才解析依赖
+                return new DeferredObjectProvider<>(this, beanContainer, clazz, dependency.getType(), dependency.getName());
+            case ARRAY:
+            case LIST:
+            case MAP:
+                return resolveAll(clazz, dependency);
+            default:
+                Class<?> beanClass = getBeanClass(dependency.getType(), dependency.getName());
+                Object value = beanClass == null ? null : beanContainer.getBeanForInjection(beanClass);
+                if (value == null) {
+                    throw new RuntimeException("unable to inject relevant type, target fieldClass is : " + dependency.getType().getName()
+                            + " autowiredValue is : " + dependency.getName() + " injection point is : " + injectionPoint);
+                }
+                beanContainer.registerDependency(clazz, beanClass);
+                return value;
+        }
+    }
 
+    /**
+     * 注入所有的实现类
+     *
+     * 实现类按照@Order（没有时排在最后）和bean名称排好序之后，一次性放入一个数组，
+     * List和Map都建立在这个数组之上，之后按下标或者名称选择策略时不再需要访问容器
+     */
+    private Object resolveAll(Class<?> clazz, InjectionPlan.Dependency dependency) {
+        List<Class<?>> beanClasses = getBeanClasses(dependency.getType());
+        Object[] beans = (Object[]) Array.newInstance(dependency.getType(), beanClasses.size());
+        for (int i = 0; i < beans.length; i++) {
+            beans[i] = beanContainer.getBeanForInjection(beanClasses.get(i));
+            beanContainer.registerDependency(clazz, beanClasses.get(i));
+        }
+        switch (dependency.getKind()) {
+            case ARRAY:
+                return beans;
+            case LIST:
+                return Collections.unmodifiableList(Arrays.asList(beans));
+            default:
+                Map<String, Object> beanMap = new LinkedHashMap<>();
+                for (int i = 0; i < beans.length; i++) {
+                    beanMap.put(BeanContainer.getBeanName(beanClasses.get(i)), beans[i]);
+                }
+                return Collections.unmodifiableMap(beanMap);
+        }
     }
 
     /**
-     * 根据class对象在BeanContainer中获取到实例
-     * @param fieldClass
-     * @return
+     * 按照装配计划注入，不需要遍历成员变量，也不需要查找实现类
+     * ObjectProvider和集合在计划中记录了元素类型，它们的实现类在运行时通过容器的索引解析
      */
-    private Object getFieldInstance(Class<?> fieldClass, String autowiredValue) {
-        //获取成员变量的实例
-        Object field = beanContainer.getBean(fieldClass);
-        if (field != null) {
-            //如果field不为null，那么说明成员变量的类型不是接口
-            return field;
-        } else {
-            //否则的话，有可能为接口，通过接口获取到实现类
-            Class<?> implementClass = getImplementClass(fieldClass, autowiredValue);
-            if (implementClass != null) {
-                return beanContainer.getBean(implementClass);
+    private void injectByPlan(Class<?> clazz, Object bean, WiringPlan.BeanPlan beanPlan) {
+        BeanAccessor accessor = BeanAccessor.of(clazz);
+        for (WiringPlan.FieldPlan fieldPlan : beanPlan.getFieldPlans()) {
+            Class<?> beanClass;
+            try {
+                beanClass = Class.forName(fieldPlan.getBeanClassName(), false, clazz.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw stalePlan(clazz, e);
+            }
+            Object fieldValue;
+            if (fieldPlan.getKind() == WiringPlan.InjectionKind.BEAN) {
+                fieldValue = beanContainer.getBeanForInjection(beanClass);
+                if (fieldValue == null) {
+                    throw new RuntimeException("unable to inject relevant type, field is : " + clazz.getName() + "."
+                            + fieldPlan.getFieldName() + " planned bean is : " + beanClass.getName());
+                }
+                beanContainer.registerDependency(clazz, beanClass);
             } else {
-                return null;
+                InjectionPlan.Dependency dependency = InjectionPlan.Dependency.of(
+                        InjectionPlan.Kind.valueOf(fieldPlan.getKind().name()), beanClass, fieldPlan.getBeanName());
+                fieldValue = resolveDependency(clazz, dependency, clazz.getName() + "." + fieldPlan.getFieldName());
+            }
+            try {
+                accessor.set(fieldPlan.getFieldName(), bean, fieldValue);
+            } catch (IllegalArgumentException e) {
+                throw stalePlan(clazz, e);
             }
         }
     }
 
+    private static RuntimeException stalePlan(Class<?> clazz, Exception cause) {
+        return new RuntimeException("wiring plan of " + clazz.getName() + " is stale, rebuild it or set -D"
+                + WiringPlan.IGNORE_PLAN_PROPERTY + "=true", cause);
+    }
+
     /**
-     * 获取接口的实现类
-     * @param fieldClass
-     * @return
+     * 为装配计划计算bean需要注入的成员变量：普通的bean确定实现类，ObjectProvider和集合记录注入的方式和元素类型
+     * @param clazz bean的Class对象
+     * @param beanPlan bean的计划
      */
-    private Class<?> getImplementClass(Class<?> fieldClass, String autowiredValue) {
-        Set<Class<?>> classSet = beanContainer.getClassesBySuper(fieldClass);
-        if (!ValidationUtil.isEmpty(classSet)) {
-            //同一个接口多个实现类怎么办？ Qualifier注解说明使用哪一个实现类
-            // TODO Qualifier
-                //没有告诉实现类
-                if (classSet.size() == 1) {
-                    return classSet.iterator().next();
-                } else {
-                    //用户没有指定其中哪一个实现类，抛出异常
-                    throw new RuntimeException("multiple implemented classes for " + fieldClass.getName() + "please set @Autowired's value to pick one");
-                }
-        } else {
+    public void planInjection(Class<?> clazz, WiringPlan.BeanPlan beanPlan) {
+        for (InjectionPlan.InjectionPoint injectionPoint : InjectionPlan.of(clazz).getInjectionPoints()) {
+            InjectionPlan.Dependency dependency = injectionPoint.getDependency();
+            String fieldName = injectionPoint.getField().getName();
+            if (dependency.getKind() != InjectionPlan.Kind.BEAN) {
+                beanPlan.getFieldPlans().add(new WiringPlan.FieldPlan(fieldName,
+                        WiringPlan.InjectionKind.valueOf(dependency.getKind().name()), dependency.getType().getName(), dependency.getName()));
+                continue;
+            }
+            Class<?> beanClass = getBeanClass(dependency.getType(), dependency.getName());
+            if (beanClass == null) {
+                throw new RuntimeException("unable to inject relevant type, target fieldClass is : " + dependency.getType().getName()
+                        + " autowiredValue is : " + dependency.getName());
+            }
+            beanPlan.getFieldPlans().add(new WiringPlan.FieldPlan(fieldName, beanClass.getName()));
+        }
+    }
+
+    /**
+     * 获取注入点在启动时就需要的bean，ObjectProvider的依赖在第一次get时才需要
+     * @param dependency 注入点依赖的内容
+     * @return Class集合，找不到时为空
+     */
+    List<Class<?>> getDependencyClasses(InjectionPlan.Dependency dependency) {
+        switch (dependency.getKind()) {
+            case PROVIDER:
+                return Collections.emptyList();
+            case BEAN:
+                Class<?> beanClass = getBeanClass(dependency.getType(), dependency.getName());
+                return beanClass == null ? Collections.emptyList() : Collections.singletonList(beanClass);
+            default:
+                return getBeanClasses(dependency.getType());
+        }
+    }
+
+    /**
+     * 获取成员变量在容器中对应的bean的Class对象，不会创建延迟bean
+     * @param fieldClass 成员变量的类型
+     * @param name @Qualifier或者@Autowired中指定的bean名称
+     * @return 容器中没有对应的bean时返回null
+     */
+    Class<?> getBeanClass(Class<?> fieldClass, String name) {
+        if (!ValidationUtil.isEmpty(name)) {
+            //指定了名称时，通过名称索引查找
+            return getBeanClassByName(fieldClass, name);
+        }
+        if (beanContainer.containsBean(fieldClass)) {
+            //成员变量的类型本身就在容器中，说明不是接口
+            return fieldClass;
+        }
+        //否则的话，有可能为接口，通过接口获取到实现类
+        return getImplementClass(fieldClass);
+    }
+
+    /**
+     * 在指定名称的bean中找出类型匹配的那一个
+     */
+    private Class<?> getBeanClassByName(Class<?> fieldClass, String name) {
+        Set<Class<?>> classSet = beanContainer.getClassesByName(name);
+        Class<?> beanClass = null;
+        if (classSet != null) {
             for (Class<?> clazz : classSet) {
-                if (autowiredValue.equals(clazz.getSimpleName())) {
-                    return clazz;
+                if (!fieldClass.isAssignableFrom(clazz)) {
+                    continue;
                 }
+                if (beanClass != null) {
+                    throw new RuntimeException("multiple beans named " + name + " for " + fieldClass.getName());
+                }
+                beanClass = clazz;
             }
         }
-        return null;
+        return beanClass;
+    }
+
+    /**
+     * 获取接口的实现类
+     * @param fieldClass 接口或者父类
+     * @return 没有实现类时返回null
+     */
+    private Class<?> getImplementClass(Class<?> fieldClass) {
+        Set<Class<?>> classSet = beanContainer.getClassesBySuper(fieldClass);
+        if (ValidationUtil.isEmpty(classSet)) {
+            return null;
+        }
+        if (classSet.size() == 1) {
+            return classSet.iterator().next();
+        }
+        //同一个接口多个实现类，用户没有通过@Qualifier指定其中哪一个实现类，抛出异常
+        throw new RuntimeException("multiple implemented classes for " + fieldClass.getName()
+                + ", please set @Qualifier or @Autowired's value to pick one");
+    }
+
+    /**
+     * 获取类型本身以及它所有的实现类，按照@Order和bean名称排序
+     * @param type 接口或者父类
+     * @return Class集合
+     */
+    private List<Class<?>> getBeanClasses(Class<?> type) {
+        List<Class<?>> beanClasses = new ArrayList<>();
+        if (beanContainer.containsBean(type)) {
+            beanClasses.add(type);
+        }
+        Set<Class<?>> classSet = beanContainer.getClassesBySuper(type);
+        if (classSet != null) {
+            beanClasses.addAll(classSet);
+        }
+        beanClasses.sort(Comparator.comparingInt(DependencyInjector::getOrder).thenComparing(BeanContainer::getBeanName));
+        return beanClasses;
+    }
+
+    private static int getOrder(Class<?> clazz) {
+        Order order = clazz.getAnnotation(Order.class);
+        return order == null ? Integer.MAX_VALUE : order.value();
     }
 
 }
@@ -0,0 +1,216 @@
+package org.myframework.inject.annotation;
+
+import org.myframework.core.BeanContainer;
+import org.myframework.util.BeanAccessor;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个类的注入点，按类缓存
+ *
+ * getDeclaredFields每次都会复制一份Field数组，isAnnotationPresent/getAnnotation也要查注解表，
+ * 原型、请求作用域的bean每创建一次都要重新注入，所以这里每个类只解析一次被@Autowired标记的成员变量，
+ * 赋值通过BeanAccessor中缓存的setter完成；被@Autowired标记的构造器的参数同样在这里解析一次
+ *
+ * 每个注入点都被解析成一个Dependency，泛型信息（ObjectProvider<T>、List<T>、Map<String, T>、T[]）也只在这里解析一次
+ */
+final class InjectionPlan {
+
+    private static final ClassValue<InjectionPlan> PLANS = new ClassValue<InjectionPlan>() {
+        @Override
+        protected InjectionPlan computeValue(Class<?> type) {
+            return new InjectionPlan(type);
+        }
+    };
+
+    private final List<InjectionPoint> injectionPoints;
+    private final List<Dependency> constructorParameters;
+
+    private InjectionPlan(Class<?> clazz) {
+        BeanAccessor accessor = BeanAccessor.of(clazz);
+        List<InjectionPoint> pointList = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            Autowired autowired = field.getAnnotation(Autowired.class);
+            if (autowired != null) {
+                if (Modifier.isFinal(field.getModifiers())) {
+                    throw new RuntimeException("final field can not be autowired, use constructor injection instead: " + field);
+                }
+                pointList.add(new InjectionPoint(accessor, field,
+                        Dependency.of(field.getType(), field.getGenericType(), getName(field, autowired), field)));
+            }
+        }
+        injectionPoints = Collections.unmodifiableList(pointList);
+
+        List<Dependency> parameterList = new ArrayList<>();
+        Constructor<?> constructor = BeanContainer.getAutowiredConstructor(clazz);
+        if (constructor != null) {
+            for (Parameter parameter : constructor.getParameters()) {
+                parameterList.add(Dependency.of(parameter.getType(), parameter.getParameterizedType(),
+                        getName(parameter, parameter.getAnnotation(Autowired.class)), parameter));
+            }
+        }
+        constructorParameters = Collections.unmodifiableList(parameterList);
+    }
+
+    /**
+     * 注入点指定的bean名称，@Qualifier优先于@Autowired的value
+     */
+    private static String getName(AnnotatedElement element, Autowired autowired) {
+        Qualifier qualifier = element.getAnnotation(Qualifier.class);
+        if (qualifier != null) {
+            return qualifier.value();
+        }
+        return autowired == null ? "" : autowired.value();
+    }
+
+    static InjectionPlan of(Class<?> clazz) {
+        return PLANS.get(clazz);
+    }
+
+    List<InjectionPoint> getInjectionPoints() {
+        return injectionPoints;
+    }
+
+    /**
+     * @return 被@Autowired标记的构造器的参数，没有这样的构造器时为空
+     */
+    List<Dependency> getConstructorParameters() {
+        return constructorParameters;
+    }
+
+    /**
+     * 注入的方式
+     */
+    enum Kind {
+        /**
+         * 注入一个bean
+         */
+        BEAN,
+        /**
+         * 注入ObjectProvider，第一次get时才解析
+         */
+        PROVIDER,
+        /**
+         * 注入所有的实现类，分别对应T[]、List<T>和Map<String, T>
+         */
+        ARRAY,
+        LIST,
+        MAP
+    }
+
+    /**
+     * 一个注入点依赖的内容
+     */
+    static final class Dependency {
+        private final Kind kind;
+        /**
+         * 需要在容器中查找的类型：BEAN时是注入点本身的类型，其他情况下是泛型参数或者数组元素的类型
+         */
+        private final Class<?> type;
+        /**
+         * 指定的bean名称，没有指定时为空字符串
+         */
+        private final String name;
+
+        private Dependency(Kind kind, Class<?> type, String name) {
+            this.kind = kind;
+            this.type = type;
+            this.name = name;
+        }
+
+        /**
+         * 装配计划中已经记录了注入的方式和类型，不需要再解析成员变量的泛型
+         */
+        static Dependency of(Kind kind, Class<?> type, String name) {
+            return new Dependency(kind, type, name);
+        }
+
+        private static Dependency of(Class<?> rawType, Type genericType, String name, Object injectionPoint) {
+            if (rawType == ObjectProvider.class) {
+                return new Dependency(Kind.PROVIDER, getTypeArgument(genericType, 0, injectionPoint), name);
+            }
+            if (rawType == List.class) {
+                return new Dependency(Kind.LIST, getTypeArgument(genericType, 0, injectionPoint), name);
+            }
+            if (rawType == Map.class) {
+                if (getTypeArgument(genericType, 0, injectionPoint) != String.class) {
+                    throw new RuntimeException("key of injected Map must be String: " + injectionPoint);
+                }
+                return new Dependency(Kind.MAP, getTypeArgument(genericType, 1, injectionPoint), name);
+            }
+            if (rawType.isArray() && !rawType.getComponentType().isPrimitive()) {
+                Type componentType = genericType instanceof GenericArrayType
+                        ? ((GenericArrayType) genericType).getGenericComponentType() : rawType.getComponentType();
+                return new Dependency(Kind.ARRAY, toClass(componentType, injectionPoint), name);
+            }
+            return new Dependency(Kind.BEAN, rawType, name);
+        }
+
+        private static Class<?> getTypeArgument(Type genericType, int index, Object injectionPoint) {
+            if (!(genericType instanceof ParameterizedType)) {
+                throw new RuntimeException("missing type argument: " + injectionPoint);
+            }
+            return toClass(((ParameterizedType) genericType).getActualTypeArguments()[index], injectionPoint);
+        }
+
+        private static Class<?> toClass(Type type, Object injectionPoint) {
+            if (type instanceof ParameterizedType) {
+                type = ((ParameterizedType) type).getRawType();
+            }
+            if (!(type instanceof Class)) {
+                throw new RuntimeException("type argument must be a class: " + injectionPoint);
+            }
+            return (Class<?>) type;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        Class<?> getType() {
+            return type;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * 被@Autowired标记的一个成员变量
+     */
+    static final class InjectionPoint {
+        private final BeanAccessor accessor;
+        private final Field field;
+        private final Dependency dependency;
+
+        private InjectionPoint(BeanAccessor accessor, Field field, Dependency dependency) {
+            this.accessor = accessor;
+            this.field = field;
+            this.dependency = dependency;
+        }
+
+        Field getField() {
+            return field;
+        }
+
+        Dependency getDependency() {
+            return dependency;
+        }
+
+        void inject(Object target, Object value) {
+            accessor.set(field, target, value);
+        }
+    }
+}
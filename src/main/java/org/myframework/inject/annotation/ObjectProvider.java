@@ -0,0 +1,23 @@
+package org.myframework.inject.annotation;
+
+/**
+ * 延迟获取依赖的注入点
+ *
+ * 被@Autowired标记的成员变量或者构造器参数的类型是ObjectProvider<T>时，注入的不是T本身，而是一个provider，
+ * 在第一次调用get时才会查找实现类、创建bean（包括@Lazy的bean以及它的整个依赖子树），
+ * 所以只在少数路径上使用的重量级依赖不会拖慢启动，也不会在用到之前占用内存
+ *
+ * 比如：
+ * @Autowired
+ * private ObjectProvider<HeadLineService> headLineService;
+ *
+ * @param <T> 依赖的类型，和普通的注入点一样可以是接口
+ */
+public interface ObjectProvider<T> {
+
+    /**
+     * 获取依赖，单例bean在第一次获取之后会被缓存，非单例bean每次都按照作用域获取
+     * @return 依赖的实例
+     */
+    T get();
+}
@@ -0,0 +1,226 @@
+package org.myframework.inject.annotation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.myframework.core.BeanContainer;
+import org.myframework.core.annotation.Lazy;
+import org.myframework.core.startup.StartupRecorder;
+import org.myframework.core.startup.StartupStep;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按照依赖关系并行地创建bean并注入依赖
+ *
+ * loadBeans + doIoC是逐个创建、逐个注入的，启动时间是所有bean构造时间的总和。
+ * 这里先根据@Autowired成员变量建立bean之间的依赖关系图（DAG），再交给有界的线程池执行：
+ * 1.没有依赖的bean最先被创建
+ * 2.一个bean的所有依赖都创建并注入完成之后，它马上就会被提交到线程池中，不需要等待同一层的其他bean
+ * 这样启动时间取决于依赖图中最长的那条路径，而不是bean的数量
+ *
+ * 使用方式：
+ * beanContainer.loadBeanDefinitions(packageName);
+ * new AspectWeaver().doAop();
+ * new DependencyInjector().doIoC();
+ * new ParallelBeanInitializer().initialize();
+ *
+ * 依赖图中存在循环依赖时直接抛出异常，异常信息中会给出完整的依赖环
+ */
+@Slf4j
+public class ParallelBeanInitializer {
+
+    /**
+     * 并行创建bean使用的线程数，默认为CPU的核数
+     * 比如 -Dmyframework.container.parallelism=8
+     */
+    public static final String PARALLELISM_PROPERTY = "myframework.container.parallelism";
+
+    private final BeanContainer beanContainer;
+    private final DependencyInjector dependencyInjector;
+
+    public ParallelBeanInitializer() {
+        beanContainer = BeanContainer.getInstance();
+        dependencyInjector = new DependencyInjector();
+    }
+
+    /**
+     * 创建容器中所有还没有被创建的bean
+     * 被@Lazy标记的bean依然会延迟创建，除非有需要立即创建的bean依赖它
+     */
+    public void initialize() {
+        try (StartupStep step = StartupRecorder.start("parallelInitialize")) {
+            Map<Class<?>, Set<Class<?>>> dependencyGraph = buildDependencyGraph();
+            step.count("beans", dependencyGraph.size());
+            if (!dependencyGraph.isEmpty()) {
+                List<List<Class<?>>> levels = sortByLevel(dependencyGraph);
+                step.count("levels", levels.size());
+                log.debug("initialize " + dependencyGraph.size() + " beans in " + levels.size() + " levels");
+                initialize(dependencyGraph, levels);
+            }
+        }
+    }
+
+    private void initialize(Map<Class<?>, Set<Class<?>>> dependencyGraph, List<List<Class<?>>> levels) {
+
+        ExecutorService executorService = Executors.newFixedThreadPool(getParallelism(), new InitializerThreadFactory());
+        try {
+            Map<Class<?>, CompletableFuture<Void>> futureMap = new HashMap<>();
+            //按层的顺序提交，保证创建一个bean的任务时，它所依赖的bean的任务都已经存在了
+            for (List<Class<?>> level : levels) {
+                for (Class<?> clazz : level) {
+                    CompletableFuture<?>[] dependencyFutures = dependencyGraph.get(clazz).stream()
+                            .map(futureMap::get).toArray(CompletableFuture[]::new);
+                    futureMap.put(clazz, CompletableFuture.allOf(dependencyFutures)
+                            .thenRunAsync(() -> beanContainer.getBean(clazz), executorService));
+                }
+            }
+            CompletableFuture.allOf(futureMap.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("unable to initialize beans", cause);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * 建立依赖关系图：bean -> 它通过@Autowired成员变量或构造器依赖的、同样需要在这里创建的bean
+     * 已经创建好的bean（比如切面）不在图中，依赖它们的bean可以直接注入
+     */
+    private Map<Class<?>, Set<Class<?>>> buildDependencyGraph() {
+        Map<Class<?>, Set<Class<?>>> dependencyGraph = new LinkedHashMap<>();
+        Deque<Class<?>> toVisit = new ArrayDeque<>();
+        for (Class<?> clazz : beanContainer.getLazyClasses()) {
+            Lazy lazy = clazz.getAnnotation(Lazy.class);
+            if (lazy == null || !lazy.value()) {
+                toVisit.add(clazz);
+            }
+        }
+        while (!toVisit.isEmpty()) {
+            Class<?> clazz = toVisit.poll();
+            if (dependencyGraph.containsKey(clazz)) {
+                continue;
+            }
+            Set<Class<?>> dependencies = new LinkedHashSet<>();
+            InjectionPlan injectionPlan = InjectionPlan.of(clazz);
+            for (InjectionPlan.InjectionPoint injectionPoint : injectionPlan.getInjectionPoints()) {
+                addDependencies(dependencies, toVisit, injectionPoint.getDependency());
+            }
+            for (InjectionPlan.Dependency constructorParameter : injectionPlan.getConstructorParameters()) {
+                addDependencies(dependencies, toVisit, constructorParameter);
+            }
+            dependencyGraph.put(clazz, dependencies);
+        }
+        return dependencyGraph;
+    }
+
+    private void addDependencies(Set<Class<?>> dependencies, Deque<Class<?>> toVisit, InjectionPlan.Dependency dependency) {
+        //找不到依赖时不在这里报错，注入的时候会给出和doIoC一致的异常
+        //ObjectProvider的依赖在第一次get时才创建，不需要提前创建
+        for (Class<?> dependencyClass : dependencyInjector.getDependencyClasses(dependency)) {
+            if (beanContainer.isLazyPending(dependencyClass)) {
+                dependencies.add(dependencyClass);
+                //立即创建的bean所依赖的@Lazy bean同样需要立即创建
+                toVisit.add(dependencyClass);
+            }
+        }
+    }
+
+    /**
+     * 拓扑排序（Kahn算法），第0层是没有依赖的bean，第n层的bean只依赖前n层的bean
+     * @param dependencyGraph 依赖关系图
+     * @return 分层的结果
+     */
+    public static List<List<Class<?>>> sortByLevel(Map<Class<?>, Set<Class<?>>> dependencyGraph) {
+        Map<Class<?>, Integer> inDegreeMap = new HashMap<>();
+        Map<Class<?>, List<Class<?>>> dependentMap = new HashMap<>();
+        for (Map.Entry<Class<?>, Set<Class<?>>> entry : dependencyGraph.entrySet()) {
+            inDegreeMap.put(entry.getKey(), entry.getValue().size());
+            for (Class<?> dependency : entry.getValue()) {
+                dependentMap.computeIfAbsent(dependency, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        List<List<Class<?>>> levels = new ArrayList<>();
+        List<Class<?>> currentLevel = new ArrayList<>();
+        inDegreeMap.forEach((clazz, inDegree) -> {
+            if (inDegree == 0) {
+                currentLevel.add(clazz);
+            }
+        });
+        int sortedCount = 0;
+        while (!currentLevel.isEmpty()) {
+            levels.add(new ArrayList<>(currentLevel));
+            sortedCount += currentLevel.size();
+            List<Class<?>> nextLevel = new ArrayList<>();
+            for (Class<?> clazz : currentLevel) {
+                for (Class<?> dependent : dependentMap.getOrDefault(clazz, Collections.emptyList())) {
+                    if (inDegreeMap.merge(dependent, -1, Integer::sum) == 0) {
+                        nextLevel.add(dependent);
+                    }
+                }
+            }
+            currentLevel.clear();
+            currentLevel.addAll(nextLevel);
+        }
+        if (sortedCount < dependencyGraph.size()) {
+            throw new RuntimeException("circular dependency detected: " + findCycle(dependencyGraph, inDegreeMap));
+        }
+        return levels;
+    }
+
+    /**
+     * 在没有被排序的bean中找出一个依赖环，用于异常信息
+     * 没有被排序的bean的入度都大于0，沿着其中任意一条依赖一直走下去，一定会回到走过的某个bean
+     */
+    private static String findCycle(Map<Class<?>, Set<Class<?>>> dependencyGraph, Map<Class<?>, Integer> inDegreeMap) {
+        Class<?> current = null;
+        for (Map.Entry<Class<?>, Integer> entry : inDegreeMap.entrySet()) {
+            if (entry.getValue() > 0) {
+                current = entry.getKey();
+                break;
+            }
+        }
+        List<Class<?>> path = new ArrayList<>();
+        while (!path.contains(current)) {
+            path.add(current);
+            for (Class<?> dependency : dependencyGraph.get(current)) {
+                if (inDegreeMap.get(dependency) > 0) {
+                    current = dependency;
+                    break;
+                }
+            }
+        }
+        StringBuilder cycle = new StringBuilder();
+        for (Class<?> clazz : path.subList(path.indexOf(current), path.size())) {
+            cycle.append(clazz.getName()).append(" -> ");
+        }
+        return cycle.append(current.getName()).toString();
+    }
+
+    private static int getParallelism() {
+        int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, 0);
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 创建bean的线程，使用守护线程，避免初始化失败时线程池阻止JVM退出
+     */
+    private static class InitializerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bean-initializer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.myframework.inject.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * bean的名称
+ * 1.TYPE：声明bean的名称，不标记时bean的名称是类的简单名称，比如GreetingServiceImpl
+ * 2.FIELD、PARAMETER：同一个接口有多个实现类时，按照名称选择其中一个，作用和@Autowired的value相同，同时设置时以@Qualifier为准
+ *
+ * 注入List、Map或者数组时，Map的key就是bean的名称
+ */
+@Target({ElementType.TYPE, ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Qualifier {
+    String value();
+}
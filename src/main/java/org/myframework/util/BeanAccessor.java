@@ -0,0 +1,221 @@
+package org.myframework.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 按类缓存的实例化和成员变量赋值入口
+ *
+ * 反射的方式每次创建bean都要getDeclaredConstructor、setAccessible，每次注入都要经过Field.set的访问检查。
+ * 这里每个类只解析一次：
+ * 1.无参构造器通过LambdaMetafactory生成一个Supplier，创建实例就是一次普通的接口调用，可以被JIT内联，
+ *   生成失败时（比如类加载器的限制）退回到构造器的MethodHandle
+ * 2.成员变量的setter是调整成(Object, Object)void的MethodHandle，通过invokeExact调用，不再有访问检查和装箱的参数数组，
+ *   final成员变量不允许赋值，需要注入的依赖应该通过构造器注入
+ * 3.带参数的构造器（构造器注入）是调整成(Object[])Object的MethodHandle，参数数组由MethodHandle展开
+ *
+ * 类被热更新替换之后是一个新的Class对象，会重新解析，旧类的缓存随着旧类一起被回收
+ */
+@Slf4j
+public final class BeanAccessor {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<BeanAccessor> ACCESSORS = new ClassValue<BeanAccessor>() {
+        @Override
+        protected BeanAccessor computeValue(Class<?> type) {
+            return new BeanAccessor(type);
+        }
+    };
+
+    private final Class<?> clazz;
+    /**
+     * 第一次创建实例时才生成，切面、接口这些不会被实例化的类不需要付出生成的开销
+     */
+    private volatile Supplier<Object> noArgConstructor;
+    /**
+     * 成员变量名 -> setter
+     */
+    private final Map<String, MethodHandle> setterMap = new ConcurrentHashMap<>();
+    /**
+     * 带参数的构造器 -> 接收参数数组的MethodHandle
+     */
+    private final Map<Constructor<?>, MethodHandle> constructorMap = new ConcurrentHashMap<>();
+
+    private BeanAccessor(Class<?> clazz) {
+        this.clazz = clazz;
+    }
+
+    /**
+     * @param clazz Class
+     * @return 类对应的accessor，同一个类始终返回同一个实例
+     */
+    public static BeanAccessor of(Class<?> clazz) {
+        return ACCESSORS.get(clazz);
+    }
+
+    /**
+     * 通过无参构造器创建实例，私有的构造器同样可以使用
+     * @param <T> class的类型
+     * @return 类的实例
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T newInstance() {
+        Supplier<Object> supplier = noArgConstructor;
+        if (supplier == null) {
+            supplier = resolveConstructor();
+        }
+        try {
+            return (T) supplier.get();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Exception e) {
+            //构造器声明的受检异常会原样穿过生成的Supplier
+            log.error("newInstance error", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 通过指定的构造器创建实例
+     * @param constructor 当前类中声明的构造器
+     * @param args 构造器参数
+     * @param <T> class的类型
+     * @return 类的实例
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T newInstance(Constructor<?> constructor, Object[] args) {
+        MethodHandle constructorHandle = constructorMap.get(constructor);
+        if (constructorHandle == null) {
+            constructorHandle = constructorMap.computeIfAbsent(constructor, this::resolveConstructor);
+        }
+        try {
+            return (T) constructorHandle.invokeExact(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            log.error("newInstance error", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 设置成员变量的值，私有的成员变量同样可以设置，final成员变量会抛出IllegalArgumentException
+     * @param field 当前类中声明的成员变量
+     * @param target 实例
+     * @param value 成员变量的值
+     */
+    public void set(Field field, Object target, Object value) {
+        MethodHandle setter = setterMap.get(field.getName());
+        if (setter == null) {
+            setter = setterMap.computeIfAbsent(field.getName(), name -> resolveSetter(field));
+        }
+        set(setter, target, value);
+    }
+
+    /**
+     * 通过成员变量名设置成员变量的值，只有第一次设置时才会查找成员变量，用于按照装配计划注入
+     * @param fieldName 当前类中声明的成员变量名
+     * @param target 实例
+     * @param value 成员变量的值
+     */
+    public void set(String fieldName, Object target, Object value) {
+        MethodHandle setter = setterMap.get(fieldName);
+        if (setter == null) {
+            setter = setterMap.computeIfAbsent(fieldName, name -> resolveSetter(getDeclaredField(name)));
+        }
+        set(setter, target, value);
+    }
+
+    private static void set(MethodHandle setter, Object target, Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            log.error("setField error", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized Supplier<Object> resolveConstructor() {
+        if (noArgConstructor != null) {
+            return noArgConstructor;
+        }
+        MethodHandle constructorHandle;
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+            constructorHandle = lookup.findConstructor(clazz, MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("no accessible no-arg constructor in " + clazz.getName(), e);
+        }
+        Supplier<Object> supplier;
+        try {
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), constructorHandle, MethodType.methodType(clazz));
+            supplier = (Supplier<Object>) callSite.getTarget().invokeExact();
+        } catch (Throwable e) {
+            log.debug("unable to generate constructor of " + clazz.getName() + ", fall back to method handle", e);
+            MethodHandle genericHandle = constructorHandle.asType(MethodType.methodType(Object.class));
+            supplier = () -> {
+                try {
+                    return genericHandle.invokeExact();
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new RuntimeException(ex);
+                }
+            };
+        }
+        noArgConstructor = supplier;
+        return supplier;
+    }
+
+    private MethodHandle resolveConstructor(Constructor<?> constructor) {
+        if (constructor.getDeclaringClass() != clazz) {
+            throw new IllegalArgumentException(constructor + " is not declared in " + clazz.getName());
+        }
+        try {
+            return MethodHandles.privateLookupIn(clazz, MethodHandles.lookup()).unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, constructor.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("unable to access " + constructor, e);
+        }
+    }
+
+    private Field getDeclaredField(String fieldName) {
+        try {
+            return clazz.getDeclaredField(fieldName);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("no field " + fieldName + " in " + clazz.getName(), e);
+        }
+    }
+
+    private MethodHandle resolveSetter(Field field) {
+        if (field.getDeclaringClass() != clazz) {
+            throw new IllegalArgumentException(field + " is not declared in " + clazz.getName());
+        }
+        if (Modifier.isFinal(field.getModifiers())) {
+            //改写final成员变量在其他线程中不一定可见，JIT也可能已经把它当作常量折叠了
+            throw new IllegalArgumentException("final field " + field + " can not be set, use constructor injection instead");
+        }
+        try {
+            return MethodHandles.privateLookupIn(clazz, MethodHandles.lookup()).unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("unable to access " + field, e);
+        }
+    }
+}
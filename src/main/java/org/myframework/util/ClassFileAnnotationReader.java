@@ -0,0 +1,208 @@
+package org.myframework.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 直接从class文件的字节中读取类上的注解，不需要通过Class.forName加载类
+ *
+ * class文件的结构（只列出这里关心的部分）：
+ * magic(u4) minor_version(u2) major_version(u2)
+ * constant_pool_count(u2) constant_pool[]
+ * access_flags(u2) this_class(u2) super_class(u2)
+ * interfaces_count(u2) interfaces[]
+ * fields_count(u2) fields[]
+ * methods_count(u2) methods[]
+ * attributes_count(u2) attributes[]   <- 类上运行时可见的注解就保存在RuntimeVisibleAnnotations属性中
+ *
+ * 因为isAnnotationPresent只能看到RetentionPolicy.RUNTIME的注解，所以这里也只读取RuntimeVisibleAnnotations
+ */
+class ClassFileAnnotationReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private ClassFileAnnotationReader() {
+    }
+
+    /**
+     * 读取类上运行时可见的注解
+     * 调用方负责关闭传入的流，这里只会读到类属性表为止，不会读完整个流
+     *
+     * @param classFile class文件的输入流
+     * @return 注解的全名集合，比如org.myframework.core.annotation.Component
+     * @throws IOException class文件格式不正确或者读取失败
+     */
+    static Set<String> readAnnotations(InputStream classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(classFile));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a class file");
+        }
+        // minor_version、major_version
+        skipFully(in, 4);
+        String[] utf8Pool = readConstantPool(in);
+        // access_flags、this_class、super_class
+        skipFully(in, 6);
+        int interfacesCount = in.readUnsignedShort();
+        skipFully(in, interfacesCount * 2);
+        // fields和methods的结构是一样的
+        skipMembers(in);
+        skipMembers(in);
+
+        int attributesCount = in.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            String attributeName = utf8Pool[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+                return readAnnotationTypes(in, utf8Pool);
+            }
+            skipFully(in, length);
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * 读取常量池，只保留CONSTANT_Utf8类型的常量，其他类型的常量直接跳过
+     */
+    private static String[] readConstantPool(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        String[] utf8Pool = new String[count];
+        // 常量池的下标从1开始
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8Pool[i] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skipFully(in, 2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skipFully(in, 3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELD_REF:
+                case CONSTANT_METHOD_REF:
+                case CONSTANT_INTERFACE_METHOD_REF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skipFully(in, 4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    // long和double在常量池中占两个位置
+                    skipFully(in, 8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("unknown constant pool tag:" + tag);
+            }
+        }
+        return utf8Pool;
+    }
+
+    private static void skipMembers(DataInputStream in) throws IOException {
+        int membersCount = in.readUnsignedShort();
+        for (int i = 0; i < membersCount; i++) {
+            // access_flags、name_index、descriptor_index
+            skipFully(in, 6);
+            int attributesCount = in.readUnsignedShort();
+            for (int j = 0; j < attributesCount; j++) {
+                skipFully(in, 2);
+                skipFully(in, in.readInt());
+            }
+        }
+    }
+
+    /**
+     * 读取RuntimeVisibleAnnotations属性中每个注解的类型，注解的属性值直接跳过
+     */
+    private static Set<String> readAnnotationTypes(DataInputStream in, String[] utf8Pool) throws IOException {
+        int annotationsCount = in.readUnsignedShort();
+        Set<String> annotationSet = new HashSet<>();
+        for (int i = 0; i < annotationsCount; i++) {
+            // 类型描述符的形式是 Lorg/myframework/core/annotation/Component;
+            String descriptor = utf8Pool[in.readUnsignedShort()];
+            annotationSet.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+            skipElementValuePairs(in);
+        }
+        return annotationSet;
+    }
+
+    private static void skipElementValuePairs(DataInputStream in) throws IOException {
+        int pairsCount = in.readUnsignedShort();
+        for (int i = 0; i < pairsCount; i++) {
+            // element_name_index
+            skipFully(in, 2);
+            skipElementValue(in);
+        }
+    }
+
+    private static void skipElementValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                // 枚举：type_name_index、const_name_index
+                skipFully(in, 4);
+                break;
+            case '@':
+                // 嵌套的注解：type_index + 属性值
+                skipFully(in, 2);
+                skipElementValuePairs(in);
+                break;
+            case '[':
+                int valuesCount = in.readUnsignedShort();
+                for (int i = 0; i < valuesCount; i++) {
+                    skipElementValue(in);
+                }
+                break;
+            default:
+                // 基本类型、String、Class：const_value_index或class_info_index
+                skipFully(in, 2);
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) {
+                // skipBytes可能一个字节都不跳过，这时候通过read判断是不是已经到了流的末尾
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+}
@@ -4,10 +4,17 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -15,6 +22,20 @@ import java.util.Set;
 public class ClassUtil {
 
     public static final String FILE_PROTOCOL = "file";
+    public static final String JAR_PROTOCOL = "jar";
+    public static final String WAR_PROTOCOL = "war";
+
+    /**
+     * 扫描目录时使用的线程数，默认为1，即在当前线程中递归遍历；小于等于0时使用CPU的核数
+     * 比如 -Dmyframework.scan.parallelism=8
+     */
+    public static final String SCAN_PARALLELISM_PROPERTY = "myframework.scan.parallelism";
+
+    /**
+     * 扫描结果缓存的目录，不设置时不启用缓存
+     * 比如 -Dmyframework.scan.cache.dir=target/scan-cache
+     */
+    public static final String SCAN_CACHE_DIR_PROPERTY = "myframework.scan.cache.dir";
 
     /**
      * 根据传入的包名，获取该包下类的集合
@@ -30,32 +51,116 @@ public class ClassUtil {
      */
 
     public static Set<Class<?>> extractPackageClass(String packageName) {
+        return extractPackageClass(new String[]{packageName});
+    }
+
+    /**
+     * 一次扫描多个package，返回这些包下类的集合
+     *
+     * 对于jar、war等归档资源，所有package会在同一次扫描中完成，每个归档文件只会被打开一次，
+     * 这样当一个归档中包含成千上万个类，或者需要扫描多个package时，启动的开销也不会成倍增加
+     *
+     * @param packageNames 包名列表
+     * @return 返回存储class类型的Set，所有package都获取不到任何资源时返回null
+     */
+    public static Set<Class<?>> extractPackageClass(String... packageNames) {
+        return doExtractPackageClass(null, packageNames);
+    }
+
+    /**
+     * 预过滤模式：只返回被指定注解标记的类
+     *
+     * 普通模式下，每个class文件都需要通过Class.forName加载（同时还会执行类的静态初始化），
+     * 而容器最终只会保留被特定注解标记的那一小部分类。
+     * 预过滤模式会直接从class文件的字节中读取RuntimeVisibleAnnotations，只有带有目标注解的类才会被加载，
+     * 并且加载时不做初始化，初始化推迟到类第一次被真正使用的时候
+     *
+     * 注意：和isAnnotationPresent一样，这里只识别直接标记在类上的注解
+     *
+     * @param annotations 目标注解
+     * @param packageNames 包名列表
+     * @return 被目标注解标记的类的集合，所有package都获取不到任何资源时返回null
+     */
+    public static Set<Class<?>> extractPackageClass(Collection<Class<? extends Annotation>> annotations, String... packageNames) {
+        Set<String> annotationNames = new HashSet<>();
+        for (Class<? extends Annotation> annotation : annotations) {
+            annotationNames.add(annotation.getName());
+        }
+        return doExtractPackageClass(annotationNames, packageNames);
+    }
+
+    /**
+     * @param annotationNames 预过滤的注解全名，为null时不过滤
+     * @param packageNames 包名列表
+     */
+    private static Set<Class<?>> doExtractPackageClass(Set<String> annotationNames, String[] packageNames) {
         // 1.获取类的加载器
         ClassLoader classLoader = getClassLoader();
-        // 2.通过类加载器获取到加载的资源URL
-        // getResource需要的名称是反斜杠'/'隔开的名称
-        URL url = classLoader.getResource(packageName.replace(".", "/"));
-        if (url == null) {
-            // log4j记录信息
-            log.warn("unable to retrieve anything from package:" + packageName);
-            return null;
-        }
-        // 3.依据不同的资源类型，采用不同的方式获取资源的集合
         Set<Class<?>> classSet = null;
-        // 通过getprotocol过滤出文件类型资源协议是不是file，也可能是jar、war等
-        if (url.getProtocol().equalsIgnoreCase(FILE_PROTOCOL)) {
-            classSet = new HashSet<Class<?>>();
-            // 获取到package所在的实际路径
-            // getPath用来获取url实例的路径，该路径是绝对路径
-            File packageDirectory = new File(url.getPath());
-            // 去page所在的实际路径下面提取class文件，结合用户传入的packageName，生成class对象实例，然后将实例放到classSet中
-            extractClassFile(classSet, packageDirectory, packageName);
+        JarClassScanner jarClassScanner = new JarClassScanner();
+        // 并行度大于1时，目录的遍历交给ForkJoinPool并行完成
+        int parallelism = getScanParallelism();
+        ParallelClassFileScanner parallelScanner = parallelism > 1 ? new ParallelClassFileScanner(parallelism) : null;
+        // 配置了缓存目录时，没有变化的class文件和归档直接使用上一次的扫描结果
+        ScanCache scanCache = ScanCache.open();
+        try {
+            for (String packageName : packageNames) {
+                // 2.通过类加载器获取到加载的资源URL
+                // getResources需要的名称是反斜杠'/'隔开的名称，同一个package可能同时分布在多个目录或者jar中
+                String packagePath = packageName.replace(".", "/");
+                Enumeration<URL> urls;
+                try {
+                    urls = classLoader.getResources(packagePath);
+                } catch (IOException e) {
+                    log.error("get resources error:", e);
+                    throw new RuntimeException(e);
+                }
+                if (!urls.hasMoreElements()) {
+                    // log4j记录信息
+                    log.warn("unable to retrieve anything from package:" + packageName);
+                    continue;
+                }
+                if (classSet == null) {
+                    classSet = new HashSet<Class<?>>();
+                }
+                // 3.依据不同的资源类型，采用不同的方式获取资源的集合
+                while (urls.hasMoreElements()) {
+                    URL url = urls.nextElement();
+                    // 通过getprotocol过滤出文件类型资源协议是不是file，也可能是jar、war等
+                    String protocol = url.getProtocol();
+                    if (protocol.equalsIgnoreCase(FILE_PROTOCOL)) {
+                        // 获取到package所在的实际路径
+                        // getPath用来获取url实例的路径，该路径是绝对路径
+                        File packageDirectory = new File(url.getPath());
+                        // 去page所在的实际路径下面提取class文件，结合用户传入的packageName，生成class对象实例，然后将实例放到classSet中
+                        ScanCache.Segment segment = scanCache == null ? null : scanCache.directorySegment(packageDirectory);
+                        if (parallelScanner != null) {
+                            classSet.addAll(parallelScanner.scan(packageDirectory, packageName, annotationNames, classLoader, segment));
+                        } else {
+                            extractClassFile(classSet, packageDirectory, packageName, annotationNames, segment);
+                        }
+                    } else if (protocol.equalsIgnoreCase(JAR_PROTOCOL) || protocol.equalsIgnoreCase(WAR_PROTOCOL)) {
+                        // 归档资源先登记下来，等所有package都登记完之后再统一扫描
+                        jarClassScanner.addResource(url, packagePath);
+                    } else {
+                        log.warn("unsupported resource protocol:" + url);
+                    }
+                }
+            }
+            if (classSet != null) {
+                for (String className : jarClassScanner.scan(annotationNames, scanCache)) {
+                    classSet.add(loadCandidateClass(className, annotationNames, classLoader));
+                }
+            }
+            if (scanCache != null) {
+                scanCache.save();
+            }
+            return classSet;
+        } finally {
+            if (parallelScanner != null) {
+                parallelScanner.shutdown();
+            }
         }
-
-        //TODO 这里可以加入针对其他类型资源的处理
-
-        return classSet;
-
     }
 
     /**
@@ -63,8 +168,11 @@ public class ClassUtil {
      * @param classSet 装载目标类的集合
      * @param packageDirectory 文件或目录
      * @param packageName 包名
+     * @param annotationNames 预过滤的注解全名，为null时不过滤
+     * @param segment 扫描结果缓存，为null时不使用缓存
      */
-    private static void extractClassFile(Set<Class<?>> classSet, File packageDirectory, String packageName) {
+    private static void extractClassFile(Set<Class<?>> classSet, File packageDirectory, String packageName,
+                                         Set<String> annotationNames, ScanCache.Segment segment) {
         // 这里是中断判断
         // 如果当前的是一个目录，就继续，如果是一个文件就结束
         if (!packageDirectory.isDirectory()) {
@@ -80,36 +188,17 @@ public class ClassUtil {
                     //true的筛选出来
                     return true;
                 } else {
-                    //获取文件的绝对值路径
-                    String fileAbsolutePath = file.getAbsolutePath();
-                    if (fileAbsolutePath.endsWith(".class")) {
-                        //若是class文件，则直接加载
-                        //将class文件转成class对象
-                        addToClassSet(fileAbsolutePath);
+                    //若是class文件，则直接加载
+                    //将class文件转成class对象
+                    Class<?> targetClass = toCandidateClass(file, packageName, annotationNames, getClassLoader(), segment);
+                    if (targetClass != null) {
+                        classSet.add(targetClass);
                     }
                 }
                 // 文件处理完之后，不需要保存，直接过滤掉即可了
                 // 这里就是非目录文件直接过滤掉
                 return false;
             }
-
-            //根据class文件的绝对路径名，获取并生成class对象，并放在classSet中
-            private void addToClassSet(String fileAbsolutePath) {
-                //1.从class文件的绝对值路径中提取出包含package的类名
-                //比如实际的路径是：
-                // /home/candyboy/IdeaProjects/my_springframework/src/main/java/top/candysky/entity/dto/MainPageInfoDTO.class
-                //需要转变为：
-                // top.candysky.entity.dto.MainPageInfoDTO
-
-                //File.separator可根据不同的操作系统判断是‘/’还是‘\’
-                fileAbsolutePath = fileAbsolutePath.replace(File.separator, ".");
-                String className = fileAbsolutePath.substring(fileAbsolutePath.indexOf(packageName));
-                // 从头开始，截止到class前的那一个'.'
-                className = className.substring(0, className.lastIndexOf("."));
-                //2.通过反射机制获取对应的class对象并加入到classSet中
-                Class<?> targetClass = loadClass(className);
-                classSet.add(targetClass);
-            }
         });
 
         // 这里是递归操作
@@ -117,11 +206,71 @@ public class ClassUtil {
         if (files != null) {
             // 如果过滤后的文件夹中还有文件夹的话，进行递归判断
             for (File f : files) {
-                extractClassFile(classSet, f, packageName);
+                extractClassFile(classSet, f, packageName, annotationNames, segment);
             }
         }
     }
 
+    /**
+     * 根据class文件获取并生成class对象
+     *
+     * @param file 文件
+     * @param packageName 包名
+     * @param annotationNames 预过滤的注解全名，为null时不过滤
+     * @param classLoader 预过滤模式下加载类使用的类加载器
+     * @param segment 扫描结果缓存，为null时不使用缓存
+     * @return 不是class文件或者被预过滤掉时返回null
+     */
+    static Class<?> toCandidateClass(File file, String packageName, Set<String> annotationNames, ClassLoader classLoader,
+                                     ScanCache.Segment segment) {
+        //获取文件的绝对值路径
+        String fileAbsolutePath = file.getAbsolutePath();
+        if (!fileAbsolutePath.endsWith(".class")) {
+            return null;
+        }
+        //1.从class文件的绝对值路径中提取出包含package的类名
+        //比如实际的路径是：
+        // /home/candyboy/IdeaProjects/my_springframework/src/main/java/top/candysky/entity/dto/MainPageInfoDTO.class
+        //需要转变为：
+        // top.candysky.entity.dto.MainPageInfoDTO
+
+        //File.separator可根据不同的操作系统判断是‘/’还是‘\’
+        String className = fileAbsolutePath.replace(File.separator, ".");
+        className = className.substring(className.indexOf(packageName));
+        // 从头开始，截止到class前的那一个'.'
+        className = className.substring(0, className.lastIndexOf("."));
+        if (!isCandidate(file, className, annotationNames, segment)) {
+            return null;
+        }
+        //2.通过反射机制获取对应的class对象
+        return loadCandidateClass(className, annotationNames, classLoader);
+    }
+
+    /**
+     * 预过滤模式下，先读取class文件的字节判断是否带有目标注解
+     * 启用了扫描缓存时，文件没有变化就直接使用缓存中的注解，不需要再读取字节
+     */
+    private static boolean isCandidate(File file, String className, Set<String> annotationNames, ScanCache.Segment segment) {
+        if (annotationNames == null && segment == null) {
+            return true;
+        }
+        try {
+            Set<String> annotations;
+            if (segment != null) {
+                annotations = segment.getAnnotations(file.getAbsolutePath(), file.lastModified(), file.length(),
+                        ScanCache.UNKNOWN_CRC, className, () -> new FileInputStream(file));
+            } else {
+                try (InputStream in = new FileInputStream(file)) {
+                    annotations = ClassFileAnnotationReader.readAnnotations(in);
+                }
+            }
+            return annotationNames == null || !Collections.disjoint(annotations, annotationNames);
+        } catch (IOException e) {
+            log.warn("unable to read class file " + file + ", fall back to load it", e);
+            return true;
+        }
+    }
+
     /**
      * 获取class对象
      *
@@ -137,6 +286,33 @@ public class ClassUtil {
         }
     }
 
+    /**
+     * 获取class对象
+     *
+     * @param className class全名=package+类名
+     * @param initialize 是否执行类的静态初始化
+     * @return Class
+     */
+    public static Class<?> loadClass(String className, boolean initialize) {
+        return loadClass(className, initialize, getClassLoader());
+    }
+
+    private static Class<?> loadClass(String className, boolean initialize, ClassLoader classLoader) {
+        try {
+            return Class.forName(className, initialize, classLoader);
+        } catch (ClassNotFoundException e) {
+            log.error("load class error:", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 预过滤模式下的类已经确认是需要的，只加载不初始化；普通模式保持原来的加载方式
+     */
+    private static Class<?> loadCandidateClass(String className, Set<String> annotationNames, ClassLoader classLoader) {
+        return annotationNames == null ? loadClass(className) : loadClass(className, false, classLoader);
+    }
+
     /**
      * 实例化class
      * @param clazz Class
@@ -145,6 +321,10 @@ public class ClassUtil {
      * @return 类的实例化
      */
     public static <T> T newInstance(Class<?> clazz, boolean accessible) {
+        if (accessible) {
+            //构造器在BeanAccessor中按类缓存，不需要每次都查找和setAccessible
+            return BeanAccessor.of(clazz).newInstance();
+        }
         try {
             Constructor constructor = clazz.getDeclaredConstructor();
             constructor.setAccessible(accessible);
@@ -155,6 +335,15 @@ public class ClassUtil {
         }
     }
 
+    /**
+     * 获取扫描目录时使用的线程数
+     * @return 线程数
+     */
+    public static int getScanParallelism() {
+        int parallelism = Integer.getInteger(SCAN_PARALLELISM_PROPERTY, 1);
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * 获取classLoader 的实例,通过线程实例获取到classLoader
      * @return 当前classLoader
@@ -171,6 +360,10 @@ public class ClassUtil {
      * @param accessible 是否允许设置私有属性
      */
     public static void setFiled(Field filed, Object target, Object value, Boolean accessible ) {
+        if (accessible) {
+            BeanAccessor.of(filed.getDeclaringClass()).set(filed, target, value);
+            return;
+        }
         //决定是否支持反射操作私有的成员变量
         filed.setAccessible(accessible);
         try {
@@ -0,0 +1,254 @@
+package org.myframework.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+
+/**
+ * jar/war等归档资源中的class扫描器
+ *
+ * 1.先通过addResource把一次扫描中涉及到的所有资源URL登记进来，按照归档文件进行归类
+ *   比如 jar:file:/app/lib/demo.jar!/top/candysky 会被归类到 /app/lib/demo.jar 下，需要匹配的entry前缀是 top/candysky/
+ * 2.再调用scan，每个归档文件只打开一次，遍历一遍entry，同时用登记进来的所有前缀进行过滤
+ *   这样不管一个归档里面有多少个package需要扫描，启动的开销都只和归档文件的大小有关
+ *
+ * 支持的URL形式：
+ *   jar:file:/x/app.jar!/top/candysky                           普通jar
+ *   jar:file:/x/app.war!/WEB-INF/classes/top/candysky           war中的classes目录
+ *   jar:file:/x/app.jar!/BOOT-INF/lib/dep.jar!/top/candysky     fat-jar中嵌套的jar（不解压，直接以流的方式读取）
+ *   war:file:/x/app.war*&#47;WEB-INF/classes/top/candysky          tomcat的war协议
+ */
+@Slf4j
+class JarClassScanner {
+
+    private static final String ARCHIVE_SEPARATOR = "!/";
+    /**
+     * tomcat war协议中归档和内部路径的分隔符，新版本为'*'，老版本为'^'
+     */
+    private static final String[] WAR_SEPARATORS = {"*/", "^/"};
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * 归档文件 -> 嵌套的jar entry（没有嵌套时为空串）-> entry前缀 -> 前缀中package路径开始的位置
+     */
+    private final Map<File, Map<String, Map<String, Integer>>> archiveMap = new LinkedHashMap<>();
+
+    /**
+     * 登记一个需要扫描的资源
+     * @param url 通过类加载器获取到的package资源URL
+     * @param packagePath 以'/'分隔的包路径，比如 top/candysky
+     * @return 是否是可以识别的归档资源
+     */
+    boolean addResource(URL url, String packagePath) {
+        String location = url.toString();
+        // 去掉外层的协议，只留下 file:/x/app.jar!/... 的形式
+        while (location.startsWith(ClassUtil.JAR_PROTOCOL + ":") || location.startsWith(ClassUtil.WAR_PROTOCOL + ":")) {
+            location = location.substring(location.indexOf(':') + 1);
+        }
+        for (String warSeparator : WAR_SEPARATORS) {
+            location = location.replace(warSeparator, ARCHIVE_SEPARATOR);
+        }
+        String[] segments = location.split(ARCHIVE_SEPARATOR);
+        if (segments.length < 2 || !segments[0].startsWith(ClassUtil.FILE_PROTOCOL + ":")) {
+            log.warn("unsupported archive resource:" + url);
+            return false;
+        }
+        File archive = new File(decode(segments[0].substring(ClassUtil.FILE_PROTOCOL.length() + 1)));
+
+        //中间的片段如果是jar，则是嵌套的归档；否则，就是归档内部的目录，比如BOOT-INF/classes
+        String nestedEntry = "";
+        StringBuilder entryPrefix = new StringBuilder();
+        for (int i = 1; i < segments.length; i++) {
+            String segment = decode(segments[i]);
+            if (i < segments.length - 1 && isArchiveName(segment)) {
+                if (!nestedEntry.isEmpty()) {
+                    log.warn("archive nested more than one level is not supported:" + url);
+                    return false;
+                }
+                nestedEntry = entryPrefix.append(segment).toString();
+                entryPrefix.setLength(0);
+            } else {
+                entryPrefix.append(segment);
+                if (!segment.endsWith("/")) {
+                    entryPrefix.append('/');
+                }
+            }
+        }
+        String prefix = entryPrefix.toString();
+        if (!prefix.endsWith(packagePath + "/")) {
+            log.warn("archive resource " + url + " does not end with package path " + packagePath);
+            return false;
+        }
+        archiveMap.computeIfAbsent(archive, k -> new LinkedHashMap<>())
+                .computeIfAbsent(nestedEntry, k -> new LinkedHashMap<>())
+                .put(prefix, prefix.length() - packagePath.length() - 1);
+        return true;
+    }
+
+    /**
+     * 遍历所有登记过的归档，每个归档只打开一次
+     * @param annotationNames 预过滤的注解全名，不为null时只返回带有这些注解的类
+     * @param scanCache 扫描结果缓存，为null时不使用缓存
+     * @return 匹配到的class全名集合
+     */
+    Set<String> scan(Set<String> annotationNames, ScanCache scanCache) {
+        Set<String> classNameSet = new LinkedHashSet<>();
+        for (Map.Entry<File, Map<String, Map<String, Integer>>> archiveEntry : archiveMap.entrySet()) {
+            File archive = archiveEntry.getKey();
+            // 归档没有变化的部分直接使用缓存，剩下的部分才需要打开归档
+            Map<String, ScanCache.Segment> segmentMap = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<String, Integer>> nestedEntry : archiveEntry.getValue().entrySet()) {
+                ScanCache.Segment segment = null;
+                if (scanCache != null) {
+                    try {
+                        segment = scanCache.archiveSegment(archive, nestedEntry.getKey() + "|" + new TreeSet<>(nestedEntry.getValue().keySet()));
+                    } catch (IOException e) {
+                        log.warn("unable to fingerprint archive " + archive + ", scan it without cache", e);
+                    }
+                    if (segment != null && segment.isValid()) {
+                        for (ScanCache.Record record : segment.getRecords()) {
+                            if (annotationNames == null || !Collections.disjoint(record.getAnnotations(), annotationNames)) {
+                                classNameSet.add(record.getClassName());
+                            }
+                        }
+                        continue;
+                    }
+                }
+                segmentMap.put(nestedEntry.getKey(), segment);
+            }
+            if (segmentMap.isEmpty()) {
+                continue;
+            }
+            try (JarFile jarFile = new JarFile(archive)) {
+                for (Map.Entry<String, ScanCache.Segment> segmentEntry : segmentMap.entrySet()) {
+                    String nestedEntryName = segmentEntry.getKey();
+                    Map<String, Integer> prefixMap = archiveEntry.getValue().get(nestedEntryName);
+                    if (nestedEntryName.isEmpty()) {
+                        Enumeration<JarEntry> entries = jarFile.entries();
+                        while (entries.hasMoreElements()) {
+                            JarEntry entry = entries.nextElement();
+                            collect(classNameSet, entry, prefixMap, () -> jarFile.getInputStream(entry),
+                                    annotationNames, segmentEntry.getValue());
+                        }
+                    } else {
+                        scanNestedArchive(classNameSet, jarFile, nestedEntryName, prefixMap, annotationNames, segmentEntry.getValue());
+                    }
+                }
+            } catch (IOException e) {
+                log.error("scan archive error:" + archive, e);
+                throw new RuntimeException(e);
+            }
+        }
+        return classNameSet;
+    }
+
+    /**
+     * 嵌套的jar没有办法直接用JarFile打开，这里以流的方式顺序读取，避免解压到磁盘
+     */
+    private void scanNestedArchive(Set<String> classNameSet, JarFile jarFile, String nestedEntryName,
+                                   Map<String, Integer> prefixMap, Set<String> annotationNames,
+                                   ScanCache.Segment segment) throws IOException {
+        JarEntry nestedEntry = jarFile.getJarEntry(nestedEntryName);
+        if (nestedEntry == null) {
+            log.warn("nested archive " + nestedEntryName + " not found in " + jarFile.getName());
+            return;
+        }
+        try (InputStream in = jarFile.getInputStream(nestedEntry);
+             JarInputStream jarInputStream = new JarInputStream(in)) {
+            JarEntry entry;
+            while ((entry = jarInputStream.getNextJarEntry()) != null) {
+                String className = matchClassName(entry, prefixMap);
+                if (className == null) {
+                    continue;
+                }
+                if (annotationNames == null && segment == null) {
+                    classNameSet.add(className);
+                    continue;
+                }
+                // 流中的entry在读完内容之前大小和CRC可能是未知的（-1），先读出全部字节，缓存中记录的是实际的大小和CRC
+                byte[] classBytes = jarInputStream.readAllBytes();
+                if (isCandidate(entry, classBytes.length, className, () -> new ByteArrayInputStream(classBytes),
+                        annotationNames, segment)) {
+                    classNameSet.add(className);
+                }
+            }
+        }
+    }
+
+    /**
+     * entry匹配任意一个前缀，并且通过了预过滤时，把对应的class全名放入classNameSet
+     */
+    private void collect(Set<String> classNameSet, JarEntry entry, Map<String, Integer> prefixMap,
+                         ScanCache.ClassFileOpener opener, Set<String> annotationNames, ScanCache.Segment segment) {
+        String className = matchClassName(entry, prefixMap);
+        if (className != null && isCandidate(entry, entry.getSize(), className, opener, annotationNames, segment)) {
+            classNameSet.add(className);
+        }
+    }
+
+    /**
+     * @return entry匹配任意一个前缀时返回对应的class全名，否则返回null
+     */
+    private String matchClassName(JarEntry entry, Map<String, Integer> prefixMap) {
+        String entryName = entry.getName();
+        if (entry.isDirectory() || !entryName.endsWith(CLASS_SUFFIX)) {
+            return null;
+        }
+        for (Map.Entry<String, Integer> prefixEntry : prefixMap.entrySet()) {
+            if (entryName.startsWith(prefixEntry.getKey())) {
+                // WEB-INF/classes/top/candysky/Foo.class -> top.candysky.Foo
+                String className = entryName.substring(prefixEntry.getValue(), entryName.length() - CLASS_SUFFIX.length());
+                return className.replace('/', '.');
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 预过滤：读取entry的字节判断是否带有目标注解，读取失败时保守地保留该类
+     * 启用了扫描缓存时，所有匹配的entry都会读取注解并记录下来，下一次启动归档没有变化时就不需要再打开归档了
+     * @param length entry的实际大小
+     */
+    private boolean isCandidate(JarEntry entry, long length, String className, ScanCache.ClassFileOpener opener,
+                                Set<String> annotationNames, ScanCache.Segment segment) {
+        if (annotationNames == null && segment == null) {
+            return true;
+        }
+        try {
+            Set<String> annotations;
+            if (segment != null) {
+                annotations = segment.getAnnotations(entry.getName(), entry.getTime(), length, entry.getCrc(), className, opener);
+            } else {
+                try (InputStream in = opener.open()) {
+                    annotations = ClassFileAnnotationReader.readAnnotations(in);
+                }
+            }
+            return annotationNames == null || !Collections.disjoint(annotations, annotationNames);
+        } catch (IOException e) {
+            log.warn("unable to read class file " + className + ", fall back to load it", e);
+            return true;
+        }
+    }
+
+    private static boolean isArchiveName(String segment) {
+        return segment.endsWith(".jar") || segment.endsWith(".war") || segment.endsWith(".zip");
+    }
+
+    private static String decode(String path) {
+        try {
+            return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
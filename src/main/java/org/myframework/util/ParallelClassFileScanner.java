@@ -0,0 +1,97 @@
+package org.myframework.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 基于ForkJoinPool的目录并行扫描器
+ *
+ * 每个目录对应一个RecursiveTask：
+ * 1.当前目录下的class文件在当前任务中处理（预过滤、加载），结果放在任务自己的Set中，不需要加锁
+ * 2.子目录fork成新的子任务，交给其他空闲的线程窃取执行
+ * 3.等子任务都完成之后，再把子任务的结果合并到当前任务的结果中
+ *
+ * 包的层级越深、class文件越多，并行的收益越明显
+ */
+class ParallelClassFileScanner {
+
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * @param parallelism 线程数
+     */
+    ParallelClassFileScanner(int parallelism) {
+        this.forkJoinPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 并行扫描目录下的所有class文件（包括子目录）
+     * @param packageDirectory package所在的目录
+     * @param packageName 包名
+     * @param annotationNames 预过滤的注解全名，为null时不过滤
+     * @param classLoader 加载类使用的类加载器，工作线程的上下文类加载器不一定和调用方一致，所以需要显式传入
+     * @param segment 扫描结果缓存，为null时不使用缓存
+     * @return class集合
+     */
+    Set<Class<?>> scan(File packageDirectory, String packageName, Set<String> annotationNames, ClassLoader classLoader,
+                       ScanCache.Segment segment) {
+        if (!packageDirectory.isDirectory()) {
+            return new HashSet<>();
+        }
+        return forkJoinPool.invoke(new DirectoryTask(packageDirectory, packageName, annotationNames, classLoader, segment));
+    }
+
+    void shutdown() {
+        forkJoinPool.shutdown();
+    }
+
+    private static class DirectoryTask extends RecursiveTask<Set<Class<?>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+        private final String packageName;
+        private final Set<String> annotationNames;
+        private final ClassLoader classLoader;
+        private final ScanCache.Segment segment;
+
+        DirectoryTask(File directory, String packageName, Set<String> annotationNames, ClassLoader classLoader,
+                      ScanCache.Segment segment) {
+            this.directory = directory;
+            this.packageName = packageName;
+            this.annotationNames = annotationNames;
+            this.classLoader = classLoader;
+            this.segment = segment;
+        }
+
+        @Override
+        protected Set<Class<?>> compute() {
+            Set<Class<?>> classSet = new HashSet<>();
+            File[] files = directory.listFiles();
+            if (files == null) {
+                return classSet;
+            }
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    DirectoryTask subTask = new DirectoryTask(file, packageName, annotationNames, classLoader, segment);
+                    subTask.fork();
+                    subTasks.add(subTask);
+                } else {
+                    Class<?> targetClass = ClassUtil.toCandidateClass(file, packageName, annotationNames, classLoader, segment);
+                    if (targetClass != null) {
+                        classSet.add(targetClass);
+                    }
+                }
+            }
+            for (DirectoryTask subTask : subTasks) {
+                classSet.addAll(subTask.join());
+            }
+            return classSet;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.myframework.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的扫描结果缓存
+ *
+ * 同一个构建产物重启时，扫描出来的类是完全一样的，这里把每个扫描根（class目录或者jar/war归档）的扫描结果保存到磁盘上：
+ * 1.class目录：以文件为单位缓存类名和类上的注解，指纹是文件的修改时间和大小，
+ *   只有新增或者修改过的文件才需要重新读取字节，删除的文件在保存时自动从缓存中去掉
+ * 2.归档文件：以整个归档为单位缓存，指纹是归档中央目录的CRC和归档的大小，
+ *   中央目录记录了每个entry的CRC-32，所以任何一个entry的内容变化都会改变指纹，和修改时间无关；
+ *   计算指纹只需要读取归档末尾的中央目录，归档没有变化时不需要打开归档解压任何entry
+ * 3.归档中的entry（包括嵌套jar中的entry）额外记录entry自身的CRC-32，归档变化之后只有CRC变化的entry需要重新读取
+ *
+ * 已知的限制：class目录中的文件不比较内容。修改时间的精度不够（比如部分文件系统只精确到秒），
+ * 或者构建工具重写文件时保留了修改时间，而且内容变化之后大小恰好相同时，缓存会返回旧的注解。
+ * 出现这种情况时删除缓存目录即可
+ *
+ * 每个扫描根对应缓存目录下的一个文件，文件名是扫描根标识的SHA-1，
+ * 缓存目录通过 -Dmyframework.scan.cache.dir=target/scan-cache 指定，不指定时不启用缓存
+ */
+@Slf4j
+class ScanCache {
+
+    private static final String CACHE_FILE_SUFFIX = ".scan";
+    private static final String SEPARATOR = "\t";
+    private static final String ANNOTATION_SEPARATOR = ",";
+    /**
+     * 缓存文件的格式版本，格式变化时递增，旧的缓存文件会被直接忽略
+     */
+    private static final String VERSION = "v2";
+    /**
+     * class目录中的文件没有CRC
+     */
+    static final long UNKNOWN_CRC = -1;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    /**
+     * 中央目录结束记录的固定长度，后面最多还有65535字节的注释
+     */
+    private static final int END_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_END_LENGTH = 56;
+
+    private final File cacheDir;
+    private final Map<String, Segment> segmentMap = new ConcurrentHashMap<>();
+    /**
+     * 归档 -> 中央目录的CRC，一次扫描中同一个归档可能对应多个缓存段
+     */
+    private final Map<File, Long> checksumMap = new ConcurrentHashMap<>();
+
+    private ScanCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @return 没有配置缓存目录时返回null
+     */
+    static ScanCache open() {
+        String cacheDirName = System.getProperty(ClassUtil.SCAN_CACHE_DIR_PROPERTY);
+        if (ValidationUtil.isEmpty(cacheDirName)) {
+            return null;
+        }
+        File cacheDir = new File(cacheDirName);
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            log.warn("unable to create scan cache directory:" + cacheDir + ", scan cache is disabled");
+            return null;
+        }
+        return new ScanCache(cacheDir);
+    }
+
+    /**
+     * 获取一个class目录的缓存，目录下的每个文件单独校验
+     * @param directory class目录
+     * @return 缓存段
+     */
+    Segment directorySegment(File directory) {
+        return segment("dir:" + directory.getAbsolutePath(), 0, 0);
+    }
+
+    /**
+     * 获取一个归档的缓存，归档中央目录的CRC或者归档的大小变化时，整个缓存段失效
+     * @param archive 归档文件
+     * @param scope 归档内部的扫描范围，比如嵌套的jar和entry前缀，范围不同的扫描结果分开缓存
+     * @return 缓存段
+     * @throws IOException 读取不到中央目录，比如归档已经损坏
+     */
+    Segment archiveSegment(File archive, String scope) throws IOException {
+        Long checksum = checksumMap.get(archive);
+        if (checksum == null) {
+            checksum = centralDirectoryChecksum(archive);
+            checksumMap.put(archive, checksum);
+        }
+        return segment("archive:" + archive.getAbsolutePath() + "!" + scope, checksum, archive.length());
+    }
+
+    private Segment segment(String key, long checksum, long length) {
+        return segmentMap.computeIfAbsent(key, k -> {
+            Segment segment = new Segment(key, checksum, length);
+            segment.load(cacheFile(key));
+            return segment;
+        });
+    }
+
+    /**
+     * 把发生了变化的缓存段写回磁盘
+     */
+    void save() {
+        for (Segment segment : segmentMap.values()) {
+            if (!segment.isDirty()) {
+                continue;
+            }
+            File cacheFile = cacheFile(segment.key);
+            try {
+                File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+                    segment.write(writer);
+                }
+                // 先写临时文件再替换，避免多个进程同时启动时读到写了一半的缓存
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("unable to write scan cache:" + cacheFile, e);
+            }
+        }
+    }
+
+    private File cacheFile(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(cacheDir, name.append(CACHE_FILE_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 计算归档中央目录（包括结束记录）的CRC，中央目录中记录了每个entry的名字、大小和CRC-32
+     * 从归档末尾向前查找结束记录，中央目录的位置由结束记录中的大小推算，兼容前面带有启动脚本的可执行jar
+     */
+    static long centralDirectoryChecksum(File archive) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(archive, "r")) {
+            long fileLength = file.length();
+            int tailLength = (int) Math.min(fileLength, END_LENGTH + 0xFFFF);
+            byte[] tail = new byte[tailLength];
+            file.seek(fileLength - tailLength);
+            file.readFully(tail);
+            ByteBuffer tailBuffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+                if (tailBuffer.getInt(i) != END_SIGNATURE) {
+                    continue;
+                }
+                long endPosition = fileLength - tailLength + i;
+                long size = tailBuffer.getInt(i + 12) & 0xFFFFFFFFL;
+                long start = endPosition - size;
+                if (size == 0xFFFFFFFFL && i >= ZIP64_LOCATOR_LENGTH && tailBuffer.getInt(i - ZIP64_LOCATOR_LENGTH) == ZIP64_LOCATOR_SIGNATURE) {
+                    // zip64：真正的大小在zip64结束记录中，它位于定位器之前
+                    long zip64EndPosition = endPosition - ZIP64_LOCATOR_LENGTH - ZIP64_END_LENGTH;
+                    byte[] zip64End = new byte[ZIP64_END_LENGTH];
+                    file.seek(zip64EndPosition);
+                    file.readFully(zip64End);
+                    ByteBuffer zip64EndBuffer = ByteBuffer.wrap(zip64End).order(ByteOrder.LITTLE_ENDIAN);
+                    if (zip64EndBuffer.getInt(0) != ZIP64_END_SIGNATURE) {
+                        throw new IOException("zip64 end of central directory not found in " + archive);
+                    }
+                    size = zip64EndBuffer.getLong(40);
+                    start = zip64EndPosition - size;
+                }
+                if (start < 0) {
+                    throw new IOException("invalid central directory in " + archive);
+                }
+                CRC32 crc = new CRC32();
+                byte[] buffer = new byte[8192];
+                file.seek(start);
+                for (long remaining = size; remaining > 0; ) {
+                    int count = (int) Math.min(buffer.length, remaining);
+                    file.readFully(buffer, 0, count);
+                    crc.update(buffer, 0, count);
+                    remaining -= count;
+                }
+                crc.update(tail, i, tailLength - i);
+                return crc.getValue();
+            }
+            throw new IOException("end of central directory not found in " + archive);
+        }
+    }
+
+    /**
+     * 打开class文件的输入流，只有缓存没有命中时才会被调用
+     */
+    interface ClassFileOpener {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * 一个扫描根的缓存
+     */
+    static class Segment {
+        private final String key;
+        /**
+         * 归档中央目录的CRC，class目录为0
+         */
+        private final long checksum;
+        private final long length;
+        /**
+         * 从磁盘加载的上一次的记录
+         */
+        private final Map<String, Record> previousMap = new HashMap<>();
+        /**
+         * 本次扫描访问过的记录，目录可能会被并行扫描，所以需要线程安全
+         */
+        private final Map<String, Record> currentMap = new ConcurrentHashMap<>();
+        private boolean loaded = false;
+        private volatile boolean dirty = false;
+
+        private Segment(String key, long checksum, long length) {
+            this.key = key;
+            this.checksum = checksum;
+            this.length = length;
+        }
+
+        /**
+         * 缓存段是否有效，即磁盘上有缓存并且扫描根的指纹没有变化
+         * 对于归档来说，有效时可以直接使用getRecords的结果，不需要再打开归档
+         */
+        boolean isValid() {
+            return loaded;
+        }
+
+        /**
+         * @return 上一次扫描的所有记录，调用之后这些记录会被当作本次扫描的结果保留下来
+         */
+        Collection<Record> getRecords() {
+            currentMap.putAll(previousMap);
+            return previousMap.values();
+        }
+
+        /**
+         * 获取class文件上的注解，文件的修改时间、大小和CRC都没有变化时直接使用缓存，否则读取字节并更新缓存
+         *
+         * @param path 文件在扫描根中的路径
+         * @param lastModified 文件的修改时间
+         * @param length 文件的大小
+         * @param crc 归档entry的CRC-32，class目录中的文件为UNKNOWN_CRC
+         * @param className 类的全名
+         * @param opener 缓存没有命中时用来读取class文件
+         * @return 注解的全名集合
+         */
+        Set<String> getAnnotations(String path, long lastModified, long length, long crc, String className,
+                                   ClassFileOpener opener) throws IOException {
+            Record record = previousMap.get(path);
+            if (record == null || record.lastModified != lastModified || record.length != length || record.crc != crc) {
+                try (InputStream in = opener.open()) {
+                    record = new Record(path, lastModified, length, crc, className, ClassFileAnnotationReader.readAnnotations(in));
+                }
+                dirty = true;
+            }
+            currentMap.put(path, record);
+            return record.getAnnotations();
+        }
+
+        private boolean isDirty() {
+            // 缓存中有记录没有被访问到，说明对应的文件已经被删除了
+            return dirty || !loaded || currentMap.size() != previousMap.size();
+        }
+
+        private void load(File cacheFile) {
+            if (!cacheFile.isFile()) {
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8))) {
+                String[] header = reader.readLine().split(SEPARATOR);
+                // 缓存格式变化时直接忽略
+                if (header.length != 4 || !VERSION.equals(header[0]) || !key.equals(header[1])) {
+                    return;
+                }
+                // 扫描根的指纹发生了变化时，整个缓存段失效，但是每条记录仍然可以按照自身的指纹复用
+                boolean unchanged = Long.parseLong(header[2]) == checksum && Long.parseLong(header[3]) == length;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Record record = Record.parse(line);
+                    previousMap.put(record.path, record);
+                }
+                loaded = unchanged;
+            } catch (IOException | RuntimeException e) {
+                log.warn("ignore broken scan cache:" + cacheFile, e);
+                previousMap.clear();
+            }
+        }
+
+        private void write(Writer writer) throws IOException {
+            writer.write(VERSION + SEPARATOR + key + SEPARATOR + checksum + SEPARATOR + length + "\n");
+            for (Record record : currentMap.values()) {
+                writer.write(record.format());
+                writer.write("\n");
+            }
+        }
+    }
+
+    /**
+     * 一个class文件的扫描结果
+     */
+    static class Record {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+        private final long crc;
+        private final String className;
+        private final Set<String> annotations;
+
+        Record(String path, long lastModified, long length, long crc, String className, Set<String> annotations) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.crc = crc;
+            this.className = className;
+            this.annotations = annotations;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        Set<String> getAnnotations() {
+            return annotations;
+        }
+
+        private String format() {
+            return path + SEPARATOR + lastModified + SEPARATOR + length + SEPARATOR + crc + SEPARATOR + className
+                    + SEPARATOR + String.join(ANNOTATION_SEPARATOR, annotations);
+        }
+
+        private static Record parse(String line) {
+            String[] fields = line.split(SEPARATOR, -1);
+            Set<String> annotations = fields[5].isEmpty()
+                    ? Collections.emptySet() : new HashSet<>(Arrays.asList(fields[5].split(ANNOTATION_SEPARATOR)));
+            return new Record(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                    fields[4], annotations);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.myframework.aop;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.aop.annotation.PointcutLocator;
+import org.myframework.aop.annotation.ProxyMode;
+import org.myframework.aop.aspect.AspectInfo;
+import org.myframework.aop.aspect.DefaultAspect;
+import org.myframework.aop.aspect.ProceedingJoinPoint;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AspectListExecutorTest {
+
+    public static class EchoService {
+        public String echo(String message) {
+            return message;
+        }
+    }
+
+    /**
+     * 用括号包裹返回值，记录before、afterReturning的次数
+     */
+    public static class WrappingAspect extends DefaultAspect {
+        private final String open;
+        private final String close;
+        private final AtomicInteger beforeCount = new AtomicInteger();
+        private final AtomicInteger afterReturningCount = new AtomicInteger();
+
+        public WrappingAspect(String open, String close) {
+            this.open = open;
+            this.close = close;
+        }
+
+        @Override
+        public void before(Class<?> targetClass, Method method, Object[] args) {
+            beforeCount.incrementAndGet();
+        }
+
+        @Override
+        public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+            return open + joinPoint.proceed() + close;
+        }
+
+        @Override
+        public Object afterReturning(Class<?> targetClass, Method method, Object[] args, Object returnValue) {
+            afterReturningCount.incrementAndGet();
+            return returnValue;
+        }
+    }
+
+    public static class AdvisedTarget {
+        public String call(List<String> records, String value) {
+            records.add("target");
+            return value;
+        }
+
+        public String fail(List<String> records) {
+            records.add("target");
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    /**
+     * 把每个通知的执行记录到同一个列表中，用来检查嵌套的顺序
+     */
+    public static class RecordingAspect extends DefaultAspect {
+        protected final String name;
+        protected final List<String> records;
+        private final boolean failBefore;
+
+        public RecordingAspect(String name, List<String> records) {
+            this(name, records, false);
+        }
+
+        public RecordingAspect(String name, List<String> records, boolean failBefore) {
+            this.name = name;
+            this.records = records;
+            this.failBefore = failBefore;
+        }
+
+        @Override
+        public void before(Class<?> targetClass, Method method, Object[] args) {
+            records.add(name + ".before");
+            if (failBefore) {
+                throw new IllegalArgumentException(name + ".before failed");
+            }
+        }
+
+        @Override
+        public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+            records.add(name + ".around>");
+            Object returnValue = joinPoint.proceed();
+            records.add(name + ".around<");
+            return returnValue;
+        }
+
+        @Override
+        public Object afterReturning(Class<?> targetClass, Method method, Object[] args, Object returnValue) {
+            records.add(name + ".afterReturning");
+            return returnValue;
+        }
+
+        @Override
+        public void afterThrowing(Class<?> targetClass, Method method, Object[] args, Throwable e) {
+            records.add(name + ".afterThrowing " + e.getMessage());
+        }
+    }
+
+    private static final String TARGET_POINTCUT = "execution(* org.myframework.aop.AspectListExecutorTest.AdvisedTarget.*(..))";
+
+    /**
+     * 通过精筛创建Aspect链，aspectInfoList不需要事先排序
+     */
+    private static AdvisedTarget createProxy(AspectInfo... aspectInfos) {
+        List<AspectInfo> aspectInfoList = new ArrayList<>(List.of(aspectInfos));
+        AspectListExecutor executor = new AspectListExecutor(AdvisedTarget.class, aspectInfoList);
+        return (AdvisedTarget) ProxyFactory.of(ProxyMode.CGLIB)
+                .createProxy(AdvisedTarget.class, executor, new Class<?>[0], new Object[0]);
+    }
+
+    private static AspectInfo aspectInfo(int order, DefaultAspect aspect) {
+        return new AspectInfo(order, aspect, new PointcutLocator(TARGET_POINTCUT));
+    }
+
+    @DisplayName("两个Aspect的around、before、afterReturning、afterThrowing按照order嵌套：nestingOrderTest")
+    @Test
+    public void nestingOrderTest() {
+        List<String> records = new ArrayList<>();
+        //order大的Aspect先传入，执行时仍然是order小的在外层
+        AdvisedTarget target = createProxy(aspectInfo(2, new RecordingAspect("inner", records)),
+                aspectInfo(1, new RecordingAspect("outer", records)));
+
+        Assertions.assertEquals("value", target.call(records, "value"));
+        Assertions.assertEquals(List.of("outer.around>", "outer.before", "inner.around>", "inner.before", "target",
+                "inner.afterReturning", "inner.around<", "outer.afterReturning", "outer.around<"), records);
+
+        records.clear();
+        //afterThrowing从内向外执行，之后异常不再抛给调用方
+        Assertions.assertNull(target.fail(records));
+        Assertions.assertEquals(List.of("outer.around>", "outer.before", "inner.around>", "inner.before", "target",
+                "inner.afterThrowing fail", "outer.afterThrowing fail"), records);
+    }
+
+    @DisplayName("around不调用proceed时直接返回它自己的值：aroundSkipsProceedTest")
+    @Test
+    public void aroundSkipsProceedTest() {
+        List<String> records = new ArrayList<>();
+        RecordingAspect cachingAspect = new RecordingAspect("outer", records) {
+            @Override
+            public Object around(ProceedingJoinPoint joinPoint) {
+                records.add(name + ".around");
+                return "cached " + joinPoint.getArgs()[1];
+            }
+        };
+        AdvisedTarget target = createProxy(aspectInfo(1, cachingAspect), aspectInfo(2, new RecordingAspect("inner", records)));
+
+        Assertions.assertEquals("cached value", target.call(records, "value"));
+        //当前Aspect的before、afterReturning，order更大的Aspect以及被代理的方法都不会执行
+        Assertions.assertEquals(List.of("outer.around"), records);
+    }
+
+    @DisplayName("内层Aspect的before抛出的异常交给外层的afterThrowing：innerBeforeExceptionTest")
+    @Test
+    public void innerBeforeExceptionTest() {
+        List<String> records = new ArrayList<>();
+        AdvisedTarget target = createProxy(aspectInfo(1, new RecordingAspect("outer", records)),
+                aspectInfo(2, new RecordingAspect("inner", records, true)));
+
+        Assertions.assertNull(target.call(records, "value"));
+        //before在内层Aspect自己的try之外，所以只有外层的afterThrowing会执行
+        Assertions.assertEquals(List.of("outer.around>", "outer.before", "inner.around>", "inner.before",
+                "outer.afterThrowing inner.before failed"), records);
+    }
+
+    @DisplayName("around调用两次proceed时链上剩下的部分执行两次：proceedTwiceTest")
+    @Test
+    public void proceedTwiceTest() {
+        List<String> records = new ArrayList<>();
+        RecordingAspect retryingAspect = new RecordingAspect("outer", records) {
+            @Override
+            public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+                Object first = joinPoint.proceed();
+                Object second = joinPoint.proceed();
+                return first + "|" + second;
+            }
+        };
+        AdvisedTarget target = createProxy(aspectInfo(1, retryingAspect), aspectInfo(2, new RecordingAspect("inner", records)));
+
+        Assertions.assertEquals("value|value", target.call(records, "value"));
+        List<String> once = List.of("outer.before", "inner.around>", "inner.before", "target",
+                "inner.afterReturning", "inner.around<", "outer.afterReturning");
+        List<String> twice = new ArrayList<>(once);
+        twice.addAll(once);
+        Assertions.assertEquals(twice, records);
+        Assertions.assertEquals(2, Collections.frequency(records, "target"));
+    }
+
+    @DisplayName("多个线程同时调用同一个代理对象，Aspect链互不干扰：concurrentInvocationTest")
+    @Test
+    public void concurrentInvocationTest() throws Exception {
+        int threadCount = 8;
+        int invocationCount = 2000;
+        WrappingAspect outer = new WrappingAspect("(", ")");
+        WrappingAspect inner = new WrappingAspect("[", "]");
+        Method echo = EchoService.class.getMethod("echo", String.class);
+        AspectListExecutor executor = new AspectListExecutor(EchoService.class,
+                Map.of(echo, List.of(new AspectInfo(0, outer, null), new AspectInfo(1, inner, null))));
+        EchoService echoService = (EchoService) ProxyFactory.of(ProxyMode.CGLIB)
+                .createProxy(EchoService.class, executor, new Class<?>[0], new Object[0]);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            CountDownLatch startLatch = new CountDownLatch(1);
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                String prefix = "thread" + i + "-";
+                futures.add(executorService.submit(() -> {
+                    startLatch.await();
+                    List<String> mismatches = new ArrayList<>();
+                    for (int j = 0; j < invocationCount; j++) {
+                        String message = prefix + j;
+                        String result = echoService.echo(message);
+                        if (!("([" + message + "])").equals(result)) {
+                            mismatches.add(result);
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            startLatch.countDown();
+            for (Future<List<String>> future : futures) {
+                Assertions.assertEquals(List.of(), future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        int total = threadCount * invocationCount;
+        Assertions.assertEquals(total, outer.beforeCount.get());
+        Assertions.assertEquals(total, inner.beforeCount.get());
+        Assertions.assertEquals(total, outer.afterReturningCount.get());
+        Assertions.assertEquals(total, inner.afterReturningCount.get());
+        Assertions.assertEquals(Set.of(echo), executor.getAdvisedMethods());
+    }
+}
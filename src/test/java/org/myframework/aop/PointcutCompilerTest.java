@@ -0,0 +1,103 @@
+package org.myframework.aop;
+
+import org.aspectj.weaver.tools.PointcutExpression;
+import org.aspectj.weaver.tools.PointcutParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.core.annotation.Repository;
+import org.myframework.fixture.bean.ChineseGreetingTemplate;
+import org.myframework.fixture.bean.EnglishGreetingTemplate;
+import org.myframework.fixture.bean.GreetingArchive;
+import org.myframework.fixture.bean.GreetingController;
+import org.myframework.fixture.bean.GreetingHistory;
+import org.myframework.fixture.bean.GreetingService;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+import org.myframework.fixture.bean.GreetingTemplate;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PointcutCompilerTest {
+
+    private static final List<Class<?>> CLASSES = List.of(GreetingService.class, GreetingServiceImpl.class,
+            GreetingController.class, GreetingHistory.class, GreetingArchive.class, GreetingTemplate.class,
+            EnglishGreetingTemplate.class, ChineseGreetingTemplate.class, ArchiveGreetingTemplate.class,
+            PointcutCompilerTest.class, ArrayList.class);
+
+    /**
+     * 在fixture之外声明的实现类，用来验证execution中的声明类型可以是接口
+     */
+    @Repository
+    static class ArchiveGreetingTemplate implements GreetingTemplate {
+        @Override
+        public String format(String name) {
+            return name;
+        }
+
+        @Deprecated
+        public int count() {
+            return 0;
+        }
+    }
+
+    @DisplayName("快速匹配的结果和AspectJ一致")
+    @Test
+    public void sameAsAspectJTest() {
+        PointcutParser pointcutParser = PointcutParser.getPointcutParserSupportingSpecifiedPrimitivesAndUsingContextClassloaderForResolution(
+                PointcutParser.getAllSupportedPointcutPrimitives());
+        String[] expressions = {
+                "within(org.myframework.fixture..*)",
+                "within(org.myframework.fixture.bean.*)",
+                "within(org.myframework.fixture.bean.GreetingServiceImpl)",
+                "within(org.myframework..bean.*Impl)",
+                "within(org.myframework.aop.*)",
+                "within(org.myframework.aop.PointcutCompilerTest.*)",
+                "execution(* org.myframework.fixture..*.*(..))",
+                "execution(public java.lang.String org.myframework.fixture.bean.GreetingService.*(..))",
+                "execution(* org.myframework.fixture.bean.GreetingTemplate.format(..))",
+                "execution(* org.myframework..*.get*())",
+                "execution(boolean *.is*())",
+                "execution(private void *(..))",
+                "execution(* java.util.List.*(..))",
+                "@annotation(org.myframework.core.annotation.PostConstruct)",
+                "@annotation(java.lang.Deprecated) || @annotation(org.junit.jupiter.api.Test)",
+                "@within(org.myframework.core.annotation.Repository)",
+                "within(org.myframework.fixture..*) && !execution(* *.get*(..))",
+                "!(within(org.myframework.fixture..*) || within(java..*))",
+        };
+        for (String expression : expressions) {
+            PointcutCompiler.CompiledPointcut compiledPointcut = PointcutCompiler.compile(expression, getClass().getClassLoader());
+            Assertions.assertNotNull(compiledPointcut, expression);
+            PointcutExpression pointcutExpression = pointcutParser.parsePointcutExpression(expression);
+            for (Class<?> clazz : CLASSES) {
+                boolean anyMatches = false;
+                for (Method method : clazz.getDeclaredMethods()) {
+                    boolean matches = compiledPointcut.matches(method);
+                    Assertions.assertEquals(pointcutExpression.matchesMethodExecution(method).alwaysMatches(), matches,
+                            expression + " " + method);
+                    anyMatches |= matches;
+                }
+                //初筛可以多报，但是不能漏报
+                Assertions.assertTrue(!anyMatches || compiledPointcut.couldMatch(clazz), expression + " " + clazz);
+            }
+        }
+    }
+
+    @DisplayName("快速匹配不支持的表达式交给AspectJ")
+    @Test
+    public void unsupportedExpressionTest() {
+        String[] expressions = {
+                "within(GreetingService)",
+                "execution(* *(java.lang.String))",
+                "execution(String *.*(..))",
+                "within(org.myframework.fixture.bean.GreetingService+)",
+                "this(org.myframework.fixture.bean.GreetingService)",
+                "@annotation(org.myframework.fixture.bean.GreetingService)",
+        };
+        for (String expression : expressions) {
+            Assertions.assertNull(PointcutCompiler.compile(expression, getClass().getClassLoader()), expression);
+        }
+    }
+}
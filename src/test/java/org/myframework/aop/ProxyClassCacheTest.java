@@ -0,0 +1,110 @@
+package org.myframework.aop;
+
+import net.sf.cglib.proxy.MethodInterceptor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ProxyClassCacheTest {
+
+    public static class CachedTarget {
+        public String greet() {
+            return "hello";
+        }
+
+        public String plain() {
+            return "plain";
+        }
+    }
+
+    @DisplayName("代理类写入缓存，之后直接从缓存定义：cacheRoundTripTest")
+    @Test
+    public void cacheRoundTripTest() throws Exception {
+        Path cacheDirectory = Files.createTempDirectory("proxy-cache");
+        System.setProperty(ProxyClassCache.CACHE_DIR_PROPERTY, cacheDirectory.toString());
+        try {
+            //每次都在新的类加载器中加载被代理类，CGLIB的内存缓存不会命中，只能使用磁盘缓存或者重新生成
+            assertProxy(createProxy());
+            Path cacheFile = getSingleCacheFile(cacheDirectory);
+
+            //缓存命中时不会重新写入文件
+            FileTime lastModifiedTime = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(cacheFile, lastModifiedTime);
+            assertProxy(createProxy());
+            Assertions.assertEquals(lastModifiedTime, Files.getLastModifiedTime(cacheFile));
+
+            //损坏的缓存被忽略，重新生成之后覆盖
+            Files.write(cacheFile, new byte[]{1, 2, 3});
+            assertProxy(createProxy());
+            Assertions.assertEquals(cacheFile, getSingleCacheFile(cacheDirectory));
+            Assertions.assertTrue(Files.size(cacheFile) > 3);
+        } finally {
+            System.clearProperty(ProxyClassCache.CACHE_DIR_PROPERTY);
+        }
+    }
+
+    private static Object createProxy() throws Exception {
+        Class<?> targetClass = new ChildFirstClassLoader().loadClass(CachedTarget.class.getName());
+        MethodInterceptor interceptor = (proxy, method, args, methodProxy) -> "intercepted " + methodProxy.invokeSuper(proxy, args);
+        return ProxyCreator.createProxy(targetClass, interceptor, Set.of(targetClass.getMethod("greet")));
+    }
+
+    private static void assertProxy(Object proxy) throws Exception {
+        Method greet = proxy.getClass().getMethod("greet");
+        Method plain = proxy.getClass().getMethod("plain");
+        Assertions.assertEquals("intercepted hello", greet.invoke(proxy));
+        Assertions.assertEquals("plain", plain.invoke(proxy));
+    }
+
+    private static Path getSingleCacheFile(Path cacheDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            List<Path> fileList = files.collect(Collectors.toList());
+            Assertions.assertEquals(1, fileList.size(), fileList.toString());
+            return fileList.get(0);
+        }
+    }
+
+    /**
+     * 自己加载CachedTarget，其他类交给父加载器
+     */
+    private static class ChildFirstClassLoader extends ClassLoader {
+        ChildFirstClassLoader() {
+            super(ProxyClassCacheTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(CachedTarget.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass != null) {
+                    return loadedClass;
+                }
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    byte[] classBytes = in.readAllBytes();
+                    return defineClass(name, classBytes, 0, classBytes.length);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            return getParent().getResourceAsStream(name);
+        }
+    }
+}
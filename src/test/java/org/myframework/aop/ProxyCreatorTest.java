@@ -0,0 +1,90 @@
+package org.myframework.aop;
+
+import net.sf.cglib.proxy.MethodInterceptor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProxyCreatorTest {
+
+    public static class PartiallyAdvisedTarget {
+        public String advised() {
+            return "advised";
+        }
+
+        public String unadvised() {
+            return "unadvised";
+        }
+
+        @Override
+        public String toString() {
+            return "target";
+        }
+    }
+
+    @DisplayName("只有指定的方法经过拦截器，toString、hashCode和其他方法直接执行：unadvisedMethodsSkipInterceptorTest")
+    @Test
+    public void unadvisedMethodsSkipInterceptorTest() throws Exception {
+        List<String> interceptedMethods = new ArrayList<>();
+        MethodInterceptor interceptor = (o, method, args, methodProxy) -> {
+            interceptedMethods.add(method.getName());
+            return methodProxy.invokeSuper(o, args);
+        };
+        Method advised = PartiallyAdvisedTarget.class.getMethod("advised");
+        PartiallyAdvisedTarget proxy = (PartiallyAdvisedTarget) ProxyCreator.createProxy(
+                PartiallyAdvisedTarget.class, interceptor, Set.of(advised));
+
+        Assertions.assertEquals("target", proxy.toString());
+        Assertions.assertEquals(System.identityHashCode(proxy), proxy.hashCode());
+        Assertions.assertTrue(proxy.equals(proxy));
+        Assertions.assertEquals("unadvised", proxy.unadvised());
+        Assertions.assertEquals(List.of(), interceptedMethods);
+
+        Assertions.assertEquals("advised", proxy.advised());
+        Assertions.assertEquals(List.of("advised"), interceptedMethods);
+        //没有被拦截的方法不会在代理类中重写
+        Assertions.assertEquals(PartiallyAdvisedTarget.class,
+                proxy.getClass().getMethod("unadvised").getDeclaringClass());
+        Assertions.assertNotEquals(PartiallyAdvisedTarget.class,
+                proxy.getClass().getMethod("advised").getDeclaringClass());
+    }
+
+    @DisplayName("拦截的方法集合相同时复用同一个代理类：proxyClassReusedTest")
+    @Test
+    public void proxyClassReusedTest() throws Exception {
+        Method advised = PartiallyAdvisedTarget.class.getMethod("advised");
+        Method unadvised = PartiallyAdvisedTarget.class.getMethod("unadvised");
+        //原型bean每次创建时使用新的拦截器和新的方法集合
+        AtomicInteger firstCount = new AtomicInteger();
+        AtomicInteger secondCount = new AtomicInteger();
+        Object first = ProxyCreator.createProxy(PartiallyAdvisedTarget.class, countingInterceptor(firstCount),
+                new HashSet<>(Set.of(advised)));
+        Object second = ProxyCreator.createProxy(PartiallyAdvisedTarget.class, countingInterceptor(secondCount),
+                new HashSet<>(Set.of(advised)));
+        Assertions.assertNotSame(first, second);
+        Assertions.assertSame(first.getClass(), second.getClass());
+
+        //复用代理类时每个代理对象仍然使用自己的拦截器
+        ((PartiallyAdvisedTarget) second).advised();
+        Assertions.assertEquals(0, firstCount.get());
+        Assertions.assertEquals(1, secondCount.get());
+
+        Object other = ProxyCreator.createProxy(PartiallyAdvisedTarget.class, countingInterceptor(new AtomicInteger()),
+                Set.of(advised, unadvised));
+        Assertions.assertNotSame(first.getClass(), other.getClass());
+    }
+
+    private static MethodInterceptor countingInterceptor(AtomicInteger count) {
+        return (o, method, args, methodProxy) -> {
+            count.incrementAndGet();
+            return methodProxy.invokeSuper(o, args);
+        };
+    }
+}
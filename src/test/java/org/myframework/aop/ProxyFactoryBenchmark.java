@@ -0,0 +1,135 @@
+package org.myframework.aop;
+
+import org.myframework.aop.annotation.ProxyMode;
+import org.myframework.aop.aspect.AspectInfo;
+import org.myframework.aop.aspect.DefaultAspect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不同代理方式的调用开销和创建开销的对比
+ * 这里只是一个粗略的计时，不是单元测试，需要手动运行：
+ * mvn -B test-compile exec:java -Dexec.mainClass=org.myframework.aop.ProxyFactoryBenchmark -Dexec.classpathScope=test
+ *
+ * 1.invoke：通过接口调用被代理的方法，Aspect链中只有一个什么都不做的Aspect
+ * 2.create：代理类已经生成之后，创建一个代理对象
+ * 3.define：在新的类加载器中加载被代理类，包括生成代理类在内的第一次创建
+ */
+public class ProxyFactoryBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+    private static final int INVOCATIONS = 10_000_000;
+    private static final int CREATIONS = 200_000;
+    private static final int DEFINITIONS = 200;
+
+    public static void main(String[] args) throws Exception {
+        AspectListExecutor executor = createExecutor(SampleServiceImpl.class);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (ProxyMode proxyMode : ProxyMode.values()) {
+                invoke(proxyMode, executor);
+                create(proxyMode, executor);
+            }
+        }
+        for (int i = 0; i < ROUNDS; i++) {
+            for (ProxyMode proxyMode : ProxyMode.values()) {
+                System.out.printf("round %d %-8s: invoke %.1f ns/op, create %.1f ns/op%n", i, proxyMode,
+                        (double) invoke(proxyMode, executor) / INVOCATIONS, (double) create(proxyMode, executor) / CREATIONS);
+            }
+        }
+        for (ProxyMode proxyMode : ProxyMode.values()) {
+            System.out.printf("%-8s: define %.1f us/op%n", proxyMode, (double) define(proxyMode) / DEFINITIONS / 1000);
+        }
+    }
+
+    private static long invoke(ProxyMode proxyMode, AspectListExecutor executor) {
+        SampleService service = (SampleService) ProxyFactory.of(proxyMode)
+                .createProxy(SampleServiceImpl.class, executor, new Class<?>[0], new Object[0]);
+        long startNanos = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < INVOCATIONS; i++) {
+            checksum += service.length("benchmark");
+        }
+        return consume(System.nanoTime() - startNanos, checksum);
+    }
+
+    private static long create(ProxyMode proxyMode, AspectListExecutor executor) {
+        ProxyFactory proxyFactory = ProxyFactory.of(proxyMode);
+        long startNanos = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < CREATIONS; i++) {
+            checksum += proxyFactory.createProxy(SampleServiceImpl.class, executor, new Class<?>[0], new Object[0]) != null ? 1 : 0;
+        }
+        return consume(System.nanoTime() - startNanos, checksum);
+    }
+
+    private static long define(ProxyMode proxyMode) throws Exception {
+        ProxyFactory proxyFactory = ProxyFactory.of(proxyMode);
+        long startNanos = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < DEFINITIONS; i++) {
+            Class<?> targetClass = new ChildFirstClassLoader().loadClass(SampleServiceImpl.class.getName());
+            checksum += proxyFactory.createProxy(targetClass, createExecutor(targetClass), new Class<?>[0], new Object[0]) != null ? 1 : 0;
+        }
+        return consume(System.nanoTime() - startNanos, checksum);
+    }
+
+    private static AspectListExecutor createExecutor(Class<?> targetClass) throws NoSuchMethodException {
+        AspectInfo aspectInfo = new AspectInfo(0, new EmptyAspect(), null);
+        Method method = targetClass.getMethod("length", String.class);
+        return new AspectListExecutor(targetClass, Map.of(method, List.of(aspectInfo)));
+    }
+
+    private static long consume(long nanos, int checksum) {
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+        return nanos;
+    }
+
+    public interface SampleService {
+        int length(String value);
+    }
+
+    public static class SampleServiceImpl implements SampleService {
+        @Override
+        public int length(String value) {
+            return value.length();
+        }
+    }
+
+    private static class EmptyAspect extends DefaultAspect {
+    }
+
+    /**
+     * 每次都重新加载SampleServiceImpl，其他类交给父加载器
+     */
+    private static class ChildFirstClassLoader extends ClassLoader {
+        ChildFirstClassLoader() {
+            super(ProxyFactoryBenchmark.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(SampleServiceImpl.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass != null) {
+                    return loadedClass;
+                }
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    byte[] classBytes = in.readAllBytes();
+                    return defineClass(name, classBytes, 0, classBytes.length);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.myframework.aop;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.aop.annotation.ProxyMode;
+import org.myframework.aop.aspect.AspectInfo;
+import org.myframework.aop.aspect.DefaultAspect;
+import org.myframework.aop.aspect.ProceedingJoinPoint;
+import org.myframework.core.TargetProxy;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ProxyFactoryTest {
+
+    public interface Calculator {
+        String greet(String name);
+
+        int add(int a, int b);
+
+        long total();
+
+        void fail();
+    }
+
+    public static class CalculatorImpl implements Calculator {
+        private final String prefix;
+        private long total;
+
+        public CalculatorImpl() {
+            this("hello ");
+        }
+
+        public CalculatorImpl(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public String greet(String name) {
+            return prefix + name;
+        }
+
+        @Override
+        public int add(int a, int b) {
+            total += a + b;
+            return a + b;
+        }
+
+        @Override
+        public long total() {
+            return total;
+        }
+
+        @Override
+        public void fail() {
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    public static class NoInterfaceTarget {
+        public String greet() {
+            return "hello";
+        }
+    }
+
+    public static class RecordingAspect extends DefaultAspect {
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void before(Class<?> targetClass, Method method, Object[] args) {
+            records.add("before " + method.getName());
+        }
+
+        @Override
+        public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+            Object returnValue = joinPoint.proceed();
+            return returnValue instanceof String ? "[" + returnValue + "]" : returnValue;
+        }
+
+        @Override
+        public void afterThrowing(Class<?> targetClass, Method method, Object[] args, Throwable e) {
+            records.add("afterThrowing " + e.getMessage());
+        }
+    }
+
+    @DisplayName("不同的代理方式执行同样的Aspect链：sameBehaviorTest")
+    @Test
+    public void sameBehaviorTest() throws Exception {
+        for (ProxyMode proxyMode : ProxyMode.values()) {
+            RecordingAspect aspect = new RecordingAspect();
+            Calculator calculator = (Calculator) ProxyFactory.of(proxyMode)
+                    .createProxy(CalculatorImpl.class, createExecutor(CalculatorImpl.class, aspect), new Class<?>[0], new Object[0]);
+            String message = proxyMode.name();
+
+            Assertions.assertEquals("[hello world]", calculator.greet("world"), message);
+            Assertions.assertEquals(3, calculator.add(1, 2), message);
+            //没有Aspect链的方法直接执行
+            Assertions.assertEquals(3L, calculator.total(), message);
+            //afterThrowing之后异常不再抛出
+            calculator.fail();
+            Assertions.assertEquals(List.of("before greet", "before add", "before fail", "afterThrowing fail"),
+                    aspect.records, message);
+        }
+    }
+
+    @DisplayName("使用构造器参数创建代理对象：constructorArgumentsTest")
+    @Test
+    public void constructorArgumentsTest() throws Exception {
+        for (ProxyMode proxyMode : ProxyMode.values()) {
+            Calculator calculator = (Calculator) ProxyFactory.of(proxyMode).createProxy(CalculatorImpl.class,
+                    createExecutor(CalculatorImpl.class, new RecordingAspect()), new Class<?>[]{String.class}, new Object[]{"hi "});
+            Assertions.assertEquals("[hi world]", calculator.greet("world"), proxyMode.name());
+        }
+    }
+
+    @DisplayName("JDK代理对象可以取出被代理的对象，子类代理对象本身就是bean：unwrapTest")
+    @Test
+    public void unwrapTest() throws Exception {
+        AspectListExecutor executor = createExecutor(CalculatorImpl.class, new RecordingAspect());
+        Object jdkProxy = ProxyFactory.of(ProxyMode.JDK).createProxy(CalculatorImpl.class, executor, new Class<?>[0], new Object[0]);
+        Assertions.assertFalse(jdkProxy instanceof CalculatorImpl);
+        Assertions.assertSame(CalculatorImpl.class, TargetProxy.unwrap(jdkProxy).getClass());
+        Assertions.assertEquals(jdkProxy, jdkProxy);
+
+        Object subclassProxy = ProxyFactory.of(ProxyMode.SUBCLASS).createProxy(CalculatorImpl.class, executor, new Class<?>[0], new Object[0]);
+        Assertions.assertTrue(subclassProxy instanceof CalculatorImpl);
+        Assertions.assertSame(subclassProxy, TargetProxy.unwrap(subclassProxy));
+        //同样的被代理类和方法复用生成的代理类
+        Assertions.assertSame(subclassProxy.getClass(), ProxyFactory.of(ProxyMode.SUBCLASS)
+                .createProxy(CalculatorImpl.class, executor, new Class<?>[0], new Object[0]).getClass());
+    }
+
+    @DisplayName("没有实现接口的类不能使用JDK代理：jdkProxyRequiresInterfaceTest")
+    @Test
+    public void jdkProxyRequiresInterfaceTest() throws Exception {
+        AspectListExecutor executor = createExecutor(NoInterfaceTarget.class, new RecordingAspect());
+        Assertions.assertThrows(RuntimeException.class, () -> ProxyFactory.of(ProxyMode.JDK)
+                .createProxy(NoInterfaceTarget.class, executor, new Class<?>[0], new Object[0]));
+    }
+
+    /**
+     * 除了total之外的方法都使用同一个Aspect
+     */
+    private static AspectListExecutor createExecutor(Class<?> targetClass, DefaultAspect aspect) {
+        AspectInfo aspectInfo = new AspectInfo(0, aspect, null);
+        Map<Method, List<AspectInfo>> aspectChainMap = new HashMap<>();
+        for (Method method : targetClass.getDeclaredMethods()) {
+            if (!method.getName().equals("total") && !method.isSynthetic()) {
+                aspectChainMap.put(method, List.of(aspectInfo));
+            }
+        }
+        return new AspectListExecutor(targetClass, aspectChainMap);
+    }
+}
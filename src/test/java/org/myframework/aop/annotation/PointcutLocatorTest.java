@@ -0,0 +1,101 @@
+package org.myframework.aop.annotation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class PointcutLocatorTest {
+
+    private static final String EXPRESSION = "execution(* org.myframework.fixture.bean.GreetingServiceImpl.greet(..))";
+
+    @DisplayName("同一个表达式只解析一次，所有线程创建的PointcutLocator共享解析结果：sharedParseTest")
+    @Test
+    public void sharedParseTest() throws Exception {
+        int threadCount = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<PointcutLocator>> futures = new ArrayList<>();
+        try {
+            CountDownLatch startLatch = new CountDownLatch(1);
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executorService.submit(() -> {
+                    Thread.currentThread().setContextClassLoader(classLoader);
+                    startLatch.await();
+                    return new PointcutLocator(EXPRESSION);
+                }));
+            }
+            startLatch.countDown();
+            Object parsedPointcut = getParsedPointcut(new PointcutLocator(EXPRESSION));
+            for (Future<PointcutLocator> future : futures) {
+                Assertions.assertSame(parsedPointcut, getParsedPointcut(future.get(30, TimeUnit.SECONDS)));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assertions.assertNotSame(getParsedPointcut(new PointcutLocator(EXPRESSION)),
+                getParsedPointcut(new PointcutLocator("within(org.myframework.fixture.bean.*)")));
+    }
+
+    @DisplayName("表达式相同的PointcutLocator共享精筛的结果：sharedMatchCacheTest")
+    @Test
+    public void sharedMatchCacheTest() throws Exception {
+        String expression = "execution(* org.myframework.fixture.bean.GreetingServiceImpl.*(String))";
+        PointcutLocator first = new PointcutLocator(expression);
+        PointcutLocator second = new PointcutLocator(expression);
+        Method greet = GreetingServiceImpl.class.getMethod("greet", String.class);
+        Method isInitialized = GreetingServiceImpl.class.getMethod("isInitialized");
+
+        Assertions.assertTrue(first.accurateMatches(greet));
+        Assertions.assertFalse(first.accurateMatches(isInitialized));
+        //第一个PointcutLocator的匹配结果已经在第二个PointcutLocator的缓存中
+        Map<Method, Boolean> matchMap = getAccurateMatchMap(second, GreetingServiceImpl.class);
+        Assertions.assertEquals(Map.of(greet, true, isInitialized, false), matchMap);
+        Assertions.assertTrue(second.accurateMatches(greet));
+        Assertions.assertSame(matchMap, getAccurateMatchMap(first, GreetingServiceImpl.class));
+    }
+
+    @DisplayName("不同的类加载器分别解析：classLoaderIsolationTest")
+    @Test
+    public void classLoaderIsolationTest() throws Exception {
+        Object parsedPointcut = getParsedPointcut(new PointcutLocator(EXPRESSION));
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], original)) {
+            thread.setContextClassLoader(classLoader);
+            Object isolated = getParsedPointcut(new PointcutLocator(EXPRESSION));
+            Assertions.assertNotSame(parsedPointcut, isolated);
+            Assertions.assertSame(isolated, getParsedPointcut(new PointcutLocator(EXPRESSION)));
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    private static Object getParsedPointcut(PointcutLocator pointcutLocator) throws ReflectiveOperationException {
+        Field field = PointcutLocator.class.getDeclaredField("parsedPointcut");
+        field.setAccessible(true);
+        return field.get(pointcutLocator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Method, Boolean> getAccurateMatchMap(PointcutLocator pointcutLocator, Class<?> declaringClass)
+            throws ReflectiveOperationException {
+        Object parsedPointcut = getParsedPointcut(pointcutLocator);
+        Field field = parsedPointcut.getClass().getDeclaredField("accurateMatchMap");
+        field.setAccessible(true);
+        return ((ClassValue<Map<Method, Boolean>>) field.get(parsedPointcut)).get(declaringClass);
+    }
+}
@@ -0,0 +1,181 @@
+package org.myframework.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.Controller;
+import org.myframework.core.annotation.Service;
+import org.myframework.aop.AspectWeaver;
+import org.myframework.fixture.aop.AuditedService;
+import org.myframework.fixture.bean.ChineseGreetingTemplate;
+import org.myframework.fixture.bean.EnglishGreetingTemplate;
+import org.myframework.fixture.bean.GreetingArchive;
+import org.myframework.fixture.bean.GreetingController;
+import org.myframework.fixture.bean.GreetingHistory;
+import org.myframework.fixture.bean.GreetingService;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+import org.myframework.inject.annotation.DependencyInjector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class BeanContainerTest {
+    private BeanContainer beanContainer;
+
+    /**
+     * 每个测试都从一个刚加载完的容器开始，不受其他测试（包括其他测试类）执行顺序的影响
+     */
+    @BeforeEach
+    void init() {
+        beanContainer = BeanContainer.getInstance();
+        beanContainer.reset();
+        beanContainer.loadBeans("org.myframework.fixture.bean");
+    }
+
+    @AfterEach
+    void reset() {
+        beanContainer.reset();
+    }
+
+    @DisplayName("根据注解获取类：getClassesByAnnotationTest")
+    @Test
+    public void getClassesByAnnotationTest() {
+        Assertions.assertTrue(beanContainer.isLoaded());
+        Assertions.assertEquals(Collections.singleton(GreetingController.class), beanContainer.getClassesByAnnotation(Controller.class));
+        Assertions.assertEquals(Collections.singleton(GreetingServiceImpl.class), beanContainer.getClassesByAnnotation(Service.class));
+    }
+
+    @DisplayName("根据父类或接口获取类：getClassesBySuperTest")
+    @Test
+    public void getClassesBySuperTest() {
+        Set<Class<?>> classSet = beanContainer.getClassesBySuper(GreetingService.class);
+        Assertions.assertEquals(Collections.singleton(GreetingServiceImpl.class), classSet);
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> classSet.add(GreetingController.class));
+        Assertions.assertNull(beanContainer.getClassesBySuper(GreetingServiceImpl.class));
+    }
+
+    @DisplayName("增删bean时同步更新索引：indexFollowsAddAndRemoveTest")
+    @Test
+    public void indexFollowsAddAndRemoveTest() {
+        GreetingService anotherService = name -> "hi " + name;
+        beanContainer.addBean(anotherService.getClass(), anotherService);
+        try {
+            Assertions.assertEquals(2, beanContainer.getClassesBySuper(GreetingService.class).size());
+        } finally {
+            beanContainer.removeBean(anotherService.getClass());
+        }
+        Assertions.assertEquals(Collections.singleton(GreetingServiceImpl.class), beanContainer.getClassesBySuper(GreetingService.class));
+    }
+
+    @DisplayName("延迟bean在第一次获取时创建并注入：lazyBeanTest")
+    @Test
+    public void lazyBeanTest() {
+        Assertions.assertTrue(beanContainer.isLazyPending(GreetingHistory.class));
+        Assertions.assertFalse(beanContainer.getClasses().contains(GreetingHistory.class));
+        Assertions.assertEquals(Collections.singleton(GreetingHistory.class), beanContainer.getClassesByAnnotation(Component.class));
+
+        new DependencyInjector().doIoC();
+        GreetingHistory greetingHistory = (GreetingHistory) beanContainer.getBean(GreetingHistory.class);
+        Assertions.assertEquals("hello tom", greetingHistory.greetAndRecord("tom"));
+        Assertions.assertFalse(beanContainer.isLazyPending(GreetingHistory.class));
+        Assertions.assertSame(greetingHistory, beanContainer.getBean(GreetingHistory.class));
+
+        //GreetingArchive通过ObjectProvider依赖GreetingHistory，不会让它提前创建，get时返回同一个实例
+        GreetingArchive greetingArchive = (GreetingArchive) beanContainer.getBean(GreetingArchive.class);
+        Assertions.assertSame(greetingHistory, greetingArchive.getGreetingHistory().get());
+        Assertions.assertSame(greetingHistory, greetingArchive.getGreetingHistory().get());
+        Assertions.assertTrue(beanContainer.getDependents(GreetingHistory.class).contains(GreetingArchive.class));
+    }
+
+    @DisplayName("构造器注入的bean推迟到doIoC时创建：constructorInjectionTest")
+    @Test
+    public void constructorInjectionTest() {
+        new DependencyInjector().doIoC();
+        Assertions.assertTrue(beanContainer.getDeferredClasses().isEmpty());
+        GreetingArchive greetingArchive = (GreetingArchive) beanContainer.getBean(GreetingArchive.class);
+        Assertions.assertSame(beanContainer.getBean(GreetingServiceImpl.class), greetingArchive.getGreetingService());
+        Assertions.assertSame(beanContainer.getBean(GreetingController.class), greetingArchive.getGreetingController());
+        Assertions.assertTrue(beanContainer.getDependents(GreetingServiceImpl.class).contains(GreetingArchive.class));
+    }
+
+    @DisplayName("按名称注入以及注入所有实现类：qualifierAndCollectionInjectionTest")
+    @Test
+    public void qualifierAndCollectionInjectionTest() {
+        new DependencyInjector().doIoC();
+        GreetingArchive greetingArchive = (GreetingArchive) beanContainer.getBean(GreetingArchive.class);
+        Assertions.assertSame(beanContainer.getBean(EnglishGreetingTemplate.class), greetingArchive.getDefaultTemplate());
+        Assertions.assertEquals(Collections.singleton(ChineseGreetingTemplate.class), beanContainer.getClassesByName("chinese"));
+
+        //按照@Order排序
+        Object chinese = beanContainer.getBean(ChineseGreetingTemplate.class);
+        Object english = beanContainer.getBean(EnglishGreetingTemplate.class);
+        Assertions.assertEquals(Arrays.asList(chinese, english), greetingArchive.getTemplateList());
+        Assertions.assertArrayEquals(new Object[]{chinese, english}, greetingArchive.getTemplates());
+        Assertions.assertEquals(Arrays.asList("chinese", "english"), new ArrayList<>(greetingArchive.getTemplateMap().keySet()));
+        Assertions.assertSame(english, greetingArchive.getTemplateMap().get("english"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> greetingArchive.getTemplateList().clear());
+    }
+
+    @DisplayName("冻结之后通过写时复制修改：freezeTest")
+    @Test
+    public void freezeTest() {
+        beanContainer.freeze();
+        Assertions.assertTrue(beanContainer.isFrozen());
+        Set<Object> beans = beanContainer.getBeans();
+        Assertions.assertSame(beans, beanContainer.getBeans());
+        Assertions.assertThrows(UnsupportedOperationException.class, beans::clear);
+
+        GreetingService anotherService = name -> "hi " + name;
+        beanContainer.addBean(anotherService.getClass(), anotherService);
+        try {
+            Assertions.assertSame(anotherService, beanContainer.getBean(anotherService.getClass()));
+            Assertions.assertTrue(beanContainer.getClasses().contains(anotherService.getClass()));
+        } finally {
+            beanContainer.removeBean(anotherService.getClass());
+        }
+        Assertions.assertNull(beanContainer.getBean(anotherService.getClass()));
+        Assertions.assertEquals(beans.size(), beanContainer.size());
+    }
+
+    @DisplayName("同一个order的处理器只保留一个，并且按照order执行：beanPostProcessorOrderTest")
+    @Test
+    public void beanPostProcessorOrderTest() {
+        List<String> calls = new ArrayList<>();
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.LIFECYCLE_ORDER, (clazz, bean) -> {
+            calls.add("lifecycle");
+            return bean;
+        });
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.AOP_ORDER, (clazz, bean) -> {
+            calls.add("replaced aop");
+            return bean;
+        });
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.AOP_ORDER, (clazz, bean) -> {
+            calls.add("aop");
+            return bean;
+        });
+        beanContainer.getBean(GreetingHistory.class);
+        Assertions.assertEquals(Arrays.asList("aop", "lifecycle"), calls);
+    }
+
+    @DisplayName("先doIoC再doAop时，延迟创建的代理对象依然会被注入：lazyProxyInjectedTest")
+    @Test
+    public void lazyProxyInjectedTest() {
+        beanContainer.reset();
+        beanContainer.loadBeans("org.myframework.fixture.aop");
+        new DependencyInjector().doIoC();
+        new DependencyInjector().doIoC();
+        new AspectWeaver().doAop();
+
+        AuditedService auditedService = (AuditedService) beanContainer.getBean(AuditedService.class);
+        Assertions.assertNotSame(AuditedService.class, auditedService.getClass());
+        Assertions.assertNotNull(auditedService.getAuditLog());
+        Assertions.assertEquals("audited login", auditedService.audit("login"));
+        Assertions.assertEquals(Collections.singletonList("login"), auditedService.getAuditLog().getActions());
+    }
+}
@@ -0,0 +1,17 @@
+package org.myframework.core;
+
+/**
+ * 其他包中的测试通过这个类清空容器，BeanContainer.reset只对同一个包可见
+ */
+public final class BeanContainerTestSupport {
+
+    private BeanContainerTestSupport() {
+    }
+
+    /**
+     * 清空容器，回到loadBeans之前的状态
+     */
+    public static void reset() {
+        BeanContainer.getInstance().reset();
+    }
+}
@@ -0,0 +1,56 @@
+package org.myframework.core.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.aop.annotation.Aspect;
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.Service;
+import org.myframework.fixture.aop.AuditAspect;
+import org.myframework.fixture.scan.ScannedService;
+import org.myframework.util.ClassUtil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+
+public class ComponentIndexTest {
+
+    @DisplayName("读取编译期生成的组件索引：loadComponentIndexTest")
+    @Test
+    public void loadComponentIndexTest() {
+        // 测试代码编译时，注解处理器已经为fixture生成了索引
+        ComponentIndex componentIndex = ComponentIndex.load(ClassUtil.getClassLoader());
+        Assertions.assertNotNull(componentIndex);
+        Assertions.assertEquals(Collections.singleton(ScannedService.class.getName()),
+                componentIndex.getCandidateTypes("org.myframework.fixture.scan", Collections.singleton(Service.class.getName())));
+        Assertions.assertTrue(componentIndex.getCandidateTypes("org.myframework.fixture.scan",
+                Collections.singleton(Component.class.getName())).isEmpty());
+    }
+
+    @DisplayName("@Aspect的pointcut表达式写入索引并读回：readWriteIndexTest")
+    @Test
+    public void readWriteIndexTest() throws IOException {
+        String line = "org.example.LogAspect\torg.myframework.aop.annotation.Aspect\twithin(org.example.*)\n";
+        List<ComponentIndex.Entry> entries = ComponentIndex.read(new StringReader(line));
+        Assertions.assertEquals(1, entries.size());
+        Assertions.assertEquals(Collections.singleton("org.myframework.aop.annotation.Aspect"), entries.get(0).getStereotypes());
+        Assertions.assertEquals("within(org.example.*)", entries.get(0).getPointcut());
+
+        StringWriter writer = new StringWriter();
+        ComponentIndex.write(entries, writer);
+        Assertions.assertTrue(writer.toString().endsWith(line));
+    }
+
+    @DisplayName("注解处理器记录了@Aspect的pointcut表达式：aspectPointcutIndexedTest")
+    @Test
+    public void aspectPointcutIndexedTest() {
+        ComponentIndex componentIndex = ComponentIndex.load(ClassUtil.getClassLoader());
+        Assertions.assertNotNull(componentIndex);
+        Assertions.assertEquals(AuditAspect.class.getAnnotation(Aspect.class).pointcut(),
+                componentIndex.getPointcut(AuditAspect.class.getName()));
+        Assertions.assertNull(componentIndex.getPointcut(ScannedService.class.getName()));
+    }
+}
@@ -0,0 +1,114 @@
+package org.myframework.core.lifecycle;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.core.BeanContainer;
+import org.myframework.core.BeanContainerTestSupport;
+import org.myframework.core.scope.RequestContext;
+import org.myframework.fixture.aop.AuditedService;
+import org.myframework.fixture.bean.GreetingController;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+import org.myframework.fixture.lifecycle.CacheWarmer;
+import org.myframework.fixture.lifecycle.PrototypeTask;
+import org.myframework.fixture.lifecycle.RequestHandler;
+import org.myframework.fixture.lifecycle.ShutdownResource;
+import org.myframework.inject.annotation.DependencyInjector;
+
+import java.util.List;
+
+public class BeanLifecycleTest {
+
+    @BeforeEach
+    @AfterEach
+    void resetContainer() {
+        BeanContainerTestSupport.reset();
+    }
+
+    @DisplayName("按依赖顺序初始化并预热：startTest")
+    @Test
+    public void startTest() {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.bean");
+        new DependencyInjector().doIoC();
+
+        BeanLifecycle beanLifecycle = new BeanLifecycle();
+        beanLifecycle.start();
+        Assertions.assertTrue(beanLifecycle.isReady());
+        GreetingController controller = (GreetingController) beanContainer.getBean(GreetingController.class);
+        Assertions.assertTrue(controller.isServiceInitializedFirst());
+        Assertions.assertEquals(100, controller.getWarmupCount());
+    }
+
+    @DisplayName("重复start只初始化一次：startTwiceTest")
+    @Test
+    public void startTwiceTest() {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.bean");
+        new DependencyInjector().doIoC();
+
+        BeanLifecycle beanLifecycle = new BeanLifecycle();
+        beanLifecycle.start();
+        beanLifecycle.start();
+        GreetingServiceImpl service = (GreetingServiceImpl) beanContainer.getBean(GreetingServiceImpl.class);
+        Assertions.assertEquals(1, service.getInitCount());
+    }
+
+    @DisplayName("多个BeanLifecycle都start后，延迟bean只初始化一次：lazyBeanInitializedOnceTest")
+    @Test
+    public void lazyBeanInitializedOnceTest() {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.aop");
+        new DependencyInjector().doIoC();
+
+        new BeanLifecycle().start();
+        new BeanLifecycle().start();
+        AuditedService service = (AuditedService) beanContainer.getBean(AuditedService.class);
+        Assertions.assertEquals(1, service.getInitCount());
+    }
+
+    @DisplayName("初始化方法中创建的延迟bean只初始化一次：lazyBeanCreatedDuringInitializeTest")
+    @Test
+    public void lazyBeanCreatedDuringInitializeTest() {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.lifecycle");
+        new DependencyInjector().doIoC();
+
+        new BeanLifecycle().start();
+        CacheWarmer cacheWarmer = (CacheWarmer) beanContainer.getBean(CacheWarmer.class);
+        Assertions.assertNotNull(cacheWarmer.getLazyCache());
+        Assertions.assertEquals(1, cacheWarmer.getLazyCache().getInitCount());
+    }
+
+    @DisplayName("销毁时跳过非单例bean，不会创建新的实例：stopSkipsScopedBeansTest")
+    @Test
+    public void stopSkipsScopedBeansTest() {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.lifecycle");
+        new DependencyInjector().doIoC();
+        BeanLifecycle beanLifecycle = new BeanLifecycle();
+        beanLifecycle.start();
+
+        //非单例bean注入时登记了依赖关系
+        beanContainer.getBean(PrototypeTask.class);
+        RequestContext.begin();
+        try {
+            beanContainer.getBean(RequestHandler.class);
+        } finally {
+            RequestContext.end();
+        }
+        Assertions.assertTrue(beanContainer.getDependents(ShutdownResource.class)
+                .containsAll(List.of(PrototypeTask.class, RequestHandler.class)));
+        int created = PrototypeTask.CREATED.get();
+        int destroyed = PrototypeTask.DESTROYED.get();
+
+        beanLifecycle.stop();
+        Assertions.assertEquals(created, PrototypeTask.CREATED.get());
+        Assertions.assertEquals(destroyed, PrototypeTask.DESTROYED.get());
+        //请求之外无法获取请求作用域的bean，其他bean的销毁不受影响
+        ShutdownResource shutdownResource = (ShutdownResource) beanContainer.getBean(ShutdownResource.class);
+        Assertions.assertEquals(1, shutdownResource.getDestroyCount());
+    }
+}
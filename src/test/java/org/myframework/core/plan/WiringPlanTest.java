@@ -0,0 +1,203 @@
+package org.myframework.core.plan;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.myframework.aop.AspectWeaver;
+import org.myframework.core.BeanContainer;
+import org.myframework.core.BeanContainerTestSupport;
+import org.myframework.fixture.aop.AuditedService;
+import org.myframework.fixture.bean.GreetingArchive;
+import org.myframework.fixture.bean.GreetingController;
+import org.myframework.fixture.bean.GreetingHistory;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+import org.myframework.fixture.bean.GreetingTemplate;
+import org.myframework.inject.annotation.DependencyInjector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+public class WiringPlanTest {
+
+    @BeforeEach
+    @AfterEach
+    void resetContainer() {
+        BeanContainerTestSupport.reset();
+    }
+
+    @DisplayName("生成、读写并校验装配计划：generateAndLoadTest")
+    @Test
+    public void generateAndLoadTest(@TempDir Path outputDirectory) throws Exception {
+        WiringPlan wiringPlan = new WiringPlanGenerator().generate("org.myframework.fixture.bean");
+        List<String> classNames = new ArrayList<>();
+        wiringPlan.getBeanPlans().forEach(beanPlan -> classNames.add(beanPlan.getClassName()));
+        //被依赖的bean排在前面
+        Assertions.assertTrue(classNames.indexOf(GreetingServiceImpl.class.getName()) < classNames.indexOf(GreetingController.class.getName()));
+
+        WiringPlan.BeanPlan controllerPlan = wiringPlan.getBeanPlan(GreetingController.class);
+        Assertions.assertEquals(1, controllerPlan.getFieldPlans().size());
+        Assertions.assertEquals("greetingService", controllerPlan.getFieldPlans().get(0).getFieldName());
+        Assertions.assertEquals(GreetingServiceImpl.class.getName(), controllerPlan.getFieldPlans().get(0).getBeanClassName());
+
+        //ObjectProvider和集合记录注入的方式和元素类型
+        Map<String, WiringPlan.InjectionKind> archiveKinds = new LinkedHashMap<>();
+        wiringPlan.getBeanPlan(GreetingArchive.class).getFieldPlans()
+                .forEach(fieldPlan -> archiveKinds.put(fieldPlan.getFieldName(), fieldPlan.getKind()));
+        Assertions.assertEquals(WiringPlan.InjectionKind.PROVIDER, archiveKinds.get("greetingHistory"));
+        Assertions.assertEquals(WiringPlan.InjectionKind.BEAN, archiveKinds.get("defaultTemplate"));
+        Assertions.assertEquals(WiringPlan.InjectionKind.LIST, archiveKinds.get("templateList"));
+        Assertions.assertEquals(WiringPlan.InjectionKind.MAP, archiveKinds.get("templateMap"));
+        Assertions.assertEquals(WiringPlan.InjectionKind.ARRAY, archiveKinds.get("templates"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wiringPlan.write(out);
+        WiringPlan readPlan = WiringPlan.read(new ByteArrayInputStream(out.toByteArray()));
+        Assertions.assertEquals(classNames.size(), readPlan.getBeanPlans().size());
+        Assertions.assertEquals("org.myframework.fixture.bean", readPlan.getPackageName());
+        Assertions.assertEquals(WiringPlan.InjectionKind.MAP, readPlan.getBeanPlan(GreetingArchive.class).getFieldPlans().stream()
+                .filter(fieldPlan -> fieldPlan.getFieldName().equals("templateMap")).findFirst().get().getKind());
+        Assertions.assertEquals(GreetingServiceImpl.class.getName(),
+                readPlan.getBeanPlan(GreetingController.class).getFieldPlans().get(0).getBeanClassName());
+
+        Path planFile = outputDirectory.resolve(WiringPlan.PLAN_LOCATION);
+        Files.createDirectories(planFile.getParent());
+        Files.write(planFile, out.toByteArray());
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()}, getClass().getClassLoader())) {
+            Assertions.assertNotNull(WiringPlan.load(classLoader, "org.myframework.fixture.bean"));
+            //计划只对生成时的包有效，父包和子包都不使用
+            Assertions.assertNull(WiringPlan.load(classLoader, "org.myframework.fixture"));
+            Assertions.assertNull(WiringPlan.load(classLoader, "org.myframework.fixture.bean.sub"));
+        }
+        //没有组件索引时无法发现新增的bean，不使用计划
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()}, null)) {
+            Assertions.assertNull(WiringPlan.load(classLoader, "org.myframework.fixture.bean"));
+        }
+
+        //class文件的校验和不一致时计划作废
+        WiringPlan stalePlan = new WiringPlan("org.myframework.fixture.bean", WiringPlan.indexChecksum(getClass().getClassLoader()));
+        stalePlan.addBeanPlan(new WiringPlan.BeanPlan(GreetingController.class.getName(), 42));
+        try (OutputStream planOut = Files.newOutputStream(planFile)) {
+            stalePlan.write(planOut);
+        }
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()}, getClass().getClassLoader())) {
+            Assertions.assertNull(WiringPlan.load(classLoader, "org.myframework.fixture.bean"));
+        }
+    }
+
+    @DisplayName("按照装配计划启动时的注入结果和发现过程一致：replayMatchesDiscoveryTest")
+    @Test
+    public void replayMatchesDiscoveryTest(@TempDir Path outputDirectory) throws Exception {
+        Map<String, Object> discovered = boot("org.myframework.fixture.bean", null, WiringPlanTest::describeBeanWiring);
+        Map<String, Object> replayed = boot("org.myframework.fixture.bean", outputDirectory, WiringPlanTest::describeBeanWiring);
+        Assertions.assertEquals(discovered, replayed);
+    }
+
+    @DisplayName("按照装配计划创建的代理和发现过程一致：replayProxyMatchesDiscoveryTest")
+    @Test
+    public void replayProxyMatchesDiscoveryTest(@TempDir Path outputDirectory) throws Exception {
+        Map<String, Object> discovered = boot("org.myframework.fixture.aop", null, WiringPlanTest::describeProxy);
+        Map<String, Object> replayed = boot("org.myframework.fixture.aop", outputDirectory, WiringPlanTest::describeProxy);
+        Assertions.assertEquals(discovered, replayed);
+    }
+
+    /**
+     * 启动容器并描述装配的结果
+     * @param outputDirectory 不为null时先生成装配计划写入这个目录，再从包含这个目录的类加载器启动
+     */
+    private static Map<String, Object> boot(String packageName, Path outputDirectory,
+                                            Function<BeanContainer, Map<String, Object>> describer) throws Exception {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        if (outputDirectory == null) {
+            beanContainer.loadBeans(packageName);
+            Assertions.assertNull(beanContainer.getWiringPlan());
+            new AspectWeaver().doAop();
+            new DependencyInjector().doIoC();
+            Map<String, Object> description = describer.apply(beanContainer);
+            BeanContainerTestSupport.reset();
+            return description;
+        }
+        WiringPlan wiringPlan = new WiringPlanGenerator().generate(packageName);
+        BeanContainerTestSupport.reset();
+        Path planFile = outputDirectory.resolve(WiringPlan.PLAN_LOCATION);
+        Files.createDirectories(planFile.getParent());
+        try (OutputStream out = Files.newOutputStream(planFile)) {
+            wiringPlan.write(out);
+        }
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()}, original)) {
+            thread.setContextClassLoader(classLoader);
+            beanContainer.loadBeans(packageName);
+            Assertions.assertNotNull(beanContainer.getWiringPlan());
+            new AspectWeaver().doAop();
+            new DependencyInjector().doIoC();
+            Map<String, Object> description = describer.apply(beanContainer);
+            BeanContainerTestSupport.reset();
+            return description;
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    private static Map<String, Object> describeBeanWiring(BeanContainer beanContainer) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        Assertions.assertNotNull(describePlan(beanContainer, GreetingController.class), "plan of GreetingController");
+        GreetingController controller = (GreetingController) beanContainer.getBean(GreetingController.class);
+        description.put("controller.greet", controller.greet("plan"));
+        GreetingArchive archive = (GreetingArchive) beanContainer.getBean(GreetingArchive.class);
+        description.put("archive.greetingService", archive.getGreetingService() == beanContainer.getBean(GreetingServiceImpl.class));
+        description.put("archive.defaultTemplate", archive.getDefaultTemplate().getClass());
+        description.put("archive.templateList", classesOf(archive.getTemplateList()));
+        description.put("archive.templates", classesOf(List.of(archive.getTemplates())));
+        List<Object> templateMap = new ArrayList<>();
+        archive.getTemplateMap().forEach((name, template) -> templateMap.add(name + "=" + template.getClass().getName()));
+        description.put("archive.templateMap", templateMap);
+        description.put("archive.greetingHistory", archive.getGreetingHistory().get() == beanContainer.getBean(GreetingHistory.class));
+        description.put("dependents.GreetingServiceImpl", new TreeSet<>(namesOf(beanContainer.getDependents(GreetingServiceImpl.class))));
+        return description;
+    }
+
+    private static Map<String, Object> describeProxy(BeanContainer beanContainer) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        AuditedService auditedService = (AuditedService) beanContainer.getBean(AuditedService.class);
+        Assertions.assertNotNull(describePlan(beanContainer, AuditedService.class), "plan of AuditedService");
+        description.put("proxied", auditedService.getClass() != AuditedService.class);
+        description.put("audit", auditedService.audit("login"));
+        description.put("auditLog", auditedService.getAuditLog().getActions());
+        description.put("initCount", auditedService.getInitCount());
+        return description;
+    }
+
+    private static Object describePlan(BeanContainer beanContainer, Class<?> clazz) {
+        WiringPlan wiringPlan = beanContainer.getWiringPlan();
+        //发现过程中没有计划，返回一个非空的占位
+        return wiringPlan == null ? "discovery" : wiringPlan.getBeanPlan(clazz);
+    }
+
+    private static List<String> classesOf(List<? extends GreetingTemplate> templates) {
+        List<String> classNames = new ArrayList<>();
+        templates.forEach(template -> classNames.add(template.getClass().getName()));
+        return classNames;
+    }
+
+    private static List<String> namesOf(Collection<Class<?>> classes) {
+        List<String> names = new ArrayList<>();
+        classes.forEach(clazz -> names.add(clazz.getName()));
+        return names;
+    }
+}
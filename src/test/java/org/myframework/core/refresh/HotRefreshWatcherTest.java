@@ -0,0 +1,166 @@
+package org.myframework.core.refresh;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.myframework.aop.AspectWeaver;
+import org.myframework.aop.aspect.DefaultAspect;
+import org.myframework.core.BeanContainer;
+import org.myframework.core.BeanContainerTestSupport;
+import org.myframework.fixture.aop.AuditAspect;
+import org.myframework.fixture.aop.AuditedService;
+import org.myframework.fixture.bean.EnglishGreetingTemplate;
+import org.myframework.fixture.bean.GreetingController;
+import org.myframework.fixture.bean.GreetingService;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+import org.myframework.fixture.bean.GreetingTemplate;
+import org.myframework.inject.annotation.DependencyInjector;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class HotRefreshWatcherTest {
+
+    @BeforeEach
+    @AfterEach
+    void resetContainer() {
+        BeanContainerTestSupport.reset();
+    }
+
+    @DisplayName("只替换变化的bean并重新注入依赖方：refreshChangedClassTest")
+    @Test
+    public void refreshChangedClassTest(@TempDir Path root) throws Exception {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.bean");
+        new DependencyInjector().doIoC();
+
+        String classFile = GreetingServiceImpl.class.getName().replace('.', '/') + ".class";
+        Path changedFile = root.resolve(classFile);
+        Files.createDirectories(changedFile.getParent());
+        Files.copy(Paths.get(GreetingServiceImpl.class.getClassLoader().getResource(classFile).toURI()), changedFile);
+
+        HotRefreshWatcher watcher = new HotRefreshWatcher("org.myframework.fixture.bean");
+        Object controller = beanContainer.getBean(GreetingController.class);
+        watcher.refresh(root, Collections.singleton(changedFile));
+        try {
+            Class<?> newClass = beanContainer.getClassesBySuper(GreetingService.class).iterator().next();
+            Assertions.assertNotSame(GreetingServiceImpl.class, newClass);
+            Assertions.assertEquals(GreetingServiceImpl.class.getName(), newClass.getName());
+            Assertions.assertFalse(beanContainer.containsBean(GreetingServiceImpl.class));
+            //依赖方没有被重新创建，只是重新注入
+            Assertions.assertSame(controller, beanContainer.getBean(GreetingController.class));
+            Field field = GreetingController.class.getDeclaredField("greetingService");
+            field.setAccessible(true);
+            Assertions.assertSame(beanContainer.getBean(newClass), field.get(controller));
+        } finally {
+            Class<?> newClass = beanContainer.getClassesBySuper(GreetingService.class).iterator().next();
+            watcher.refreshClass(newClass, GreetingServiceImpl.class);
+        }
+        Assertions.assertEquals(Collections.singleton(GreetingServiceImpl.class), beanContainer.getClassesBySuper(GreetingService.class));
+    }
+
+    @DisplayName("切面变化之后重新织入粗筛匹配的bean：reweaveChangedAspectTest")
+    @Test
+    public void reweaveChangedAspectTest(@TempDir Path root) throws Exception {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.aop");
+        new AspectWeaver().doAop();
+        new DependencyInjector().doIoC();
+        AuditedService oldService = (AuditedService) beanContainer.getBean(AuditedService.class);
+        Assertions.assertEquals("audited first", oldService.audit("first"));
+
+        //切面的通知逻辑发生了变化，重新编译到监听的目录中
+        Path sourceFile = root.resolve("src/AuditAspect.java");
+        Files.createDirectories(sourceFile.getParent());
+        String source = new String(Files.readAllBytes(Paths.get("src/test/java/org/myframework/fixture/aop/AuditAspect.java")), StandardCharsets.UTF_8);
+        Files.write(sourceFile, source.replace("\"audited \"", "\"re-audited \"").getBytes(StandardCharsets.UTF_8));
+        Path classRoot = root.resolve("classes");
+        Files.createDirectories(classRoot);
+        String classPath = codeSource(DefaultAspect.class) + File.pathSeparator + codeSource(AuditAspect.class);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assertions.assertEquals(0, compiler.run(null, null, null, "-encoding", "UTF-8", "-classpath", classPath,
+                "-d", classRoot.toString(), sourceFile.toString()));
+        Path changedFile = classRoot.resolve(AuditAspect.class.getName().replace('.', '/') + ".class");
+
+        new HotRefreshWatcher("org.myframework.fixture.aop").refresh(classRoot, Collections.singleton(changedFile));
+        Class<?> newAspectClass = beanContainer.getClassesBySuper(DefaultAspect.class).iterator().next();
+        Assertions.assertNotSame(AuditAspect.class, newAspectClass);
+        //匹配了切面的bean被重新创建，使用新版本的切面
+        AuditedService newService = (AuditedService) beanContainer.getBean(AuditedService.class);
+        Assertions.assertNotSame(oldService, newService);
+        Assertions.assertEquals("re-audited second", newService.audit("second"));
+        Assertions.assertSame(beanContainer.getBean(AuditedService.class).getClass(), newService.getClass());
+        Assertions.assertEquals(Arrays.asList("first", "second"), newService.getAuditLog().getActions());
+    }
+
+    @DisplayName("监听新建的目录并合并一次编译中的多个变化：watchChangedClassFilesTest")
+    @Test
+    public void watchChangedClassFilesTest(@TempDir Path root) throws Exception {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeans("org.myframework.fixture.bean");
+        new DependencyInjector().doIoC();
+        Files.createDirectories(root.resolve("org/myframework/fixture"));
+
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        BlockingQueue<Collection<Path>> refreshedFiles = new LinkedBlockingQueue<>();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{root.toUri().toURL()}, originalClassLoader)) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            HotRefreshWatcher watcher = new HotRefreshWatcher("org.myframework.fixture") {
+                @Override
+                public synchronized void refresh(Path refreshedRoot, Collection<Path> changedFiles) {
+                    super.refresh(refreshedRoot, changedFiles);
+                    if (refreshedRoot.equals(root)) {
+                        refreshedFiles.add(new HashSet<>(changedFiles));
+                    }
+                }
+            };
+            try {
+                watcher.start();
+                //bean目录是启动之后新建的，其中的class文件需要在注册目录时被发现
+                Path packageDirectory = Files.createDirectories(root.resolve("org/myframework/fixture/bean"));
+                Set<Path> changedFiles = new HashSet<>();
+                for (Class<?> clazz : Arrays.asList(GreetingServiceImpl.class, EnglishGreetingTemplate.class)) {
+                    String classFile = clazz.getName().replace('.', '/') + ".class";
+                    Path changedFile = packageDirectory.resolve(clazz.getSimpleName() + ".class");
+                    Files.copy(Paths.get(originalClassLoader.getResource(classFile).toURI()), changedFile);
+                    changedFiles.add(changedFile);
+                }
+                Assertions.assertEquals(changedFiles, refreshedFiles.poll(10, TimeUnit.SECONDS));
+            } finally {
+                watcher.close();
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
+        Class<?> newServiceClass = beanContainer.getClassesBySuper(GreetingService.class).iterator().next();
+        Assertions.assertNotSame(GreetingServiceImpl.class, newServiceClass);
+        Assertions.assertFalse(beanContainer.containsBean(EnglishGreetingTemplate.class));
+        boolean templateRefreshed = false;
+        for (Class<?> templateClass : beanContainer.getClassesBySuper(GreetingTemplate.class)) {
+            templateRefreshed |= templateClass.getClassLoader() instanceof RefreshClassLoader;
+        }
+        Assertions.assertTrue(templateRefreshed);
+        Field field = GreetingController.class.getDeclaredField("greetingService");
+        field.setAccessible(true);
+        Assertions.assertSame(beanContainer.getBean(newServiceClass), field.get(beanContainer.getBean(GreetingController.class)));
+    }
+
+    private static String codeSource(Class<?> clazz) throws Exception {
+        return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+}
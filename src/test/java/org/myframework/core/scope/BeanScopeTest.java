@@ -0,0 +1,96 @@
+package org.myframework.core.scope;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BeanScopeTest {
+
+    @DisplayName("请求作用域通过代理访问当前请求的实例：requestScopeTest")
+    @Test
+    public void requestScopeTest() {
+        RequestScope scope = new RequestScope(GreetingServiceImpl.class, GreetingServiceImpl::new);
+        GreetingServiceImpl proxy = (GreetingServiceImpl) scope.getInjectable();
+        Assertions.assertSame(proxy, scope.getInjectable());
+        Assertions.assertThrows(RuntimeException.class, () -> proxy.greet("tom"));
+
+        RequestContext.begin();
+        try {
+            Object bean = scope.get();
+            Assertions.assertSame(bean, scope.get());
+            Assertions.assertNotSame(proxy, bean);
+            Assertions.assertEquals("hello tom", proxy.greet("tom"));
+        } finally {
+            RequestContext.end();
+        }
+        Assertions.assertFalse(RequestContext.isActive());
+    }
+
+    @DisplayName("对象池作用域在请求结束时归还实例：pooledScopeTest")
+    @Test
+    public void pooledScopeTest() {
+        AtomicInteger created = new AtomicInteger();
+        PooledScope scope = new PooledScope(GreetingServiceImpl.class, () -> {
+            created.incrementAndGet();
+            return new GreetingServiceImpl();
+        }, 1);
+
+        Object firstBean;
+        RequestContext.begin();
+        try {
+            firstBean = scope.get();
+        } finally {
+            RequestContext.end();
+        }
+        RequestContext.begin();
+        try {
+            Assertions.assertSame(firstBean, scope.get());
+        } finally {
+            RequestContext.end();
+        }
+        Assertions.assertEquals(1, created.get());
+    }
+
+    @DisplayName("有界对象池：boundedObjectPoolTest")
+    @Test
+    public void boundedObjectPoolTest() {
+        BoundedObjectPool<String> pool = new BoundedObjectPool<>(2);
+        Assertions.assertNull(pool.borrow());
+        Assertions.assertTrue(pool.release("a"));
+        Assertions.assertTrue(pool.release("b"));
+        Assertions.assertFalse(pool.release("c"));
+        Assertions.assertNotNull(pool.borrow());
+        Assertions.assertNotNull(pool.borrow());
+        Assertions.assertNull(pool.borrow());
+    }
+
+    public static class ConstructorInjectedBean {
+        private static final AtomicInteger CONSTRUCTED = new AtomicInteger();
+        private final String name;
+
+        public ConstructorInjectedBean(String name) {
+            CONSTRUCTED.incrementAndGet();
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    @DisplayName("作用域代理不调用bean的构造器：scopedProxyWithoutConstructorTest")
+    @Test
+    public void scopedProxyWithoutConstructorTest() {
+        ThreadScope scope = new ThreadScope(ConstructorInjectedBean.class, () -> new ConstructorInjectedBean("tom"));
+        int constructed = ConstructorInjectedBean.CONSTRUCTED.get();
+        ConstructorInjectedBean proxy = (ConstructorInjectedBean) scope.getInjectable();
+        Assertions.assertEquals(constructed, ConstructorInjectedBean.CONSTRUCTED.get());
+
+        Assertions.assertEquals("tom", proxy.getName());
+        Assertions.assertSame(scope.get(), scope.get());
+        Assertions.assertEquals(constructed + 1, ConstructorInjectedBean.CONSTRUCTED.get());
+    }
+}
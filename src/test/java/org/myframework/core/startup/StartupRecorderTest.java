@@ -0,0 +1,40 @@
+package org.myframework.core.startup;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StartupRecorderTest {
+
+    @DisplayName("记录启动阶段并通知监听器：recordPhaseTest")
+    @Test
+    public void recordPhaseTest() {
+        List<String> endedPhases = new ArrayList<>();
+        StartupListener listener = new StartupListener() {
+            @Override
+            public void onPhaseEnd(StartupReport.Phase phase) {
+                endedPhases.add(phase.getName());
+            }
+        };
+        StartupRecorder.addListener(listener);
+        try (StartupStep step = StartupRecorder.start("test-outer")) {
+            try (StartupStep innerStep = StartupRecorder.start("test-inner")) {
+                innerStep.count("items", 3);
+            }
+            StartupRecorder.recordBean(StartupRecorderTest.class, 1000);
+            step.count("beans", 1);
+        } finally {
+            StartupRecorder.removeListener(listener);
+        }
+
+        Assertions.assertEquals(List.of("test-inner", "test-outer"), endedPhases);
+        StartupReport report = StartupRecorder.getReport();
+        Assertions.assertEquals(3L, report.getPhase("test-inner").getCounters().get("items"));
+        Assertions.assertTrue(report.getPhase("test-outer").getDurationNanos() >= report.getPhase("test-inner").getDurationNanos());
+        Assertions.assertTrue(report.getBeanNanos().containsKey(StartupRecorderTest.class));
+        Assertions.assertTrue(report.toString().contains("test-outer"));
+    }
+}
@@ -0,0 +1,17 @@
+package org.myframework.fixture.aop;
+
+import org.myframework.aop.annotation.Aspect;
+import org.myframework.aop.annotation.Order;
+import org.myframework.aop.aspect.DefaultAspect;
+
+import java.lang.reflect.Method;
+
+@Aspect(pointcut = "execution(* org.myframework.fixture.aop.AuditedService.audit(..))")
+@Order(0)
+public class AuditAspect extends DefaultAspect {
+
+    @Override
+    public Object afterReturning(Class<?> targetClass, Method method, Object[] args, Object returnValue) {
+        return "audited " + returnValue;
+    }
+}
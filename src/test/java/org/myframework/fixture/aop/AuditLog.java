@@ -0,0 +1,19 @@
+package org.myframework.fixture.aop;
+
+import org.myframework.core.annotation.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@Component
+public class AuditLog {
+    private final List<String> actions = new CopyOnWriteArrayList<>();
+
+    public void record(String action) {
+        actions.add(action);
+    }
+
+    public List<String> getActions() {
+        return actions;
+    }
+}
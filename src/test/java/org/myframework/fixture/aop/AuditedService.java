@@ -0,0 +1,35 @@
+package org.myframework.fixture.aop;
+
+import org.myframework.core.annotation.Lazy;
+import org.myframework.core.annotation.PostConstruct;
+import org.myframework.core.annotation.Service;
+import org.myframework.inject.annotation.Autowired;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Lazy
+@Service
+public class AuditedService {
+    @Autowired
+    private AuditLog auditLog;
+
+    private final AtomicInteger initCount = new AtomicInteger();
+
+    @PostConstruct
+    private void init() {
+        initCount.incrementAndGet();
+    }
+
+    public String audit(String action) {
+        auditLog.record(action);
+        return action;
+    }
+
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    public int getInitCount() {
+        return initCount.get();
+    }
+}
@@ -0,0 +1,15 @@
+package org.myframework.fixture.bean;
+
+import org.myframework.aop.annotation.Order;
+import org.myframework.core.annotation.Repository;
+import org.myframework.inject.annotation.Qualifier;
+
+@Order(1)
+@Qualifier("english")
+@Repository
+public class EnglishGreetingTemplate implements GreetingTemplate {
+    @Override
+    public String format(String name) {
+        return "hello " + name;
+    }
+}
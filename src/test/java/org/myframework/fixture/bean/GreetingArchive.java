@@ -0,0 +1,60 @@
+package org.myframework.fixture.bean;
+
+import org.myframework.core.annotation.Repository;
+import org.myframework.inject.annotation.Autowired;
+import org.myframework.inject.annotation.ObjectProvider;
+import org.myframework.inject.annotation.Qualifier;
+
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class GreetingArchive {
+    private final GreetingService greetingService;
+    private final GreetingController greetingController;
+    @Autowired
+    private ObjectProvider<GreetingHistory> greetingHistory;
+    @Autowired
+    @Qualifier("english")
+    private GreetingTemplate defaultTemplate;
+    @Autowired
+    private List<GreetingTemplate> templateList;
+    @Autowired
+    private Map<String, GreetingTemplate> templateMap;
+    @Autowired
+    private GreetingTemplate[] templates;
+
+    @Autowired
+    public GreetingArchive(GreetingService greetingService, GreetingController greetingController) {
+        this.greetingService = greetingService;
+        this.greetingController = greetingController;
+    }
+
+    public GreetingService getGreetingService() {
+        return greetingService;
+    }
+
+    public GreetingController getGreetingController() {
+        return greetingController;
+    }
+
+    public ObjectProvider<GreetingHistory> getGreetingHistory() {
+        return greetingHistory;
+    }
+
+    public GreetingTemplate getDefaultTemplate() {
+        return defaultTemplate;
+    }
+
+    public List<GreetingTemplate> getTemplateList() {
+        return templateList;
+    }
+
+    public Map<String, GreetingTemplate> getTemplateMap() {
+        return templateMap;
+    }
+
+    public GreetingTemplate[] getTemplates() {
+        return templates;
+    }
+}
@@ -0,0 +1,40 @@
+package org.myframework.fixture.bean;
+
+import org.myframework.core.annotation.Controller;
+import org.myframework.core.annotation.PostConstruct;
+import org.myframework.core.annotation.Warmup;
+import org.myframework.inject.annotation.Autowired;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Controller
+public class GreetingController {
+    @Autowired
+    private GreetingService greetingService;
+
+    private volatile boolean serviceInitializedFirst;
+    private final AtomicInteger warmupCount = new AtomicInteger();
+
+    @PostConstruct
+    private void init() {
+        serviceInitializedFirst = ((GreetingServiceImpl) greetingService).isInitialized();
+    }
+
+    @Warmup(100)
+    private void warmup() {
+        greet("warmup");
+        warmupCount.incrementAndGet();
+    }
+
+    public String greet(String name) {
+        return greetingService.greet(name);
+    }
+
+    public boolean isServiceInitializedFirst() {
+        return serviceInitializedFirst;
+    }
+
+    public int getWarmupCount() {
+        return warmupCount.get();
+    }
+}
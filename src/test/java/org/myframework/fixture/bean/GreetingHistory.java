@@ -0,0 +1,27 @@
+package org.myframework.fixture.bean;
+
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.Lazy;
+import org.myframework.inject.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Lazy
+@Component
+public class GreetingHistory {
+    @Autowired
+    private GreetingController greetingController;
+
+    private final List<String> history = new ArrayList<>();
+
+    public String greetAndRecord(String name) {
+        String greeting = greetingController.greet(name);
+        history.add(greeting);
+        return greeting;
+    }
+
+    public List<String> getHistory() {
+        return history;
+    }
+}
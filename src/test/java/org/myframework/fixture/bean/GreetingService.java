@@ -0,0 +1,5 @@
+package org.myframework.fixture.bean;
+
+public interface GreetingService {
+    String greet(String name);
+}
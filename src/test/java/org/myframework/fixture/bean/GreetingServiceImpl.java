@@ -0,0 +1,31 @@
+package org.myframework.fixture.bean;
+
+import org.myframework.core.annotation.PostConstruct;
+import org.myframework.core.annotation.Service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class GreetingServiceImpl implements GreetingService {
+    private volatile boolean initialized;
+    private final AtomicInteger initCount = new AtomicInteger();
+
+    @PostConstruct
+    private void init() {
+        initialized = true;
+        initCount.incrementAndGet();
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    public int getInitCount() {
+        return initCount.get();
+    }
+
+    @Override
+    public String greet(String name) {
+        return "hello " + name;
+    }
+}
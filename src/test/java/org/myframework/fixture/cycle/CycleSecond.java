@@ -0,0 +1,10 @@
+package org.myframework.fixture.cycle;
+
+import org.myframework.core.annotation.Component;
+import org.myframework.inject.annotation.Autowired;
+
+@Component
+public class CycleSecond {
+    @Autowired
+    private CycleFirst cycleFirst;
+}
@@ -0,0 +1,22 @@
+package org.myframework.fixture.lifecycle;
+
+import org.myframework.core.BeanContainer;
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.PostConstruct;
+
+/**
+ * 初始化方法中第一次获取延迟bean
+ */
+@Component
+public class CacheWarmer {
+    private volatile LazyCache lazyCache;
+
+    @PostConstruct
+    private void init() {
+        lazyCache = (LazyCache) BeanContainer.getInstance().getBean(LazyCache.class);
+    }
+
+    public LazyCache getLazyCache() {
+        return lazyCache;
+    }
+}
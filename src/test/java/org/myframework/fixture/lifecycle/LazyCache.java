@@ -0,0 +1,22 @@
+package org.myframework.fixture.lifecycle;
+
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.Lazy;
+import org.myframework.core.annotation.PostConstruct;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Lazy
+@Component
+public class LazyCache {
+    private final AtomicInteger initCount = new AtomicInteger();
+
+    @PostConstruct
+    private void init() {
+        initCount.incrementAndGet();
+    }
+
+    public int getInitCount() {
+        return initCount.get();
+    }
+}
@@ -0,0 +1,34 @@
+package org.myframework.fixture.lifecycle;
+
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.PostConstruct;
+import org.myframework.core.annotation.PreDestroy;
+import org.myframework.core.annotation.Scope;
+import org.myframework.core.annotation.ScopeType;
+import org.myframework.inject.annotation.Autowired;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+@Scope(ScopeType.PROTOTYPE)
+public class PrototypeTask {
+    public static final AtomicInteger CREATED = new AtomicInteger();
+    public static final AtomicInteger DESTROYED = new AtomicInteger();
+
+    @Autowired
+    private ShutdownResource shutdownResource;
+
+    @PostConstruct
+    private void init() {
+        CREATED.incrementAndGet();
+    }
+
+    @PreDestroy
+    private void destroy() {
+        DESTROYED.incrementAndGet();
+    }
+
+    public ShutdownResource getShutdownResource() {
+        return shutdownResource;
+    }
+}
@@ -0,0 +1,17 @@
+package org.myframework.fixture.lifecycle;
+
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.Scope;
+import org.myframework.core.annotation.ScopeType;
+import org.myframework.inject.annotation.Autowired;
+
+@Component
+@Scope(ScopeType.REQUEST)
+public class RequestHandler {
+    @Autowired
+    private ShutdownResource shutdownResource;
+
+    public ShutdownResource getShutdownResource() {
+        return shutdownResource;
+    }
+}
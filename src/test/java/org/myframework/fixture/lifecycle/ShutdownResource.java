@@ -0,0 +1,20 @@
+package org.myframework.fixture.lifecycle;
+
+import org.myframework.core.annotation.Component;
+import org.myframework.core.annotation.PreDestroy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class ShutdownResource {
+    private final AtomicInteger destroyCount = new AtomicInteger();
+
+    @PreDestroy
+    private void close() {
+        destroyCount.incrementAndGet();
+    }
+
+    public int getDestroyCount() {
+        return destroyCount.get();
+    }
+}
@@ -0,0 +1,12 @@
+package org.myframework.fixture.scan;
+
+/**
+ * 没有被任何注解标记，预过滤模式下不应该被加载，更不应该被初始化
+ */
+public class PlainHelper {
+    public static final String INITIALIZED_PROPERTY = "fixture.PlainHelper.initialized";
+
+    static {
+        System.setProperty(INITIALIZED_PROPERTY, "true");
+    }
+}
@@ -0,0 +1,7 @@
+package org.myframework.fixture.scan;
+
+import org.myframework.core.annotation.Service;
+
+@Service
+public class ScannedService {
+}
@@ -0,0 +1,28 @@
+package org.myframework.inject.annotation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.fixture.bean.GreetingService;
+
+public class InjectionPlanTest {
+
+    @DisplayName("final成员变量不允许字段注入：finalFieldRejectedTest")
+    @Test
+    public void finalFieldRejectedTest() {
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> InjectionPlan.of(FinalFieldBean.class));
+        Assertions.assertTrue(exception.getMessage().contains("greetingService"));
+        Assertions.assertEquals(1, InjectionPlan.of(FieldBean.class).getInjectionPoints().size());
+    }
+
+    private static class FinalFieldBean {
+        @Autowired
+        private final GreetingService greetingService = null;
+    }
+
+    private static class FieldBean {
+        @Autowired
+        private GreetingService greetingService;
+    }
+}
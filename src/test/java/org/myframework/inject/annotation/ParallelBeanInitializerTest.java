@@ -0,0 +1,124 @@
+package org.myframework.inject.annotation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.myframework.core.BeanContainer;
+import org.myframework.core.BeanContainerTestSupport;
+import org.myframework.core.BeanPostProcessor;
+import org.myframework.fixture.bean.ChineseGreetingTemplate;
+import org.myframework.fixture.bean.EnglishGreetingTemplate;
+import org.myframework.fixture.bean.GreetingArchive;
+import org.myframework.fixture.bean.GreetingController;
+import org.myframework.fixture.bean.GreetingHistory;
+import org.myframework.fixture.bean.GreetingServiceImpl;
+import org.myframework.fixture.cycle.CycleFirst;
+import org.myframework.fixture.cycle.CycleSecond;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ParallelBeanInitializerTest {
+
+    @BeforeEach
+    @AfterEach
+    void resetContainer() {
+        BeanContainerTestSupport.reset();
+    }
+
+    @DisplayName("按依赖关系分层：sortByLevelTest")
+    @Test
+    public void sortByLevelTest() {
+        Map<Class<?>, Set<Class<?>>> dependencyGraph = new LinkedHashMap<>();
+        dependencyGraph.put(String.class, new HashSet<>(Arrays.asList(Integer.class, Long.class)));
+        dependencyGraph.put(Integer.class, Collections.singleton(Long.class));
+        dependencyGraph.put(Long.class, Collections.emptySet());
+        dependencyGraph.put(Double.class, Collections.emptySet());
+
+        List<List<Class<?>>> levels = ParallelBeanInitializer.sortByLevel(dependencyGraph);
+        Assertions.assertEquals(3, levels.size());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(Long.class, Double.class)), new HashSet<>(levels.get(0)));
+        Assertions.assertEquals(Collections.singletonList(Integer.class), levels.get(1));
+        Assertions.assertEquals(Collections.singletonList(String.class), levels.get(2));
+    }
+
+    @DisplayName("循环依赖时给出依赖环：circularDependencyTest")
+    @Test
+    public void circularDependencyTest() {
+        Map<Class<?>, Set<Class<?>>> dependencyGraph = new LinkedHashMap<>();
+        dependencyGraph.put(String.class, Collections.singleton(Integer.class));
+        dependencyGraph.put(Integer.class, Collections.singleton(Long.class));
+        dependencyGraph.put(Long.class, Collections.singleton(String.class));
+        dependencyGraph.put(Double.class, Collections.singleton(String.class));
+
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class,
+                () -> ParallelBeanInitializer.sortByLevel(dependencyGraph));
+        Assertions.assertTrue(e.getMessage().startsWith("circular dependency detected: "), e.getMessage());
+        Assertions.assertFalse(e.getMessage().contains(Double.class.getName()), e.getMessage());
+        for (Class<?> clazz : Arrays.asList(String.class, Integer.class, Long.class)) {
+            Assertions.assertTrue(e.getMessage().contains(clazz.getName()), e.getMessage());
+        }
+    }
+
+    @DisplayName("依赖的bean创建并注入完成之后，才会创建依赖它的bean：initializeTest")
+    @Test
+    public void initializeTest() {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeanDefinitions("org.myframework.fixture.bean");
+        new DependencyInjector().doIoC();
+        //AOP的处理器在实例化之后、注入之前执行，生命周期的处理器在注入之后执行
+        List<String> events = new CopyOnWriteArrayList<>();
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.AOP_ORDER, (clazz, bean) -> {
+            events.add("create " + clazz.getSimpleName());
+            return bean;
+        });
+        beanContainer.addBeanPostProcessor(BeanPostProcessor.LIFECYCLE_ORDER, (clazz, bean) -> {
+            events.add("ready " + clazz.getSimpleName());
+            return bean;
+        });
+        System.setProperty(ParallelBeanInitializer.PARALLELISM_PROPERTY, "4");
+        try {
+            new ParallelBeanInitializer().initialize();
+        } finally {
+            System.clearProperty(ParallelBeanInitializer.PARALLELISM_PROPERTY);
+        }
+
+        assertReadyBefore(events, GreetingServiceImpl.class, GreetingController.class);
+        assertReadyBefore(events, GreetingServiceImpl.class, GreetingArchive.class);
+        assertReadyBefore(events, GreetingController.class, GreetingArchive.class);
+        assertReadyBefore(events, EnglishGreetingTemplate.class, GreetingArchive.class);
+        assertReadyBefore(events, ChineseGreetingTemplate.class, GreetingArchive.class);
+        //@Lazy的bean只通过ObjectProvider被依赖，依然延迟创建
+        Assertions.assertTrue(beanContainer.isLazyPending(GreetingHistory.class));
+
+        GreetingController controller = (GreetingController) beanContainer.getBean(GreetingController.class);
+        Assertions.assertEquals("hello tom", controller.greet("tom"));
+        GreetingArchive archive = (GreetingArchive) beanContainer.getBean(GreetingArchive.class);
+        Assertions.assertSame(controller, archive.getGreetingController());
+        Assertions.assertEquals(2, archive.getTemplateList().size());
+    }
+
+    @DisplayName("成员变量之间的循环依赖在并行模式下直接报错：fieldCycleTest")
+    @Test
+    public void fieldCycleTest() {
+        BeanContainer beanContainer = BeanContainer.getInstance();
+        beanContainer.loadBeanDefinitions("org.myframework.fixture.cycle");
+        new DependencyInjector().doIoC();
+
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> new ParallelBeanInitializer().initialize());
+        Assertions.assertTrue(e.getMessage().startsWith("circular dependency detected: "), e.getMessage());
+        Assertions.assertTrue(e.getMessage().contains(CycleFirst.class.getName()), e.getMessage());
+        Assertions.assertTrue(e.getMessage().contains(CycleSecond.class.getName()), e.getMessage());
+        //没有任何bean被创建
+        Assertions.assertTrue(beanContainer.isLazyPending(CycleFirst.class));
+        Assertions.assertTrue(beanContainer.isLazyPending(CycleSecond.class));
+    }
+
+    private static void assertReadyBefore(List<String> events, Class<?> dependency, Class<?> dependent) {
+        int readyIndex = events.indexOf("ready " + dependency.getSimpleName());
+        int createIndex = events.indexOf("create " + dependent.getSimpleName());
+        Assertions.assertTrue(readyIndex >= 0 && readyIndex < createIndex, events.toString());
+    }
+}
@@ -0,0 +1,77 @@
+package org.myframework.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * 反射方式和BeanAccessor方式创建、注入bean的对比
+ * 这里只是一个粗略的计时，不是单元测试，需要手动运行：
+ * mvn -B test-compile exec:java -Dexec.mainClass=org.myframework.util.BeanAccessorBenchmark -Dexec.classpathScope=test
+ */
+public class BeanAccessorBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+    private static final int OPERATIONS = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Field serviceField = SampleController.class.getDeclaredField("sampleService");
+        SampleService service = new SampleService();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            reflection(serviceField, service);
+            accessor(serviceField, service);
+        }
+        for (int i = 0; i < ROUNDS; i++) {
+            long reflectionNanos = reflection(serviceField, service);
+            long accessorNanos = accessor(serviceField, service);
+            System.out.printf("round %d: reflection %.1f ns/op, accessor %.1f ns/op%n", i,
+                    (double) reflectionNanos / OPERATIONS, (double) accessorNanos / OPERATIONS);
+        }
+    }
+
+    /**
+     * 原来ClassUtil.newInstance + ClassUtil.setFiled的做法：每次都查找构造器、setAccessible
+     */
+    private static long reflection(Field serviceField, SampleService service) throws Exception {
+        long startNanos = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            Constructor<SampleController> constructor = SampleController.class.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            SampleController controller = constructor.newInstance();
+            serviceField.setAccessible(true);
+            serviceField.set(controller, service);
+            checksum += controller.sampleService == service ? 1 : 0;
+        }
+        return consume(System.nanoTime() - startNanos, checksum);
+    }
+
+    private static long accessor(Field serviceField, SampleService service) {
+        BeanAccessor beanAccessor = BeanAccessor.of(SampleController.class);
+        long startNanos = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            SampleController controller = beanAccessor.newInstance();
+            beanAccessor.set(serviceField, controller, service);
+            checksum += controller.sampleService == service ? 1 : 0;
+        }
+        return consume(System.nanoTime() - startNanos, checksum);
+    }
+
+    private static long consume(long nanos, int checksum) {
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+        return nanos;
+    }
+
+    private static class SampleService {
+    }
+
+    private static class SampleController {
+        private SampleService sampleService;
+
+        private SampleController() {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.myframework.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class BeanAccessorTest {
+
+    @DisplayName("私有构造器和私有成员变量，final成员变量不允许赋值：accessPrivateMembersTest")
+    @Test
+    public void accessPrivateMembersTest() throws Exception {
+        BeanAccessor accessor = BeanAccessor.of(PrivateBean.class);
+        Assertions.assertSame(accessor, BeanAccessor.of(PrivateBean.class));
+
+        PrivateBean bean = accessor.newInstance();
+        Assertions.assertNotSame(bean, accessor.newInstance());
+
+        accessor.set(PrivateBean.class.getDeclaredField("name"), bean, "candy");
+        accessor.set(PrivateBean.class.getDeclaredField("count"), bean, 3);
+        Assertions.assertEquals("candy", bean.name);
+        Assertions.assertEquals(3, bean.count);
+
+        IllegalArgumentException finalFieldException = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> accessor.set(PrivateBean.class.getDeclaredField("tag"), bean, "final"));
+        Assertions.assertTrue(finalFieldException.getMessage().contains("constructor injection"));
+        Assertions.assertNull(bean.tag);
+
+        Assertions.assertThrows(ClassCastException.class,
+                () -> accessor.set(PrivateBean.class.getDeclaredField("name"), bean, 1));
+    }
+
+    @DisplayName("构造器的异常原样抛出：constructorExceptionTest")
+    @Test
+    public void constructorExceptionTest() {
+        Assertions.assertThrows(IllegalStateException.class, () -> BeanAccessor.of(FailingBean.class).newInstance());
+        RuntimeException noConstructorException = Assertions.assertThrows(RuntimeException.class,
+                () -> BeanAccessor.of(Runnable.class).newInstance());
+        Assertions.assertTrue(noConstructorException.getMessage().contains(Runnable.class.getName()));
+        Assertions.assertTrue(noConstructorException.getCause() instanceof NoSuchMethodException);
+    }
+
+    private static class PrivateBean {
+        private String name;
+        private int count;
+        private final String tag = null;
+
+        private PrivateBean() {
+        }
+    }
+
+    private static class FailingBean {
+        private FailingBean() {
+            throw new IllegalStateException("broken");
+        }
+    }
+}
@@ -3,8 +3,28 @@ package org.myframework.util;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.myframework.core.annotation.Service;
+import org.myframework.fixture.scan.PlainHelper;
+import org.myframework.fixture.scan.ScannedService;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ClassUtilTest {
 
@@ -18,4 +38,206 @@ public class ClassUtilTest {
             System.out.println(classSet);
             Assertions.assertEquals(4, classSet.size());
      }
+
+    @DisplayName("从jar中提取目标类：extractPackageClassFromJarTest")
+    @Test
+    public void extractPackageClassFromJarTest() throws Exception {
+        Path classesDir = Paths.get(ClassUtil.getClassLoader().getResource("top/candysky/entity").toURI())
+                .getParent().getParent().getParent();
+        File jar = File.createTempFile("entity", ".jar");
+        jar.deleteOnExit();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()));
+             Stream<Path> paths = Files.walk(classesDir.resolve("top/candysky/entity"))) {
+            // 和打包工具一样，目录也需要写入对应的entry，否则类加载器无法定位到package
+            for (Path path : paths.collect(Collectors.toList())) {
+                String entryName = classesDir.relativize(path).toString().replace(File.separatorChar, '/');
+                if (Files.isDirectory(path)) {
+                    out.putNextEntry(new JarEntry(entryName + "/"));
+                } else {
+                    out.putNextEntry(new JarEntry(entryName));
+                    Files.copy(path, out);
+                }
+                out.closeEntry();
+            }
+        }
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        // 父加载器为null，保证资源只能从jar中获取
+        try (URLClassLoader jarLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, null)) {
+            Thread.currentThread().setContextClassLoader(jarLoader);
+            Set<Class<?>> classSet = ClassUtil.extractPackageClass("top.candysky.entity.bo", "top.candysky.entity.dto");
+            Assertions.assertEquals(4, classSet.size());
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    @DisplayName("预过滤模式：extractAnnotatedPackageClassTest")
+    @Test
+    public void extractAnnotatedPackageClassTest() {
+        Set<Class<?>> classSet = ClassUtil.extractPackageClass(
+                Collections.singletonList(Service.class), "org.myframework.fixture.scan");
+        Assertions.assertEquals(Collections.singleton(ScannedService.class), classSet);
+        // 读取常量不会触发类的初始化
+        Assertions.assertNull(System.getProperty(PlainHelper.INITIALIZED_PROPERTY));
+    }
+
+    @DisplayName("并行扫描目录：extractPackageClassInParallelTest")
+    @Test
+    public void extractPackageClassInParallelTest() {
+        Set<Class<?>> sequentialSet = ClassUtil.extractPackageClass("top.candysky");
+        System.setProperty(ClassUtil.SCAN_PARALLELISM_PROPERTY, "4");
+        try {
+            Assertions.assertEquals(sequentialSet, ClassUtil.extractPackageClass("top.candysky"));
+        } finally {
+            System.clearProperty(ClassUtil.SCAN_PARALLELISM_PROPERTY);
+        }
+    }
+
+    @DisplayName("扫描结果缓存：extractPackageClassWithScanCacheTest")
+    @Test
+    public void extractPackageClassWithScanCacheTest() throws Exception {
+        Path cacheDir = Files.createTempDirectory("scan-cache");
+        System.setProperty(ClassUtil.SCAN_CACHE_DIR_PROPERTY, cacheDir.toString());
+        try {
+            Set<Class<?>> firstSet = ClassUtil.extractPackageClass(
+                    Collections.singletonList(Service.class), "org.myframework.fixture.scan");
+            try (Stream<Path> cacheFiles = Files.list(cacheDir)) {
+                Assertions.assertEquals(1, cacheFiles.count());
+            }
+            // 第二次扫描命中缓存，结果保持一致
+            Set<Class<?>> secondSet = ClassUtil.extractPackageClass(
+                    Collections.singletonList(Service.class), "org.myframework.fixture.scan");
+            Assertions.assertEquals(Collections.singleton(ScannedService.class), secondSet);
+            Assertions.assertEquals(firstSet, secondSet);
+
+            // 重新打开缓存：文件没有变化时直接使用记录，不会读取class文件
+            File classFile = new File(ScannedService.class.getResource(ScannedService.class.getSimpleName() + ".class").toURI());
+            ScanCache.Segment segment = ScanCache.open().directorySegment(classFile.getParentFile());
+            Assertions.assertTrue(segment.isValid());
+            Set<String> annotations = segment.getAnnotations(classFile.getAbsolutePath(), classFile.lastModified(), classFile.length(), ScanCache.UNKNOWN_CRC,
+                    ScannedService.class.getName(), () -> {
+                        throw new AssertionError("class file should not be read on cache hit");
+                    });
+            Assertions.assertEquals(Collections.singleton(Service.class.getName()), annotations);
+
+            // 修改时间或者大小变化时记录失效，重新读取class文件
+            AtomicInteger openCount = new AtomicInteger();
+            segment.getAnnotations(classFile.getAbsolutePath(), classFile.lastModified() + 1000, classFile.length(), ScanCache.UNKNOWN_CRC,
+                    ScannedService.class.getName(), () -> {
+                        openCount.incrementAndGet();
+                        return Files.newInputStream(classFile.toPath());
+                    });
+            Assertions.assertEquals(1, openCount.get());
+        } finally {
+            System.clearProperty(ClassUtil.SCAN_CACHE_DIR_PROPERTY);
+        }
+    }
+
+    @DisplayName("嵌套jar中的entry在缓存中记录实际的大小：nestedArchiveScanCacheTest")
+    @Test
+    public void nestedArchiveScanCacheTest() throws Exception {
+        Path classesDir = Paths.get(ClassUtil.getClassLoader().getResource("top/candysky/entity").toURI())
+                .getParent().getParent().getParent();
+        ByteArrayOutputStream innerJar = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(innerJar);
+             Stream<Path> paths = Files.walk(classesDir.resolve("top/candysky/entity/bo"))) {
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                out.putNextEntry(new JarEntry(classesDir.relativize(path).toString().replace(File.separatorChar, '/')));
+                Files.copy(path, out);
+                out.closeEntry();
+            }
+        }
+        File outerJar = File.createTempFile("outer", ".jar");
+        outerJar.deleteOnExit();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(outerJar.toPath()))) {
+            out.putNextEntry(new JarEntry("lib/inner.jar"));
+            out.write(innerJar.toByteArray());
+            out.closeEntry();
+        }
+
+        Path cacheDir = Files.createTempDirectory("scan-cache");
+        System.setProperty(ClassUtil.SCAN_CACHE_DIR_PROPERTY, cacheDir.toString());
+        try {
+            JarClassScanner scanner = new JarClassScanner();
+            Assertions.assertTrue(scanner.addResource(
+                    new URL("jar:" + outerJar.toURI() + "!/lib/inner.jar!/top/candysky/entity/bo"), "top/candysky/entity/bo"));
+            ScanCache scanCache = ScanCache.open();
+            Assertions.assertEquals(2, scanner.scan(null, scanCache).size());
+            scanCache.save();
+            try (Stream<Path> cacheFiles = Files.list(cacheDir)) {
+                List<String> records = Files.readAllLines(cacheFiles.findFirst().orElseThrow());
+                // 第一行是缓存段的指纹，之后每行一个entry：路径、修改时间、大小、CRC、类名、注解
+                for (String record : records.subList(1, records.size())) {
+                    Assertions.assertTrue(Long.parseLong(record.split("\t")[2]) > 0, record);
+                    Assertions.assertNotEquals(ScanCache.UNKNOWN_CRC, Long.parseLong(record.split("\t")[3]), record);
+                }
+            }
+        } finally {
+            System.clearProperty(ClassUtil.SCAN_CACHE_DIR_PROPERTY);
+        }
+    }
+
+    @DisplayName("归档内容变化时缓存失效，没有变化的entry按照CRC复用：archiveScanCacheChecksumTest")
+    @Test
+    public void archiveScanCacheChecksumTest() throws Exception {
+        byte[] serviceBytes = Files.readAllBytes(Paths.get(ScannedService.class.getResource("ScannedService.class").toURI()));
+        byte[] helperBytes = Files.readAllBytes(Paths.get(PlainHelper.class.getResource("PlainHelper.class").toURI()));
+        File archive = File.createTempFile("scan", ".jar");
+        archive.deleteOnExit();
+        writeArchive(archive, serviceBytes, helperBytes);
+        long lastModified = archive.lastModified();
+
+        Path cacheDir = Files.createTempDirectory("scan-cache");
+        System.setProperty(ClassUtil.SCAN_CACHE_DIR_PROPERTY, cacheDir.toString());
+        try {
+            ScanCache scanCache = ScanCache.open();
+            Assertions.assertEquals(2, readArchive(archive, scanCache.archiveSegment(archive, "test")).size());
+            scanCache.save();
+            Assertions.assertTrue(ScanCache.open().archiveSegment(archive, "test").isValid());
+
+            // 重新打包相同的内容，只有修改时间变化，缓存仍然有效
+            writeArchive(archive, serviceBytes, helperBytes);
+            Assertions.assertTrue(archive.setLastModified(lastModified + 10000));
+            Assertions.assertTrue(ScanCache.open().archiveSegment(archive, "test").isValid());
+
+            // 只改变内容，修改时间保持不变
+            writeArchive(archive, serviceBytes, serviceBytes);
+            Assertions.assertTrue(archive.setLastModified(lastModified));
+            ScanCache.Segment segment = ScanCache.open().archiveSegment(archive, "test");
+            Assertions.assertFalse(segment.isValid());
+            Assertions.assertEquals(Collections.singletonList("PlainHelper.class"), readArchive(archive, segment));
+        } finally {
+            System.clearProperty(ClassUtil.SCAN_CACHE_DIR_PROPERTY);
+        }
+    }
+
+    private static void writeArchive(File archive, byte[] serviceBytes, byte[] helperBytes) throws Exception {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(archive.toPath()))) {
+            for (String name : new String[]{"ScannedService.class", "PlainHelper.class"}) {
+                JarEntry entry = new JarEntry(name);
+                entry.setTime(0);
+                out.putNextEntry(entry);
+                out.write(name.startsWith("ScannedService") ? serviceBytes : helperBytes);
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * @return 缓存没有命中、需要读取字节的entry
+     */
+    private static List<String> readArchive(File archive, ScanCache.Segment segment) throws Exception {
+        List<String> openedEntries = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(archive)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                segment.getAnnotations(entry.getName(), entry.getTime(), entry.getSize(), entry.getCrc(), entry.getName(), () -> {
+                    openedEntries.add(entry.getName());
+                    return jarFile.getInputStream(entry);
+                });
+            }
+        }
+        return openedEntries;
+    }
 }